@@ -0,0 +1,16 @@
+# ProGuard rules applied to the apps that use this library.
+
+# StoredTypeAdapterFactory checks for the @Stored annotation at runtime
+-keepattributes *Annotation*
+-keep @interface com.robot.Stored
+
+# The adapter generated for a @Stored class is found by appending $$TypeAdapter to the name of the class and created
+# through its constructor taking a Gson, so neither class can be renamed. The fields keep their names since they are
+# the JSON keys, and Gson still reads them by reflection when no adapter was generated.
+-keep @com.robot.Stored class * {
+    <init>();
+    <fields>;
+}
+-keep class **$$TypeAdapter {
+    public <init>(com.google.gson.Gson);
+}
@@ -0,0 +1,154 @@
+package com.robot;
+
+import android.test.AndroidTestCase;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.squareup.otto.Bus;
+import com.squareup.otto.ThreadEnforcer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author fernandinho
+ */
+public class CollectionJsonStorageTest extends AndroidTestCase {
+
+    private static final TypeToken<List<Car>> TYPE = new TypeToken<List<Car>>() {};
+    private static final StorableCollection.Callback<Void> IGNORE = new StorableCollection.Callback<Void>() {
+        @Override
+        public void onFinish(Void data) {
+        }
+    };
+
+    private final AtomicInteger serialized = new AtomicInteger();
+    private final AtomicInteger deserialized = new AtomicInteger();
+    private CollectionJsonStorage<Car> storage;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        storage = open();
+        storage.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        storage.clear();
+        super.tearDown();
+    }
+
+    public void testElementsAreWrittenInLines() throws IOException {
+        List<Car> cars = cars(CollectionJsonStorage.LINE_SIZE * 2 + 1);
+        storage.save(collection(cars), IGNORE);
+
+        assertEquals(3, LineFiles.countLines(file(".json")));
+        assertEquals(cars, open().loadSync());
+    }
+
+    public void testReadsAndWritesGoThroughTheSerializer() throws IOException {
+        storage.save(collection(cars(3)), IGNORE);
+        storage.saveChanges(collection(null), upserts(new Car(7, "bmw", 700)), IGNORE);
+        assertTrue(serialized.get() > 0);
+
+        deserialized.set(0);
+        open().loadSync();
+        assertTrue(deserialized.get() > 0);
+    }
+
+    public void testDeltasAreApplied() throws IOException {
+        storage.save(collection(cars(3)), IGNORE);
+        StorableCollection.Delta<Car> changes = upserts(new Car(1, "fiat", 150), new Car(7, "bmw", 700));
+        changes.remove(0L, new Car(0, "car 0", 0));
+        storage.saveChanges(collection(null), changes, IGNORE);
+
+        assertEquals(1, LineFiles.countLines(file(".delta")));
+        assertEquals(Arrays.asList(new Car(1, "fiat", 150), new Car(2, "car 2", 200), new Car(7, "bmw", 700)),
+                open().loadSync());
+    }
+
+    public void testTornDeltaIsCut() throws IOException {
+        storage.save(collection(cars(2)), IGNORE);
+        storage.saveChanges(collection(null), upserts(new Car(5, "audi", 500)), IGNORE);
+        FileOutputStream out = new FileOutputStream(file(".delta"), true);
+        try {
+            out.write("24:[{\"id\":6,\"bra".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        CollectionJsonStorage<Car> reopened = open();
+        reopened.saveChanges(collection(null), upserts(new Car(7, "bmw", 700)), IGNORE);
+
+        assertEquals(2, LineFiles.countLines(file(".delta")));
+        assertEquals(Arrays.asList(new Car(0, "car 0", 0), new Car(1, "car 1", 100), new Car(5, "audi", 500),
+                new Car(7, "bmw", 700)), open().loadSync());
+    }
+
+    public void testLineBreaksWrittenByTheSerializerAreRejected() {
+        CollectionJsonStorage<Car> pretty = new CollectionJsonStorage<Car>(getContext(), TYPE, getName(),
+                new GsonSerializer<List<Car>>(new GsonBuilder().setPrettyPrinting().create(), TYPE.getType()));
+        try {
+            pretty.saveChanges(collection(cars(2)), upserts(new Car(5, "audi", 500)), IGNORE);
+            fail("the lines written can't be read back");
+        } catch (IOException expected) {
+        }
+    }
+
+    private CollectionJsonStorage<Car> open() {
+        CollectionJsonStorage<Car> storage = new CollectionJsonStorage<Car>(getContext(), TYPE, getName(), new Serializer<List<Car>>() {
+
+            private final Serializer<List<Car>> gson = new GsonSerializer<List<Car>>(TYPE.getType());
+
+            @Override
+            public String serialize(List<Car> data) {
+                serialized.incrementAndGet();
+                return gson.serialize(data);
+            }
+
+            @Override
+            public List<Car> deserialize(String serialized) {
+                deserialized.incrementAndGet();
+                return gson.deserialize(serialized);
+            }
+        });
+        storage.setKeyMapper(Car.ID);
+        return storage;
+    }
+
+    private File file(String extension) {
+        return new File(getContext().getFilesDir(), getName() + extension);
+    }
+
+    private static StorableCollection<Car> collection(List<Car> cars) {
+        StorableCollection<Car> collection = new StorableCollection<Car>();
+        collection.setEventBus(new Bus(ThreadEnforcer.ANY));
+        collection.setKeyMapper(Car.ID);
+        if (cars != null) {
+            collection.addAll(cars, false);
+        }
+        return collection;
+    }
+
+    private static List<Car> cars(int count) {
+        List<Car> cars = new ArrayList<Car>();
+        for (int i = 0; i < count; i++) {
+            cars.add(new Car(i, "car " + i, i * 100));
+        }
+        return cars;
+    }
+
+    private static StorableCollection.Delta<Car> upserts(Car... cars) {
+        StorableCollection.Delta<Car> changes = new StorableCollection.Delta<Car>(false);
+        for (Car car : cars) {
+            changes.upsert(car.id, car);
+        }
+        return changes;
+    }
+}
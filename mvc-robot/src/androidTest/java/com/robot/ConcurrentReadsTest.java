@@ -0,0 +1,117 @@
+package com.robot;
+
+import com.squareup.otto.Bus;
+import com.squareup.otto.ThreadEnforcer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs queries while another thread replaces every element, in each read mode, and checks every query sees the whole
+ * collection as it was between two writes.
+ *
+ * @author fernandinho
+ */
+public class ConcurrentReadsTest extends TestCase {
+
+    private static final int SIZE = 1000;
+    private static final int READERS = 4;
+    private static final int WRITES = 200;
+
+    public void testExclusiveReads() throws InterruptedException {
+        assertConsistentReads(new StorableCollection<Car>());
+    }
+
+    public void testSharedReads() throws InterruptedException {
+        StorableCollection<Car> cars = new StorableCollection<Car>();
+        cars.setSharedReads(true);
+        assertConsistentReads(cars);
+    }
+
+    public void testSnapshotReads() throws InterruptedException {
+        StorableCollection<Car> cars = new StorableCollection<Car>();
+        cars.setSnapshotReads(true);
+        assertConsistentReads(cars);
+    }
+
+    /**
+     * Every write sets the same price on every element, so a query that sees two prices saw a write half done
+     */
+    private static void assertConsistentReads(final StorableCollection<Car> cars) throws InterruptedException {
+        cars.setEventBus(new Bus(ThreadEnforcer.ANY));
+        cars.setKeyMapper(Car.ID);
+        cars.addAll(prices(0), false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final boolean[] done = new boolean[1];
+
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!isDone(done) && failure.get() == null) {
+                            final int price = cars.get(0).price;
+                            List<Car> others = cars.filter(new BaseCollection.Filter<Car>() {
+                                @Override
+                                public boolean include(Car el) {
+                                    return el.price != price;
+                                }
+                            });
+                            int[] range = cars.reduce(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE},
+                                    new BaseCollection.Reducer<Car, int[]>() {
+                                        @Override
+                                        public int[] reduce(int[] range, Car el) {
+                                            range[0] = Math.min(range[0], el.price);
+                                            range[1] = Math.max(range[1], el.price);
+                                            return range;
+                                        }
+                                    });
+                            // the filter and the reduction may see different writes, but never half of one
+                            assertTrue(others.isEmpty() || others.size() == SIZE);
+                            assertEquals(range[0], range[1]);
+                            assertEquals(SIZE, cars.size());
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        try {
+            for (int price = 1; price <= WRITES && failure.get() == null; price++) {
+                cars.updateAll(prices(price), false);
+            }
+        } finally {
+            synchronized (done) {
+                done[0] = true;
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static boolean isDone(boolean[] done) {
+        synchronized (done) {
+            return done[0];
+        }
+    }
+
+    private static List<Car> prices(int price) {
+        List<Car> cars = new ArrayList<Car>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            cars.add(new Car(i, "fiat", price));
+        }
+        return cars;
+    }
+}
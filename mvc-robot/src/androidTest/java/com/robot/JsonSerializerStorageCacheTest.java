@@ -0,0 +1,100 @@
+package com.robot;
+
+import android.test.AndroidTestCase;
+
+import com.google.gson.reflect.TypeToken;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author fernandinho
+ */
+public class JsonSerializerStorageCacheTest extends AndroidTestCase {
+
+    private static final TypeToken<Car> TYPE = new TypeToken<Car>() {};
+
+    private final AtomicInteger deserialized = new AtomicInteger();
+    private JsonSerializerStorage<Car> storage;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        JsonSerializerStorage.setVersionProvider(new JsonSerializerStorage.VersionProvider() {
+            @Override
+            public int getVersion() {
+                return 1;
+            }
+        });
+        storage = open();
+        storage.save(new Car(1, "fiat", 100));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        storage.clear();
+        JsonSerializerStorage.setVersionProvider(null);
+        super.tearDown();
+    }
+
+    public void testRepeatedLoadsAreAnsweredByTheCache() {
+        Car first = storage.load();
+        Car second = storage.load();
+
+        assertEquals(new Car(1, "fiat", 100), first);
+        assertSame(first, second);
+        assertEquals(1, deserialized.get());
+        assertEquals(1, storage.getCacheMisses());
+        assertEquals(1, storage.getCacheHits());
+    }
+
+    public void testSavingInvalidatesTheCache() {
+        storage.load();
+        storage.save(new Car(1, "fiat", 150));
+
+        assertEquals(new Car(1, "fiat", 150), storage.load());
+        assertEquals(2, storage.getCacheMisses());
+    }
+
+    public void testClearingInvalidatesTheCache() {
+        storage.load();
+        storage.clear();
+
+        assertNull(storage.load());
+        assertFalse(storage.isStored());
+    }
+
+    public void testChangesMadeByAnotherStorageInvalidateTheCache() {
+        storage.load();
+        open().save(new Car(2, "audi", 200));
+
+        assertEquals(new Car(2, "audi", 200), storage.load());
+        assertEquals(2, deserialized.get());
+    }
+
+    public void testMissingDataIsNotCached() {
+        storage.clear();
+        storage.load();
+        storage.load();
+
+        assertEquals(0, storage.getCacheHits());
+        assertEquals(2, storage.getCacheMisses());
+    }
+
+    private JsonSerializerStorage<Car> open() {
+        return new JsonSerializerStorage<Car>(getContext(), TYPE, getName(), new Serializer<Car>() {
+
+            private final Serializer<Car> gson = new GsonSerializer<Car>(TYPE.getType());
+
+            @Override
+            public String serialize(Car data) {
+                return gson.serialize(data);
+            }
+
+            @Override
+            public Car deserialize(String serialized) {
+                deserialized.incrementAndGet();
+                return gson.deserialize(serialized);
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.robot;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the {@link BaseCollection.ModelChangedEvent}s published when a notification window closes, which happens on
+ * the main thread.
+ *
+ * @author fernandinho
+ */
+public class NotificationWindowTest extends TestCase {
+
+    private static final long WINDOW = 50;
+
+    private final List<BaseCollection.ModelChangedEvent> events = new ArrayList<BaseCollection.ModelChangedEvent>();
+    private StorableCollection<Car> cars;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cars = new StorableCollection<Car>() {
+            @Override
+            public void notifyEvent(Object event) {
+                if (event instanceof ModelChangedEvent) {
+                    synchronized (events) {
+                        events.add((ModelChangedEvent) event);
+                    }
+                }
+            }
+        };
+        cars.setNotificationWindow(WINDOW);
+    }
+
+    public void testChangesWithinTheWindowArePublishedOnce() throws InterruptedException {
+        cars.add(new Car(1, "fiat", 100));
+        cars.add(new Car(2, "audi", 200));
+        cars.add(new Car(3, "bmw", 300));
+
+        List<BaseCollection.ModelChangedEvent> published = awaitWindows();
+        assertEquals(1, published.size());
+        assertFalse(published.get(0).isFullRefresh());
+        assertEquals(1, published.get(0).getChanges().size());
+        assertEquals(3, published.get(0).getChanges().get(0).getCount());
+    }
+
+    public void testWindowClosingDuringABatchWaitsForTheBatch() throws InterruptedException {
+        cars.add(new Car(1, "fiat", 100));
+        cars.beginBatch();
+        try {
+            cars.add(new Car(2, "audi", 200));
+            assertTrue("published inside the batch", awaitWindows().isEmpty());
+        } finally {
+            cars.endBatch();
+        }
+
+        List<BaseCollection.ModelChangedEvent> published = awaitWindows();
+        assertEquals(1, published.size());
+        assertEquals(2, published.get(0).getChanges().get(0).getCount());
+    }
+
+    public void testPublishedChangesAreNotPublishedAgain() throws InterruptedException {
+        cars.add(new Car(1, "fiat", 100));
+        cars.setNotificationWindow(0);
+        cars.add(new Car(2, "audi", 200));
+
+        List<BaseCollection.ModelChangedEvent> published = awaitWindows();
+        assertEquals("the closing window published an empty refresh", 1, published.size());
+        assertFalse(published.get(0).isFullRefresh());
+    }
+
+    /**
+     * @return the events published after waiting for the windows that are open to close
+     */
+    private List<BaseCollection.ModelChangedEvent> awaitWindows() throws InterruptedException {
+        Thread.sleep(WINDOW * 4);
+        synchronized (events) {
+            return new ArrayList<BaseCollection.ModelChangedEvent>(events);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.robot;
+
+import android.util.Log;
+
+import com.squareup.otto.Bus;
+import com.squareup.otto.ThreadEnforcer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how the throughput of concurrent queries grows with the number of reader threads, with exclusive, shared and
+ * snapshot reads. Results are logged under the {@value #TAG} tag, one line per mode, i.e.
+ * {@code shared: 1 threads <n> q/s, 2 threads <n> q/s, 4 threads <n> q/s (<n> cores)}. Exclusive reads should stay flat while
+ * shared and snapshot reads grow up to the number of cores.
+ *
+ * @author fernandinho
+ */
+public class ReaderScalingBenchmark extends TestCase {
+
+    private static final String TAG = "ReaderScalingBenchmark";
+    private static final int SIZE = 20000;
+    private static final int QUERIES = 200;
+
+    private static final BaseCollection.Reducer<Car, Long> SUM = new BaseCollection.Reducer<Car, Long>() {
+        @Override
+        public Long reduce(Long sum, Car el) {
+            return sum + el.price;
+        }
+    };
+
+    public void testExclusiveReads() throws InterruptedException {
+        run("exclusive", collection());
+    }
+
+    public void testSharedReads() throws InterruptedException {
+        StorableCollection<Car> cars = collection();
+        cars.setSharedReads(true);
+        run("shared", cars);
+    }
+
+    public void testSnapshotReads() throws InterruptedException {
+        StorableCollection<Car> cars = collection();
+        cars.setSnapshotReads(true);
+        run("snapshot", cars);
+    }
+
+    private static void run(String mode, StorableCollection<Car> cars) throws InterruptedException {
+        long expected = (long) SIZE * (SIZE - 1) / 2;
+        // warm up so the first measure doesn't include compiling the query
+        query(cars, 1, QUERIES / 4, expected);
+
+        StringBuilder results = new StringBuilder(mode).append(':');
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+            long elapsed = query(cars, threads, QUERIES, expected);
+            results.append(threads == 1 ? " " : ", ").append(threads).append(" threads ")
+                    .append(threads * QUERIES * 1000000000L / Math.max(1, elapsed)).append(" q/s");
+        }
+        Log.i(TAG, results.append(" (").append(cores).append(" cores)").toString());
+    }
+
+    /**
+     * Runs {@code queries} reductions on each of {@code threads} threads started at the same time
+     *
+     * @return the nanoseconds until every thread finished
+     */
+    private static long query(final StorableCollection<Car> cars, int threads, final int queries, final long expected)
+            throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            Thread reader = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int q = 0; q < queries; q++) {
+                            assertEquals(expected, cars.reduce(0L, SUM).longValue());
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            };
+            reader.start();
+            readers.add(reader);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.get(0));
+        }
+        return elapsed;
+    }
+
+    private static StorableCollection<Car> collection() {
+        StorableCollection<Car> cars = new StorableCollection<Car>();
+        cars.setEventBus(new Bus(ThreadEnforcer.ANY));
+        List<Car> elements = new ArrayList<Car>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            elements.add(new Car(i, "fiat", i));
+        }
+        cars.addAll(elements, false);
+        return cars;
+    }
+}
@@ -0,0 +1,157 @@
+package com.robot;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import junit.framework.TestCase;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the {@link Serializer}s a {@link JsonSerializerStorage} can use: Gson by reflection, Gson with the adapter
+ * generated by robot-compiler for a {@link Stored} class, and a hand written serializer. Each one encodes and decodes
+ * the same list, and the throughput and size of the stored string are logged under the {@value #TAG} tag.
+ *
+ * @author fernandinho
+ */
+public class SerializerBenchmark extends TestCase {
+
+    private static final String TAG = "SerializerBenchmark";
+    private static final int SIZE = 2000;
+    private static final int ROUNDS = 20;
+    private static final Type TYPE = new TypeToken<List<StoredCar>>() {}.getType();
+
+    private List<StoredCar> cars;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cars = new ArrayList<StoredCar>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            cars.add(new StoredCar(i, i % 2 == 0 ? "fiat" : "audi", "model " + i, 10000 + i, i * 1.5, i % 3 == 0));
+        }
+    }
+
+    public void testReflectiveGson() throws Exception {
+        run("reflective gson", new GsonSerializer<List<StoredCar>>(new Gson(), TYPE));
+    }
+
+    public void testGeneratedAdapter() throws Exception {
+        // fails if robot-compiler didn't run on the test sources, the default Gson would fall back to reflection
+        Class.forName(StoredCar.class.getName() + StoredTypeAdapterFactory.SUFFIX);
+        run("generated adapter", new GsonSerializer<List<StoredCar>>(TYPE));
+    }
+
+    public void testHandWritten() throws Exception {
+        run("hand written", new StoredCarsSerializer());
+    }
+
+    private void run(String name, Serializer<List<StoredCar>> serializer) throws UnsupportedEncodingException {
+        String serialized = serializer.serialize(cars);
+        assertEquals(cars, serializer.deserialize(serialized));
+        // warm up so the measures don't include compiling the serializer
+        for (int i = 0; i < ROUNDS / 4; i++) {
+            serializer.deserialize(serializer.serialize(cars));
+        }
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            serialized = serializer.serialize(cars);
+        }
+        long encoding = System.nanoTime() - begin;
+        begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            serializer.deserialize(serialized);
+        }
+        long decoding = System.nanoTime() - begin;
+
+        Log.i(TAG, name + ": encode " + perSecond(encoding) + " elements/s, decode " + perSecond(decoding)
+                + " elements/s, " + serialized.getBytes("UTF-8").length + " bytes");
+    }
+
+    private static long perSecond(long nanos) {
+        return (long) SIZE * ROUNDS * 1000000000L / Math.max(1, nanos);
+    }
+
+    @Stored
+    public static class StoredCar {
+
+        long id;
+        String brand;
+        String model;
+        int price;
+        double mileage;
+        boolean used;
+
+        public StoredCar() {
+        }
+
+        StoredCar(long id, String brand, String model, int price, double mileage, boolean used) {
+            this.id = id;
+            this.brand = brand;
+            this.model = model;
+            this.price = price;
+            this.mileage = mileage;
+            this.used = used;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StoredCar)) {
+                return false;
+            }
+            StoredCar car = (StoredCar) o;
+            return id == car.id && price == car.price && mileage == car.mileage && used == car.used
+                    && brand.equals(car.brand) && model.equals(car.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) id;
+        }
+    }
+
+    /**
+     * Writes every car as its fields separated by tabs and cars separated by new lines, the strings can't contain either
+     */
+    private static class StoredCarsSerializer implements Serializer<List<StoredCar>> {
+
+        @Override
+        public String serialize(List<StoredCar> cars) {
+            if (cars == null) {
+                return null;
+            }
+            StringBuilder out = new StringBuilder(cars.size() * 48);
+            for (StoredCar car : cars) {
+                out.append(car.id).append('\t').append(car.brand).append('\t').append(car.model).append('\t')
+                        .append(car.price).append('\t').append(car.mileage).append('\t').append(car.used).append('\n');
+            }
+            return out.toString();
+        }
+
+        @Override
+        public List<StoredCar> deserialize(String serialized) {
+            if (serialized == null) {
+                return null;
+            }
+            List<StoredCar> cars = new ArrayList<StoredCar>();
+            int start = 0;
+            String[] fields = new String[6];
+            while (start < serialized.length()) {
+                for (int f = 0; f < fields.length; f++) {
+                    int end = serialized.indexOf(f == fields.length - 1 ? '\n' : '\t', start);
+                    fields[f] = serialized.substring(start, end);
+                    start = end + 1;
+                }
+                cars.add(new StoredCar(Long.parseLong(fields[0]), fields[1], fields[2], Integer.parseInt(fields[3]),
+                        Double.parseDouble(fields[4]), Boolean.parseBoolean(fields[5])));
+            }
+            return cars;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.robot;
+
+import android.content.ContextWrapper;
+import android.content.pm.PackageManager;
+import android.test.AndroidTestCase;
+
+import com.google.gson.reflect.TypeToken;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author fernandinho
+ */
+public class VersionCheckTest extends AndroidTestCase {
+
+    private static final TypeToken<Car> TYPE = new TypeToken<Car>() {};
+
+    private final List<Integer> updatesRun = new ArrayList<Integer>();
+    private int currentVersion = 3;
+    private int versionReads;
+    private int storedVersionReads;
+    private JsonSerializerStorage<Car> storage;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        JsonSerializerStorage.setVersionProvider(new JsonSerializerStorage.VersionProvider() {
+            @Override
+            public int getVersion() {
+                versionReads++;
+                return currentVersion;
+            }
+        });
+        storage = new JsonSerializerStorage<Car>(getContext(), TYPE, getName()) {
+            @Override
+            public List<UpdateTask> getUpdateTasks() {
+                List<UpdateTask> tasks = new ArrayList<UpdateTask>();
+                for (int version = 1; version <= 3; version++) {
+                    tasks.add(update(version));
+                }
+                return tasks;
+            }
+
+            @Override
+            public int getStoredVersion() {
+                storedVersionReads++;
+                return super.getStoredVersion();
+            }
+        };
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        JsonSerializerStorage.setVersionProvider(null);
+        super.tearDown();
+    }
+
+    public void testVersionIsOnlyCheckedByTheFirstLoad() {
+        storage.save(new Car(1, "fiat", 100));
+        storage.load();
+        int versions = versionReads;
+        int storedVersions = storedVersionReads;
+        for (int i = 0; i < 10; i++) {
+            storage.load();
+        }
+
+        assertEquals(versions, versionReads);
+        assertEquals(storedVersions, storedVersionReads);
+        assertEquals(3, storage.getStoredVersion());
+    }
+
+    public void testUpdatesOlderThanTheCurrentVersionRunOnce() {
+        storage.setStoredVersion(1);
+        storage.load();
+        storage.load();
+
+        assertEquals(Arrays.asList(1, 2), updatesRun);
+        assertEquals(3, storage.getStoredVersion());
+    }
+
+    public void testClearingChecksTheVersionAgain() {
+        storage.load();
+        updatesRun.clear();
+        storage.clear();
+        storage.load();
+
+        assertEquals(Arrays.asList(1, 2), updatesRun);
+    }
+
+    public void testStoringAnOlderVersionChecksItAgain() {
+        storage.load();
+        updatesRun.clear();
+        storage.setStoredVersion(2);
+        storage.load();
+
+        assertEquals(Arrays.asList(2), updatesRun);
+    }
+
+    public void testPackageVersionIsReadOnce() {
+        final int[] lookups = new int[1];
+        JsonSerializerStorage.PackageVersionProvider provider = new JsonSerializerStorage.PackageVersionProvider(
+                new ContextWrapper(getContext()) {
+                    @Override
+                    public PackageManager getPackageManager() {
+                        lookups[0]++;
+                        return super.getPackageManager();
+                    }
+                });
+        int version = provider.getVersion();
+
+        assertEquals(version, provider.getVersion());
+        assertEquals(1, lookups[0]);
+    }
+
+    private JsonSerializerStorage.UpdateTask update(final int version) {
+        return new JsonSerializerStorage.UpdateTask() {
+            @Override
+            public int version() {
+                return version;
+            }
+
+            @Override
+            public void runUpdate() {
+                updatesRun.add(version);
+            }
+        };
+    }
+}
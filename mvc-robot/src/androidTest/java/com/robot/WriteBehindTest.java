@@ -0,0 +1,169 @@
+package com.robot;
+
+import android.test.AndroidTestCase;
+
+import com.google.gson.reflect.TypeToken;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fernandinho
+ */
+public class WriteBehindTest extends AndroidTestCase {
+
+    private static final TypeToken<Car> TYPE = new TypeToken<Car>() {};
+
+    /**
+     * The cars serialized by the writer, in order
+     */
+    private final List<Car> written = new ArrayList<Car>();
+
+    /**
+     * Counted down by the writer when it starts serializing
+     */
+    private final CountDownLatch writing = new CountDownLatch(1);
+
+    /**
+     * Keeps the writer serializing until counted down
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private volatile boolean failing;
+    private JsonSerializerStorage<Car> storage;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        JsonSerializerStorage.setVersionProvider(new JsonSerializerStorage.VersionProvider() {
+            @Override
+            public int getVersion() {
+                return 1;
+            }
+        });
+        storage = new JsonSerializerStorage<Car>(getContext(), TYPE, getName(), new Serializer<Car>() {
+
+            private final Serializer<Car> gson = new GsonSerializer<Car>(TYPE.getType());
+
+            @Override
+            public String serialize(Car data) {
+                writing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failing) {
+                    throw new IllegalStateException("failed to write " + data);
+                }
+                synchronized (written) {
+                    written.add(data);
+                }
+                return gson.serialize(data);
+            }
+
+            @Override
+            public Car deserialize(String serialized) {
+                return gson.deserialize(serialized);
+            }
+        });
+        storage.setWriteBehind(true);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        release.countDown();
+        storage.clear();
+        JsonSerializerStorage.setVersionProvider(null);
+        super.tearDown();
+    }
+
+    public void testSaveReturnsBeforeTheDataIsWritten() {
+        storage.save(new Car(1, "fiat", 100));
+
+        assertEquals(new Car(1, "fiat", 100), storage.load());
+        assertFalse(storage.isStored());
+
+        release.countDown();
+        storage.flush();
+        assertTrue(storage.isStored());
+        assertEquals(new Car(1, "fiat", 100), reopen().load());
+    }
+
+    public void testSavesMadeWhileWritingAreCoalesced() throws InterruptedException {
+        storage.save(new Car(1, "fiat", 100));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        Future<Void> second = storage.saveAsync(new Car(1, "fiat", 110));
+        Future<Void> third = storage.saveAsync(new Car(1, "fiat", 120));
+
+        assertSame(second, third);
+        assertEquals(new Car(1, "fiat", 120), storage.load());
+        release.countDown();
+        storage.flush();
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(1, "fiat", 120)), written);
+        assertTrue(second.isDone());
+        assertEquals(new Car(1, "fiat", 120), reopen().load());
+    }
+
+    public void testClearDiscardsWhatWasNotWritten() throws InterruptedException {
+        storage.save(new Car(1, "fiat", 100));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        storage.save(new Car(1, "fiat", 110));
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                release.countDown();
+            }
+        }.start();
+        storage.clear();
+        storage.flush();
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100)), written);
+        assertNull(storage.load());
+        assertFalse(storage.isStored());
+    }
+
+    public void testFailuresAreReportedOnce() throws InterruptedException {
+        failing = true;
+        release.countDown();
+        Future<Void> write = storage.saveAsync(new Car(1, "fiat", 100));
+        try {
+            storage.flush();
+            fail("the failed write was not reported");
+        } catch (IllegalStateException expected) {
+        }
+        storage.flush();
+
+        try {
+            write.get();
+            fail("the failed write completed");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertNull(storage.load());
+    }
+
+    public void testSavesAreWrittenRightAwayWithoutWriteBehind() {
+        release.countDown();
+        storage.setWriteBehind(false);
+        storage.save(new Car(1, "fiat", 100));
+
+        assertTrue(storage.isStored());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100)), written);
+    }
+
+    private JsonSerializerStorage<Car> reopen() {
+        return new JsonSerializerStorage<Car>(getContext(), TYPE, getName());
+    }
+}
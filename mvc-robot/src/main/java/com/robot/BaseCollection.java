@@ -1,13 +1,34 @@
 package com.robot;
 
+import android.os.Handler;
+import android.os.Looper;
+
 import com.squareup.otto.Bus;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * The {@link BaseCollection} class is an abstraction for a model that can be stored locally and sync'd remotely.
@@ -31,22 +52,130 @@ import java.util.List;
  * <br>
  * Models are compared via their equals method so it is likely that you should override the {@link #equals(Object)} method for your T models. If you
  * are going to override the {@link #equals(Object)} it is a best practice to also override the {@link #hashCode()} method, don't worry
- * eclipse can do this for you by clicking Source -> Generate hashCode() and equals()
+ * eclipse can do this for you by clicking Source -> Generate hashCode() and equals()<br>
+ * <br>
+ * Alternatively models can be identified by a key, i.e. a database id, by calling {@link #setKeyMapper(Mapper)}. When a key mapper is
+ * set the collection keeps a hash index of keys alongside the list so {@link #contains(Object)}, {@link #removeAll(java.util.Collection)}
+ * and {@link #updateAll(java.util.Collection, boolean)} no longer scan the whole list comparing elements.
  *
  * @param <T> the type of data this collection contains
  * @author fernandinho
  */
 public abstract class BaseCollection<T> implements Iterable<T> {
 
-    private List<T> list;
+    /**
+     * The elements of this collection. While {@link #snapshotReads} is enabled this is an immutable snapshot that is
+     * replaced by a new one on every write, so it is safe to read without holding {@link #lock}.
+     */
+    private volatile List<T> list;
     protected Bus bus;
 
+    /**
+     * Publishes delayed change notifications, on the main thread, for every collection that has a notification window.
+     */
+    private static Handler mainThread;
+
+    /**
+     * Lists smaller than this are always traversed sequentially by the parallel methods, i.e. {@link #parallelMap(Mapper)},
+     * because splitting them costs more than it saves.
+     */
+    public static final int PARALLEL_THRESHOLD = 50000;
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Runs chunks for the parallel methods, shared by every collection. Created on first use.
+     */
+    private static ExecutorService parallelExecutor;
+
+    /**
+     * True in the threads of {@link #parallelExecutor}, so parallel methods called from a chunk run sequentially instead of
+     * waiting for a thread of the same executor.
+     */
+    private static final ThreadLocal<Boolean> IN_PARALLEL_WORKER = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return false;
+        }
+    };
+
     /**
      * Lock used to modify the content of {@link #list}. Any write operation
      * performed on the list should be synchronized on this lock.
+     * Queries synchronize on it too unless shared or snapshot reads are enabled, see {@link #exclusiveReads()}.
      */
     protected final Object lock = new Object();
 
+    /**
+     * Taken by every write, always after {@link #lock} so both are acquired in the same order. Queries take its read side
+     * instead of {@link #lock} when {@link #sharedReads} are enabled, see {@link #beginRead()}.
+     */
+    private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    /**
+     * @see #setSnapshotReads(boolean)
+     */
+    private volatile boolean snapshotReads;
+
+    /**
+     * @see #setSharedReads(boolean)
+     */
+    private volatile boolean sharedReads;
+
+    /**
+     * Guards the state used to coalesce change notifications: {@link #batchDepth}, {@link #changesPending},
+     * {@link #notificationWindow} and {@link #notificationScheduled}
+     */
+    private final Object notificationLock = new Object();
+    private int batchDepth;
+    private boolean changesPending;
+    private long notificationWindow;
+    private boolean notificationScheduled;
+
+    /**
+     * Changes made since the last {@link ModelChangedEvent} was created, guarded by {@link #notificationLock}. When more than
+     * {@link #MAX_PENDING_CHANGES} accumulate, i.e. because changes are never notified, they are dropped and
+     * {@link #changesOverflowed} is set so the next event asks for a full refresh.
+     */
+    private final List<Change> pendingChanges = new ArrayList<Change>();
+    private boolean changesOverflowed;
+    private static final int MAX_PENDING_CHANGES = 1000;
+
+    /**
+     * Extracts the key that identifies an element, null if elements are identified by their equals method.
+     */
+    private Mapper<T, ?> keyMapper;
+
+    /**
+     * Secondary indexes by name, null if none was registered. See {@link #addIndex(String, Mapper)}.
+     */
+    private volatile Map<String, AttributeIndex<T>> attributeIndexes;
+
+    /**
+     * When not null elements are kept sorted by this comparator, see {@link #setOrder(Comparator)}.
+     */
+    private Comparator<? super T> order;
+
+    /**
+     * Counts how many elements of {@link #list} share a given key. Only maintained while a {@link #keyMapper} is set.
+     */
+    private Map<Object, Integer> index;
+
+    /**
+     * The maximum number of elements, 0 if the collection is unbounded. See {@link #setCapacity(int, EvictionPolicy)}.
+     */
+    private int capacity;
+
+    /**
+     * Chooses the elements to drop once {@link #capacity} is exceeded, null if the collection is unbounded.
+     */
+    private EvictionPolicy<T> evictionPolicy;
+
+    /**
+     * Told about every element that is added or removed, null if none. See {@link #setElementListener(ElementListener)}.
+     */
+    private ElementListener<T> elementListener;
+
     /**
      * When creating an instance of BaseCollection be aware that you must configure the event bus to connect with your global event bus instance.
      * To do this simply call {@code baseCollection.setEventBus(youEventBus)}.
@@ -58,26 +187,98 @@ public abstract class BaseCollection<T> implements Iterable<T> {
     }
 
     /**
-     * Shorthand method for removing the given data and then adding it again.
+     * Inserts or replaces the given data in a single pass. Every element of the collection that matches an element in
+     * {@code data} is replaced in place, keeping its position, and the elements in {@code data} that match nothing are
+     * appended at the end in iteration order. If {@code data} contains several elements that match each other the last one wins.
      *
-     * Object equality comparison is done using the {@link #equals(Object)} method
+     * Elements are matched by the key set in {@link #setKeyMapper(Mapper)} or, if no key mapper was set, using the
+     * {@link #equals(Object)} and {@link #hashCode()} methods
      *
      * @param data a collection of T object that will be updated. If not present, it will be added.
      * @param notify if notifyEvent is true, a {@link ModelChangedEvent} will be published after all the data has been added to the BaseCollection.
+     * @return the number of elements that were inserted and replaced
      */
-    public void updateAll(Collection<? extends T> data, boolean notify) {
-        removeAll(data);
-        addAll(data, notify);
+    public UpdateResult updateAll(Collection<? extends T> data, boolean notify) {
+        int inserted;
+        int replaced = 0;
+        List<T> evicted;
+        synchronized (lock) {
+            List<T> list = beginWrite();
+            try {
+                Map<Object, T> pending = new LinkedHashMap<Object, T>();
+                boolean needsScan = index == null;
+                for (T el : data) {
+                    Object key = keyOf(el);
+                    pending.put(key, el);
+                    needsScan = needsScan || index.containsKey(key);
+                }
+                Set<Object> matched = new HashSet<Object>();
+                if (needsScan) {
+                    for (ListIterator<T> it = list.listIterator(); it.hasNext(); ) {
+                        T current = it.next();
+                        Object key = keyOf(current);
+                        T replacement = pending.get(key);
+                        if (replacement != null || pending.containsKey(key)) {
+                            it.set(replacement);
+                            record(Change.updated(it.previousIndex(), 1));
+                            removed(current);
+                            added(replacement);
+                            matched.add(key);
+                            replaced++;
+                        }
+                    }
+                }
+                if (order != null && replaced > 0 && !isSorted(list, order)) {
+                    sort(list, order);
+                }
+                if (replaced > 0) {
+                    rebuildAttributeIndexes(list);
+                }
+                List<T> insertions = new ArrayList<T>(pending.size() - matched.size());
+                for (Map.Entry<Object, T> entry : pending.entrySet()) {
+                    if (!matched.contains(entry.getKey())) {
+                        insertions.add(entry.getValue());
+                    }
+                }
+                insertAll(list, insertions);
+                inserted = insertions.size();
+                evicted = evictOverflow(list);
+                if (inserted + replaced > 0) {
+                    publish(list);
+                }
+            } finally {
+                endWrite();
+            }
+        }
+        notifyEvicted(evicted);
+        if (notify && inserted + replaced > 0) {
+            notifyChanges();
+        }
+        return new UpdateResult(inserted, replaced);
     }
 
     /**
      * Removes a given element. If you wish to remove more than one the recommended way to do this is by using {@link #removeAll(java.util.Collection)}
      *
-     * @param el the element to remove. Removal is based on the {@code equals} method.
+     * @param el the element to remove. Removal is based on the {@code equals} method, or on the key when a
+     *           {@link #setKeyMapper(Mapper) key mapper} is set. The key index only tells whether the element is in
+     *           the collection, so removing an element that is not there is constant time, but removing one that is
+     *           still scans the list for its position: the index doesn't keep positions, since every removal shifts
+     *           the elements after it and the list has to move them anyway.
      */
     public void remove(T el) {
         synchronized (lock){
-            list.remove(el);
+            if (index != null && !index.containsKey(keyMapper.map(el))) {
+                return;
+            }
+            List<T> list = beginWrite();
+            try {
+                if (removeFirst(list, el)) {
+                    publish(list);
+                }
+            } finally {
+                endWrite();
+            }
         }
     }
 
@@ -102,7 +303,15 @@ public abstract class BaseCollection<T> implements Iterable<T> {
     public void removeAll(Collection<? extends T> els, boolean notifyChanges) {
         boolean changes;
         synchronized (lock) {
-            changes = list.removeAll(els);
+            List<T> list = beginWrite();
+            try {
+                changes = removeMatching(list, els);
+                if (changes) {
+                    publish(list);
+                }
+            } finally {
+                endWrite();
+            }
         }
         if(changes && notifyChanges) notifyChanges();
     }
@@ -112,11 +321,35 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      * and {@code notifyChanges} is {@code true}
      */
     public void clear(boolean notifyChanges) {
-        int size = size();
+        int size;
         synchronized (lock) {
-            list.clear();
+            List<T> list = beginWrite();
+            try {
+                size = list.size();
+                if (size > 0) {
+                    record(Change.removed(0, size));
+                }
+                list.clear();
+                if (index != null) {
+                    index.clear();
+                }
+                if (evictionPolicy != null) {
+                    evictionPolicy.clear();
+                }
+                if (elementListener != null) {
+                    elementListener.cleared();
+                }
+                if (attributeIndexes != null) {
+                    for (AttributeIndex<T> attributeIndex : attributeIndexes.values()) {
+                        attributeIndex.clear();
+                    }
+                }
+                publish(list);
+            } finally {
+                endWrite();
+            }
         }
-        if(size() != size && notifyChanges) notifyChanges();
+        if(size != 0 && notifyChanges) notifyChanges();
     }
 
     /**
@@ -137,17 +370,40 @@ public abstract class BaseCollection<T> implements Iterable<T> {
     }
 
     /**
-     * Iterates over the given {@link Iterable} and adds every element. Optionally publishes a {@link ModelChangedEvent}
+     * Adds every element of the given {@link Iterable} while holding the lock only once. Optionally publishes a {@link ModelChangedEvent}.
+     * When {@code el} is a {@link java.util.Collection} the underlying data structure is grown once to fit all the elements.
      *
      * @param el the elements that will be added
      * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
      */
     public void addAll(Iterable<? extends T> el, boolean notifyChanges) {
-        int originalSize = size();
-        for (T t : el) {
-            add(t, false);
+        boolean changes;
+        List<T> evicted = Collections.emptyList();
+        synchronized (lock) {
+            List<T> list = beginWrite();
+            try {
+                Collection<? extends T> elements;
+                if (el instanceof Collection) {
+                    elements = (Collection<? extends T>) el;
+                } else {
+                    List<T> copy = new ArrayList<T>();
+                    for (T t : el) {
+                        copy.add(t);
+                    }
+                    elements = copy;
+                }
+                changes = !elements.isEmpty();
+                if (changes) {
+                    insertAll(list, elements);
+                    evicted = evictOverflow(list);
+                    publish(list);
+                }
+            } finally {
+                endWrite();
+            }
         }
-        if (notifyChanges && size() > originalSize) {
+        notifyEvicted(evicted);
+        if (notifyChanges && changes) {
             notifyChanges();
         }
     }
@@ -159,9 +415,25 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
      */
     public void add(T el, boolean notifyChanges) {
+        List<T> evicted;
         synchronized (lock) {
-            list.add(el);
+            List<T> list = beginWrite();
+            try {
+                int position = order == null ? list.size() : insertionPoint(list, el);
+                list.add(position, el);
+                record(Change.inserted(position, 1));
+                if (index != null) {
+                    index(el);
+                }
+                indexAttributes(el);
+                added(el);
+                evicted = evictOverflow(list);
+                publish(list);
+            } finally {
+                endWrite();
+            }
         }
+        notifyEvicted(evicted);
         if (notifyChanges) {
             notifyChanges();
         }
@@ -174,18 +446,82 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      * @return the list of mapped elements.
      */
     public <K> List<K> map(Mapper<T, K> mapper) {
-        synchronized (lock){
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                return map(list, mapper);
+            }
+        }
+        Lock readLock = beginRead();
+        try {
             return map(list, mapper);
+        } finally {
+            endRead(readLock);
         }
     }
 
     /**
      * Runs an iterator through every element in the BaseModel. Order is not guaranteed.
+     * Unlike a for-each loop over this collection, this method allocates nothing when the underlying data structure
+     * implements {@link java.util.RandomAccess}, as the default one does, so it is the preferred way to traverse the
+     * collection in hot paths such as drawing a frame.
      * @param iterator the iterator interface.
      */
     public void each(Iter<T> iterator) {
-        for (T el : list) {
-            iterator.item(el);
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                each(list, iterator);
+            }
+            return;
+        }
+        Lock readLock = beginRead();
+        try {
+            each(list, iterator);
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * Same as {@link #map(Mapper)} but adds the mapped elements to the given list instead of creating a new one, so a
+     * caller that keeps and clears its result list between calls does not allocate in steady state.
+     *
+     * @param result the list where mapped elements are added, it is not cleared
+     * @return {@code result}
+     */
+    public <K> List<K> mapInto(List<K> result, Mapper<T, K> mapper) {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                return mapInto(list, result, mapper);
+            }
+        }
+        Lock readLock = beginRead();
+        try {
+            return mapInto(list, result, mapper);
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * Same as {@link #filter(Filter[])} but adds the elements that pass every filter to the given list instead of creating
+     * a new one. To avoid allocating the varargs array on every call keep the filters in an array and pass it.
+     *
+     * @param result the list where the elements are added, it is not cleared
+     * @return {@code result}
+     */
+    public List<T> filterInto(List<T> result, Filter<T>... filters) {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> candidates = indexedCandidates(filters);
+                return filterInto(candidates != null ? candidates : list, result, filters);
+            }
+        }
+        Lock readLock = beginIndexedRead();
+        try {
+            List<T> candidates = readLock == null ? null : indexedCandidates(filters);
+            return filterInto(candidates != null ? candidates : list, result, filters);
+        } finally {
+            endRead(readLock);
         }
     }
 
@@ -195,8 +531,16 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      * @return the calculated reductions
      */
     public <K> K reduce(K initialValue, Reducer<T, K> reducer) {
-        synchronized (lock){
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                return reduce(initialValue, reducer, list);
+            }
+        }
+        Lock readLock = beginRead();
+        try {
             return reduce(initialValue, reducer, list);
+        } finally {
+            endRead(readLock);
         }
     }
 
@@ -210,8 +554,78 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      * </p>
      */
     public List<T> filter(Filter<T>... filters) {
-        synchronized (lock) {
-            return filter(list, filters);
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> candidates = indexedCandidates(filters);
+                return filter(candidates != null ? candidates : list, filters);
+            }
+        }
+        Lock readLock = beginIndexedRead();
+        try {
+            List<T> candidates = readLock == null ? null : indexedCandidates(filters);
+            return filter(candidates != null ? candidates : list, filters);
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * Starts a lazy query over the elements of this collection. Unlike chaining {@link #filter(Filter[])} and
+     * {@link #map(Mapper)}, the stages of a query are fused into a single traversal without intermediate lists, and the
+     * traversal stops early when the query has a limit or only needs its first element.
+     *
+     * @return a new query over this collection
+     * @see Query
+     */
+    public Query<T> query() {
+        return new Query<T>(this);
+    }
+
+    /**
+     * Parallel version of {@link #map(Mapper)}, see {@link #parallelMap(java.util.List, Mapper)}. The elements are copied
+     * before the work is split, and the lock is released before the mapper runs, so the mapper may call other methods of
+     * this collection, i.e. {@link #contains(Object)}.
+     */
+    public <K> List<K> parallelMap(Mapper<T, K> mapper) {
+        return parallelMap(copyCandidates(null), mapper);
+    }
+
+    /**
+     * Parallel version of {@link #filter(Filter[])}, see {@link #parallelFilter(java.util.List, Filter[])}. Like
+     * {@link #parallelMap(Mapper)} the filters run on a copy of the elements, after the lock is released.
+     */
+    public List<T> parallelFilter(Filter<T>... filters) {
+        return parallelFilter(copyCandidates(filters), filters);
+    }
+
+    /**
+     * Parallel version of {@link #reduce(Object, Reducer)}, see {@link #parallelReduce(Object, Reducer, Combiner, java.util.List)}.
+     * Like {@link #parallelMap(Mapper)} the reducer runs on a copy of the elements, after the lock is released.
+     */
+    public <K> K parallelReduce(K initialValue, Reducer<T, K> reducer, Combiner<K> combiner) {
+        return parallelReduce(initialValue, reducer, combiner, copyCandidates(null));
+    }
+
+    /**
+     * Copies the elements that can pass the given filters, the ones found in an index if a filter can be answered by one
+     * or all of them otherwise, while excluding writers. Parallel queries traverse the copy after releasing the lock, so
+     * their workers never wait for a lock held by the thread that is waiting for them.
+     *
+     * @param filters the filters of the query, null to copy every element
+     */
+    private List<T> copyCandidates(Filter<T>[] filters) {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> candidates = filters == null ? null : indexedCandidates(filters);
+                return new ArrayList<T>(candidates != null ? candidates : list);
+            }
+        }
+        Lock readLock = beginIndexedRead();
+        try {
+            List<T> candidates = filters == null || readLock == null ? null : indexedCandidates(filters);
+            return new ArrayList<T>(candidates != null ? candidates : list);
+        } finally {
+            endRead(readLock);
         }
     }
 
@@ -220,7 +634,69 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      * @see #filterFirst(java.util.Collection, com.robot.BaseCollection.Filter[])
      */
     public T filterFirst(Filter<T>... filters) {
-        return filterFirst(list, filters);
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> candidates = indexedCandidates(filters);
+                return filterFirst(candidates != null ? candidates : list, filters);
+            }
+        }
+        Lock readLock = beginIndexedRead();
+        try {
+            List<T> candidates = readLock == null ? null : indexedCandidates(filters);
+            return filterFirst(candidates != null ? candidates : list, filters);
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * Registers a secondary index on an attribute of the elements, i.e. their status or their owner's id.
+     * Calls to {@link #filter(Filter[])} and {@link #filterFirst(Filter[])} that include a {@link DefFilter} created with
+     * this index name are answered by looking up the filter's value in the index, and only the elements found there are
+     * checked against the filters, instead of scanning the whole collection. The index is kept up to date by every method
+     * that modifies the collection.<br>
+     * <br>
+     * Results obtained through an index contain the elements in the order they were indexed, which is the order of the
+     * collection unless it is sorted or elements were replaced by {@link #updateAll(java.util.Collection, boolean)}.
+     *
+     * @param name      the name of the index, referenced by {@link DefFilter#getIndex()}
+     * @param attribute maps an element to the value of the indexed attribute, which must implement equals and hashCode
+     */
+    public void addIndex(String name, Mapper<T, ?> attribute) {
+        synchronized (lock) {
+            readWriteLock.writeLock().lock();
+            try {
+                AttributeIndex<T> attributeIndex = new AttributeIndex<T>(attribute);
+                attributeIndex.rebuild(list);
+                Map<String, AttributeIndex<T>> indexes = attributeIndexes == null ?
+                        new HashMap<String, AttributeIndex<T>>() : attributeIndexes;
+                indexes.put(name, attributeIndex);
+                attributeIndexes = indexes;
+            } finally {
+                readWriteLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes an index registered with {@link #addIndex(String, Mapper)}
+     *
+     * @param name the name of the index
+     */
+    public void removeIndex(String name) {
+        synchronized (lock) {
+            readWriteLock.writeLock().lock();
+            try {
+                if (attributeIndexes != null) {
+                    attributeIndexes.remove(name);
+                    if (attributeIndexes.isEmpty()) {
+                        attributeIndexes = null;
+                    }
+                }
+            } finally {
+                readWriteLock.writeLock().unlock();
+            }
+        }
     }
 
     /**
@@ -230,7 +706,16 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      * @param comparator the comparator used to sort the inner collection
      */
     public void sort(Comparator<T> comparator) {
-        Collections.sort(list, comparator);
+        synchronized (lock) {
+            List<T> list = beginWrite();
+            try {
+                if (sort(list, comparator)) {
+                    publish(list);
+                }
+            } finally {
+                endWrite();
+            }
+        }
     }
 
     /**
@@ -247,10 +732,114 @@ public abstract class BaseCollection<T> implements Iterable<T> {
     }
 
     /**
-     * Publishes a {@link ModelChangedEvent}
+     * Publishes a {@link ModelChangedEvent}. Inside a batch (see {@link #beginBatch()}) the event is held back until the
+     * outermost batch ends, and if a notification window is set (see {@link #setNotificationWindow(long)}) every call made
+     * within the window is collapsed into a single event.
      */
     public void notifyChanges() {
-        notifyEvent(getModelChangeEventInstance());
+        synchronized (notificationLock) {
+            changesPending = true;
+            if (batchDepth > 0) {
+                return;
+            }
+            if (notificationWindow > 0) {
+                if (!notificationScheduled) {
+                    notificationScheduled = true;
+                    getMainThread().postDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            publishWindowedChanges();
+                        }
+                    }, notificationWindow);
+                }
+                return;
+            }
+            changesPending = false;
+        }
+        notifyEvent(createModelChangedEvent());
+    }
+
+    /**
+     * Called when a notification window closes. Publishes nothing if a batch started during the window, the end of the
+     * batch publishes the changes instead, or if the changes were already published, i.e. because the window was removed.
+     */
+    private void publishWindowedChanges() {
+        synchronized (notificationLock) {
+            notificationScheduled = false;
+            if (batchDepth > 0 || !changesPending) {
+                return;
+            }
+            changesPending = false;
+        }
+        notifyEvent(createModelChangedEvent());
+    }
+
+    /**
+     * Starts a batch. Until the matching call to {@link #endBatch()} calls to {@link #notifyChanges()}, including the ones
+     * made by methods like {@link #add(Object)}, do not publish anything; a single {@link ModelChangedEvent} is published
+     * when the batch ends if there were any. Batches can be nested, only the outermost one publishes.<br>
+     * <br>
+     * <code>
+     * collection.beginBatch();<br>
+     * try {<br>
+     * //add, remove, update...<br>
+     * } finally {<br>
+     * collection.endBatch();<br>
+     * }<br>
+     * </code>
+     *
+     * @see #batch(Runnable)
+     */
+    public void beginBatch() {
+        synchronized (notificationLock) {
+            batchDepth++;
+        }
+    }
+
+    /**
+     * Ends a batch started by {@link #beginBatch()} and publishes a {@link ModelChangedEvent} if changes were notified during it.
+     */
+    public void endBatch() {
+        synchronized (notificationLock) {
+            if (batchDepth == 0) {
+                throw new IllegalStateException("endBatch() called without a matching beginBatch()");
+            }
+            batchDepth--;
+            if (batchDepth > 0 || !changesPending) {
+                return;
+            }
+            changesPending = false;
+        }
+        notifyChanges();
+    }
+
+    /**
+     * Runs the given operations inside a batch so at most one {@link ModelChangedEvent} is published for all of them.
+     *
+     * @param operations the operations to run
+     * @see #beginBatch()
+     */
+    public void batch(Runnable operations) {
+        beginBatch();
+        try {
+            operations.run();
+        } finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Sets a window during which change notifications are collapsed. The first call to {@link #notifyChanges()} schedules
+     * a {@link ModelChangedEvent} to be published {@code millis} milliseconds later, and any other call made before then is
+     * absorbed by it. The event is published from the main thread, so the default bus, which only accepts posts from
+     * the main thread, can be used.
+     *
+     * @param millis the length of the window in milliseconds, 0 (the default) publishes every notification immediately.
+     */
+    public void setNotificationWindow(long millis) {
+        synchronized (notificationLock) {
+            this.notificationWindow = millis;
+        }
     }
 
     /**
@@ -273,11 +862,29 @@ public abstract class BaseCollection<T> implements Iterable<T> {
 
     /**
      * @return a {@link java.util.List} representation of this {@link BaseCollection}'s elements. Order is not guaranteed.
+     * If {@link #setSnapshotReads(boolean) snapshot reads} are enabled this is an immutable snapshot of the current elements.
      */
     public List<T> toList() {
         return list;
     }
 
+    /**
+     * @return the element at the given position
+     */
+    public T get(int position) {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                return list.get(position);
+            }
+        }
+        Lock readLock = beginRead();
+        try {
+            return list.get(position);
+        } finally {
+            endRead(readLock);
+        }
+    }
+
     /**
      * @return the number of elements in this collection
      */
@@ -302,81 +909,890 @@ public abstract class BaseCollection<T> implements Iterable<T> {
     }
 
     /**
-     * Sets the underlying data structure.
+     * Sets the underlying data structure, i.e. an {@link OffHeapList} to keep very large collections outside of the heap.
      * @param list the replacement for the default list.
      */
     public void setList(List<T> list){
-        this.list = list;
+        synchronized (lock) {
+            readWriteLock.writeLock().lock();
+            try {
+                if (order != null && !isSorted(list, order)) {
+                    Collections.sort(list, order);
+                }
+                this.list = snapshotReads ? Collections.unmodifiableList(new ArrayList<T>(list)) : list;
+                rebuildIndex();
+                rebuildAttributeIndexes(list);
+                if (evictionPolicy != null) {
+                    evictionPolicy.clear();
+                    for (T el : list) {
+                        evictionPolicy.onAdded(el);
+                    }
+                }
+                if (elementListener != null) {
+                    elementListener.cleared();
+                }
+            } finally {
+                readWriteLock.writeLock().unlock();
+            }
+        }
     }
 
-
     /**
-     * @param el the element
-     * @return Returns true if the underlying collection contains the given element.
+     * Enables or disables snapshot reads. By default readers such as {@link #iterator()} or {@link #each(Iter)} look at the
+     * live data structure, so iterating while another thread adds elements can throw a
+     * {@link java.util.ConcurrentModificationException}, and {@link #filter(Filter[])}, {@link #map(Mapper)} and
+     * {@link #reduce(Object, Reducer)} block writers until they finish.<br>
+     * <br>
+     * With snapshot reads enabled every write copies the current elements, applies the change to the copy and then publishes
+     * it as the new immutable version. Readers never take the lock, never block writers and always see a consistent version
+     * of the collection. This makes every write cost O(n), so it suits collections that are read much more often than
+     * they are written; prefer {@link #addAll(Iterable, boolean)} over several calls to {@link #add(Object, boolean)}.
+     * Enabling snapshot reads copies the data structure set in {@link #setList(java.util.List)} into an array list.
+     *
+     * @param snapshotReads true to enable snapshot reads
      */
-    public boolean contains(T el) {
-        return list.contains(el);
+    public void setSnapshotReads(boolean snapshotReads) {
+        synchronized (lock) {
+            readWriteLock.writeLock().lock();
+            try {
+                if (this.snapshotReads != snapshotReads) {
+                    this.snapshotReads = snapshotReads;
+                    list = snapshotReads ? Collections.unmodifiableList(new ArrayList<T>(list)) : new ArrayList<T>(list);
+                }
+            } finally {
+                readWriteLock.writeLock().unlock();
+            }
+        }
     }
 
     /**
-     * When listening to changes from this collection using the event bus it is necessary to override this method and return
-     * a suitable ModelChangedEvent subclass. As a simple example, consider you have a {@code UsersBaseCollection} and after adding
-     * a user a ModelChangedEvent is published. you could listen to the {@code ModelChangedEvent} but this will be called for every
-     * BaseCollection, it would instead be better to override this method and return a {@code UsersChangedEvent}, this way you can register
-     * to changes of only this {@code UsersBaseCollection}
+     * Enables or disables shared reads. By default {@link #filter(Filter[])}, {@link #map(Mapper)} and
+     * {@link #reduce(Object, Reducer)} hold an exclusive lock while traversing the collection, so concurrent queries run one
+     * after the other. With shared reads enabled queries take the read side of a {@link java.util.concurrent.locks.ReentrantReadWriteLock}
+     * instead, so any number of them can run at the same time and only writes are exclusive. Callbacks passed to queries,
+     * i.e. to {@link #each(Iter)}, must not modify the collection nor synchronize on {@link #lock}: a read lock can't be
+     * upgraded to a write lock, and a writer waits for it while holding {@link #lock}.<br>
+     * <br>
+     * When {@link #setSnapshotReads(boolean) snapshot reads} are enabled queries do not lock at all and this setting has no effect.
      *
-     * @return returns a new instance of ModelChangedEvent
+     * @param sharedReads true to let queries run concurrently
      */
-    public ModelChangedEvent getModelChangeEventInstance() {
-        return new ModelChangedEvent();
-    }
-
-
-    @Override
-    public String toString() {
-        return "[" + BaseCollection.class.getSimpleName() + " (" + size() + "): " + list + "]";
+    public void setSharedReads(boolean sharedReads) {
+        this.sharedReads = sharedReads;
     }
 
-    //======================================================================
-    // Static methods
-    //======================================================================
-
     /**
-     * Maps every single object in a collection to another object and returns the mapped collection.
+     * Sets the function used to identify elements. Once set, two elements with equal keys are considered the same element
+     * by {@link #contains(Object)}, {@link #remove(Object)}, {@link #removeAll(java.util.Collection)} and
+     * {@link #updateAll(java.util.Collection, boolean)}, and those lookups are answered by a hash index instead of a list scan.
+     * Iteration order is not affected.<br>
+     * <br>
+     * The index is only kept up to date by this class' methods, so the list returned by {@link #toList()} should not be
+     * modified directly while a key mapper is set.
      *
-     * This method takes every element in {@code collection} and applies the {@code mapper} function.
-     *
-     * @param collection the input collection
-     * @param mapper the mapping function that takes an element and applies a transformation to the object
-     * @param <T> the type of the elements in the input collection
-     * @param <K> the type of the elements in the output collection
-     * @return the mapped collection
+     * @param keyMapper maps an element to its key, the key must implement equals and hashCode. Use null to go back to
+     *                  comparing elements with their equals method.
      */
-    public static <T, K> List<K> map(Collection<T> collection, Mapper<T, K> mapper) {
-        List<K> result = new ArrayList<K>();
-        for (T el : collection) {
-            K mapped = mapper.map(el);
-            result.add(mapped);
+    public void setKeyMapper(Mapper<T, ?> keyMapper) {
+        synchronized (lock) {
+            readWriteLock.writeLock().lock();
+            try {
+                this.keyMapper = keyMapper;
+                rebuildIndex();
+            } finally {
+                readWriteLock.writeLock().unlock();
+            }
         }
-        return result;
     }
 
+
     /**
-     * Similar to {@link #filter(Filter...)} but it only returns the first element that matches all filters
+     * @param el the element
+     * @return Returns true if the underlying collection contains the given element.
+     */
+    public boolean contains(T el) {
+        if (keyMapper == null) {
+            return list.contains(el);
+        }
+        Lock readLock = readWriteLock.readLock();
+        readLock.lock();
+        try {
+            return index != null ? index.containsKey(keyMapper.map(el)) : list.contains(el);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Bounds the number of elements of this collection. Once an insertion makes the collection grow past {@code capacity}
+     * the given policy chooses which elements are dropped, i.e. {@link EvictionPolicy.Lru} keeps the most recently used ones.
+     * Evicted elements are removed like any other element, so the next {@link ModelChangedEvent} reports them as
+     * {@link Change.Type#removed} changes, and they are also published in an {@link ElementsEvictedEvent} right after the
+     * insertion that caused them, see {@link #onEvicted(java.util.List)}.<br>
+     * <br>
+     * The policy is told about every current element, and elements over the capacity are evicted right away. Policies track
+     * elements by the instances added to the collection, so a bounded collection should not use a data structure that
+     * creates a new instance on every read, i.e. an {@link OffHeapList}.
+     *
+     * @param capacity the maximum number of elements, 0 to make the collection unbounded again
+     * @param policy   chooses the elements to evict, may only be null if {@code capacity} is 0
+     */
+    public void setCapacity(int capacity, EvictionPolicy<T> policy) {
+        if (capacity < 0 || (capacity > 0 && policy == null)) {
+            throw new IllegalArgumentException("a positive capacity requires an eviction policy");
+        }
+        List<T> evicted;
+        synchronized (lock) {
+            List<T> list = beginWrite();
+            try {
+                this.capacity = capacity;
+                this.evictionPolicy = capacity == 0 ? null : policy;
+                if (evictionPolicy != null) {
+                    evictionPolicy.clear();
+                    for (T el : list) {
+                        evictionPolicy.onAdded(el);
+                    }
+                }
+                evicted = evictOverflow(list);
+                if (!evicted.isEmpty()) {
+                    publish(list);
+                }
+            } finally {
+                endWrite();
+            }
+        }
+        notifyEvicted(evicted);
+        if (!evicted.isEmpty()) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * @return the maximum number of elements of this collection, 0 if it is unbounded
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Tells the eviction policy that the given element was used, i.e. when it is shown on screen, so policies such as
+     * {@link EvictionPolicy.Lru} keep it longer. Does nothing if the collection is unbounded.
+     *
+     * @param el an element of this collection, the same instance that was added
+     */
+    public void touch(T el) {
+        synchronized (lock) {
+            if (evictionPolicy != null) {
+                evictionPolicy.onAccessed(el);
+            }
+        }
+    }
+
+    /**
+     * Called, without holding any lock, with the elements evicted by an insertion into a bounded collection and before an
+     * {@link ElementsEvictedEvent} is published. Does nothing by default, subclasses can override it i.e. to persist the
+     * evicted elements.
+     *
+     * @param evicted the evicted elements, in the order they had in the collection
+     * @see #setCapacity(int, EvictionPolicy)
+     */
+    protected void onEvicted(List<T> evicted) {
+    }
+
+    /**
+     * Similar to {@link #getModelChangeEventInstance()}, subclasses can override this method to publish a more specific event.
+     *
+     * @param evicted the evicted elements
+     * @return returns a new instance of ElementsEvictedEvent
+     */
+    public ElementsEvictedEvent<T> getElementsEvictedEventInstance(List<T> evicted) {
+        return new ElementsEvictedEvent<T>(evicted);
+    }
+
+    /**
+     * When listening to changes from this collection using the event bus it is necessary to override this method and return
+     * a suitable ModelChangedEvent subclass. As a simple example, consider you have a {@code UsersBaseCollection} and after adding
+     * a user a ModelChangedEvent is published. you could listen to the {@code ModelChangedEvent} but this will be called for every
+     * BaseCollection, it would instead be better to override this method and return a {@code UsersChangedEvent}, this way you can register
+     * to changes of only this {@code UsersBaseCollection}
+     *
+     * @return returns a new instance of ModelChangedEvent
+     */
+    public ModelChangedEvent getModelChangeEventInstance() {
+        return new ModelChangedEvent();
+    }
+
+
+    /**
+     * Removes every element that matches some element in {@code els}, by key if a {@link #keyMapper} is set, in a single
+     * pass over the given list and records the removed ranges. Must be called while holding {@link #lock}.
+     *
+     * @return true if at least one element was removed
+     */
+    private boolean removeMatching(List<T> list, Collection<? extends T> els) {
+        Collection<?> keys = els;
+        if (index != null) {
+            Set<Object> indexed = new HashSet<Object>();
+            for (T el : els) {
+                Object key = keyMapper.map(el);
+                if (index.containsKey(key)) {
+                    indexed.add(key);
+                }
+            }
+            if (indexed.isEmpty()) {
+                return false;
+            }
+            keys = indexed;
+        }
+        BitSet positions = new BitSet(list.size());
+        int position = 0;
+        int kept = 0;
+        int removed = 0;
+        for (T el : list) {
+            if (keys.contains(keyOf(el))) {
+                positions.set(position++);
+                removed(el);
+                removed++;
+                continue;
+            }
+            if (removed > 0) {
+                record(Change.removed(kept, removed));
+                removed = 0;
+            }
+            position++;
+            kept++;
+        }
+        if (removed > 0) {
+            record(Change.removed(kept, removed));
+        }
+        if (kept == list.size()) {
+            return false;
+        }
+        removePositions(list, positions);
+        if (index != null) {
+            for (Object key : keys) {
+                index.remove(key);
+            }
+        }
+        rebuildAttributeIndexes(list);
+        return true;
+    }
+
+    /**
+     * Removes the elements at the positions set in {@code positions} in place, moving every kept element at most once:
+     * an {@link OffHeapList} moves its rows without decoding them, and other lists shift their elements down and drop
+     * the tail instead of being rebuilt from a copy. Must be called while holding {@link #lock}.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void removePositions(List<T> list, BitSet positions) {
+        if (list instanceof OffHeapList) {
+            ((OffHeapList<T>) list).removeRows(positions);
+            return;
+        }
+        int size = list.size();
+        if (!(list instanceof RandomAccess)) {
+            int position = 0;
+            for (Iterator<T> it = list.iterator(); it.hasNext(); position++) {
+                it.next();
+                if (positions.get(position)) {
+                    it.remove();
+                }
+            }
+            return;
+        }
+        int to = positions.nextSetBit(0);
+        if (to < 0 || to >= size) {
+            return;
+        }
+        for (int from = positions.nextClearBit(to); from < size; from = positions.nextClearBit(from + 1)) {
+            list.set(to++, list.get(from));
+        }
+        list.subList(to, size).clear();
+    }
+
+    /**
+     * Removes the first element of the given list that matches {@code el}, by key if a {@link #keyMapper} is set.
+     * Must be called while holding {@link #lock}.
+     *
+     * @return true if an element was removed
+     */
+    private boolean removeFirst(List<T> list, T el) {
+        Object key = keyOf(el);
+        for (ListIterator<T> it = list.listIterator(); it.hasNext(); ) {
+            T current = it.next();
+            if (equal(key, keyOf(current))) {
+                record(Change.removed(it.previousIndex(), 1));
+                it.remove();
+                if (index != null) {
+                    unindex(current);
+                }
+                if (attributeIndexes != null) {
+                    for (AttributeIndex<T> attributeIndex : attributeIndexes.values()) {
+                        attributeIndex.remove(current);
+                    }
+                }
+                removed(current);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the elements chosen by the {@link #evictionPolicy} until the given list fits in {@link #capacity}, in a single
+     * pass, and records the removed ranges. Must be called while holding {@link #lock}.
+     *
+     * @return the evicted elements, in the order they had in the list
+     */
+    private List<T> evictOverflow(List<T> list) {
+        if (evictionPolicy == null || list.size() <= capacity) {
+            return Collections.emptyList();
+        }
+        Map<T, Boolean> victims = new IdentityHashMap<T, Boolean>();
+        int overflow = list.size() - capacity;
+        while (victims.size() < overflow) {
+            T victim = evictionPolicy.evict();
+            if (victim == null) {
+                break;
+            }
+            victims.put(victim, Boolean.TRUE);
+        }
+        if (victims.isEmpty()) {
+            return Collections.emptyList();
+        }
+        BitSet positions = new BitSet(list.size());
+        List<T> evicted = new ArrayList<T>(victims.size());
+        int position = 0;
+        int kept = 0;
+        int removed = 0;
+        for (T el : list) {
+            if (victims.remove(el) != null) {
+                positions.set(position++);
+                evicted.add(el);
+                if (index != null) {
+                    unindex(el);
+                }
+                removed++;
+                continue;
+            }
+            if (removed > 0) {
+                record(Change.removed(kept, removed));
+                removed = 0;
+            }
+            position++;
+            kept++;
+        }
+        if (removed > 0) {
+            record(Change.removed(kept, removed));
+        }
+        removePositions(list, positions);
+        rebuildAttributeIndexes(list);
+        return evicted;
+    }
+
+    /**
+     * Calls {@link #onEvicted(java.util.List)} and publishes an {@link ElementsEvictedEvent} if any element was evicted.
+     * Must be called after releasing {@link #lock}.
+     */
+    private void notifyEvicted(List<T> evicted) {
+        if (!evicted.isEmpty()) {
+            onEvicted(evicted);
+            notifyEvent(getElementsEvictedEventInstance(evicted));
+        }
+    }
+
+    /**
+     * Sorts the given list and records the resulting permutation as a single {@link Change.Type#moved} change.
+     * Must be called while holding {@link #lock}.
+     *
+     * @return true if any element changed its position
+     */
+    @SuppressWarnings("unchecked")
+    private boolean sort(List<T> list, final Comparator<? super T> comparator) {
+        final Object[] elements = list.toArray();
+        Integer[] order = new Integer[elements.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return comparator.compare((T) elements[a], (T) elements[b]);
+            }
+        });
+        int[] previousPositions = new int[order.length];
+        boolean moved = false;
+        ListIterator<T> it = list.listIterator();
+        for (int i = 0; i < order.length; i++) {
+            it.next();
+            it.set((T) elements[order[i]]);
+            previousPositions[i] = order[i];
+            moved = moved || order[i] != i;
+        }
+        if (moved) {
+            record(Change.moved(0, previousPositions));
+        }
+        return moved;
+    }
+
+    /**
+     * Adds the given elements, appending them or merging them in when an {@link #order} is set, indexes them and records
+     * where they were inserted. Must be called while holding {@link #lock}.
+     */
+    private void insertAll(List<T> list, Collection<? extends T> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        if (order == null) {
+            int originalSize = list.size();
+            if (list instanceof ArrayList) {
+                ((ArrayList<T>) list).ensureCapacity(originalSize + elements.size());
+            }
+            list.addAll(elements);
+            record(Change.inserted(originalSize, elements.size()));
+        } else {
+            merge(list, elements);
+        }
+        for (T el : elements) {
+            if (index != null) {
+                index(el);
+            }
+            indexAttributes(el);
+            added(el);
+        }
+    }
+
+    /**
+     * Sorts the given elements and merges them into the ordered list in a single pass, recording every run of consecutive
+     * insertions. Elements that compare equal to elements already in the list are placed after them.
+     * Must be called while holding {@link #lock} with an {@link #order} set.
+     */
+    private void merge(List<T> list, Collection<? extends T> elements) {
+        List<T> incoming = new ArrayList<T>(elements);
+        Collections.sort(incoming, order);
+        List<T> merged = new ArrayList<T>(list.size() + incoming.size());
+        Iterator<T> existing = list.iterator();
+        T next = existing.hasNext() ? existing.next() : null;
+        boolean hasNext = !list.isEmpty();
+        int run = 0;
+        for (T el : incoming) {
+            while (hasNext && order.compare(next, el) <= 0) {
+                if (run > 0) {
+                    record(Change.inserted(merged.size() - run, run));
+                    run = 0;
+                }
+                merged.add(next);
+                hasNext = existing.hasNext();
+                next = hasNext ? existing.next() : null;
+            }
+            merged.add(el);
+            run++;
+        }
+        record(Change.inserted(merged.size() - run, run));
+        while (hasNext) {
+            merged.add(next);
+            hasNext = existing.hasNext();
+            next = hasNext ? existing.next() : null;
+        }
+        list.clear();
+        list.addAll(merged);
+    }
+
+    /**
+     * @return the position after the last element of the ordered list that is not greater than {@code el}
+     */
+    private int insertionPoint(List<T> list, T el) {
+        int low = 0;
+        int high = list.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (order.compare(list.get(middle), el) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static <T> boolean isSorted(List<T> list, Comparator<? super T> comparator) {
+        T previous = null;
+        boolean first = true;
+        for (T el : list) {
+            if (!first && comparator.compare(previous, el) > 0) {
+                return false;
+            }
+            previous = el;
+            first = false;
+        }
+        return true;
+    }
+
+    /**
+     * Sets the listener told about every element added to or removed from this collection, i.e. so a
+     * {@link StorableCollection} can save only what changed. The listener is called while holding {@link #lock}.
+     *
+     * @param elementListener the listener, null to remove it
+     */
+    void setElementListener(ElementListener<T> elementListener) {
+        synchronized (lock) {
+            this.elementListener = elementListener;
+        }
+    }
+
+    /**
+     * Keeps the elements of this collection sorted by the given comparator: the current elements are sorted and from then
+     * on every insertion is placed in its sorted position. Used by {@link SortedCollection}.
+     *
+     * @param order the comparator, null to go back to insertion order
+     */
+    void setOrder(Comparator<? super T> order) {
+        synchronized (lock) {
+            List<T> list = beginWrite();
+            try {
+                this.order = order;
+                if (order != null && sort(list, order)) {
+                    publish(list);
+                }
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    /**
+     * Adds a change to the changes that will be attached to the next {@link ModelChangedEvent}, merging it with the last
+     * one when both describe contiguous ranges of the same type.
+     */
+    private void record(Change change) {
+        synchronized (notificationLock) {
+            if (changesOverflowed) {
+                return;
+            }
+            if (!pendingChanges.isEmpty() && pendingChanges.get(pendingChanges.size() - 1).merge(change)) {
+                return;
+            }
+            if (pendingChanges.size() == MAX_PENDING_CHANGES) {
+                pendingChanges.clear();
+                changesOverflowed = true;
+                return;
+            }
+            pendingChanges.add(change);
+        }
+    }
+
+    /**
+     * @return a new {@link ModelChangedEvent} carrying every change recorded since the last one was created
+     */
+    private ModelChangedEvent createModelChangedEvent() {
+        ModelChangedEvent event = getModelChangeEventInstance();
+        synchronized (notificationLock) {
+            if (changesOverflowed || pendingChanges.isEmpty()) {
+                event.setChanges(Collections.<Change>emptyList(), true);
+            } else {
+                event.setChanges(Collections.unmodifiableList(new ArrayList<Change>(pendingChanges)), false);
+            }
+            pendingChanges.clear();
+            changesOverflowed = false;
+        }
+        return event;
+    }
+
+    /**
+     * @return true if queries must synchronize on {@link #lock}, which they do unless {@link #sharedReads} or
+     * {@link #snapshotReads} are enabled. Otherwise they call {@link #beginRead()} and {@link #endRead(Lock)}.
+     */
+    boolean exclusiveReads() {
+        return !sharedReads && !snapshotReads;
+    }
+
+    /**
+     * Must be called before reading {@link #list} in a query that doesn't synchronize on {@link #lock}, see
+     * {@link #exclusiveReads()}, and must always be followed by {@link #endRead(Lock)}. Takes the read side of
+     * {@link #readWriteLock}, so the query runs alongside other queries but not writers, or nothing when
+     * {@link #snapshotReads} are enabled.
+     *
+     * @return the lock that was taken, null if none
+     */
+    Lock beginRead() {
+        if (snapshotReads) {
+            return null;
+        }
+        Lock readLock = readWriteLock.readLock();
+        readLock.lock();
+        return readLock;
+    }
+
+    /**
+     * Same as {@link #beginRead()}, for queries that may look up {@link #indexedCandidates(Filter[])}. Writers modify the
+     * attribute indexes in place, so the read side is also taken when {@link #snapshotReads} are enabled and an index is
+     * registered. Queries must not look up an index if no lock was taken.
+     *
+     * @return the lock that was taken, null if none
+     */
+    private Lock beginIndexedRead() {
+        if (snapshotReads && attributeIndexes == null) {
+            return null;
+        }
+        Lock readLock = readWriteLock.readLock();
+        readLock.lock();
+        return readLock;
+    }
+
+    /**
+     * Releases the lock returned by {@link #beginRead()}
+     */
+    void endRead(Lock readLock) {
+        if (readLock != null) {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * @return the current elements of this collection. Queries should call it between {@link #beginRead()} and {@link #endRead(Lock)}.
+     */
+    List<T> elements() {
+        return list;
+    }
+
+    /**
+     * Must be called while holding {@link #lock} before modifying the elements of this collection, and must always be
+     * followed by {@link #endWrite()}. Takes the write lock of {@link #readWriteLock}.
+     *
+     * @return the list that should be modified, a private copy of the current elements if {@link #snapshotReads} are enabled
+     */
+    private List<T> beginWrite() {
+        readWriteLock.writeLock().lock();
+        return snapshotReads ? new ArrayList<T>(list) : list;
+    }
+
+    /**
+     * Must be called after modifying the list returned by {@link #beginWrite()}, publishes it as the new version of this collection.
+     */
+    private void publish(List<T> written) {
+        if (snapshotReads) {
+            list = Collections.unmodifiableList(written);
+        }
+    }
+
+    /**
+     * Releases the write lock taken by {@link #beginWrite()}.
+     */
+    private void endWrite() {
+        readWriteLock.writeLock().unlock();
+    }
+
+    /**
+     * Recreates {@link #index} from the contents of {@link #list}. Must be called while holding {@link #lock}.
+     */
+    /**
+     * Must be called while holding {@link #lock}.
+     *
+     * @return the feature that makes {@link #setList(java.util.List)} read every element of the new list, or null
+     */
+    String getWholeListFeature() {
+        if (keyMapper != null) {
+            return "a key mapper";
+        }
+        if (attributeIndexes != null) {
+            return "an attribute index";
+        }
+        if (order != null) {
+            return "an order";
+        }
+        if (snapshotReads) {
+            return "snapshot reads";
+        }
+        if (evictionPolicy != null) {
+            return "a capacity";
+        }
+        return null;
+    }
+
+    private void rebuildIndex() {
+        if (keyMapper == null) {
+            index = null;
+            return;
+        }
+        index = new HashMap<Object, Integer>();
+        for (T el : list) {
+            index(el);
+        }
+    }
+
+    private void index(T el) {
+        Object key = keyMapper.map(el);
+        Integer count = index.get(key);
+        index.put(key, count == null ? 1 : count + 1);
+    }
+
+    private void unindex(T el) {
+        Object key = keyMapper.map(el);
+        Integer count = index.get(key);
+        if (count == null || count <= 1) {
+            index.remove(key);
+        } else {
+            index.put(key, count - 1);
+        }
+    }
+
+    /**
+     * Tells the {@link #evictionPolicy} and the {@link #elementListener} that an element was added. Must be called while holding {@link #lock}.
+     */
+    private void added(T el) {
+        if (evictionPolicy != null) {
+            evictionPolicy.onAdded(el);
+        }
+        if (elementListener != null) {
+            elementListener.added(el);
+        }
+    }
+
+    /**
+     * Tells the {@link #evictionPolicy} and the {@link #elementListener} that an element was removed by anything but an
+     * eviction. Must be called while holding {@link #lock}.
+     */
+    private void removed(T el) {
+        if (evictionPolicy != null) {
+            evictionPolicy.onRemoved(el);
+        }
+        if (elementListener != null) {
+            elementListener.removed(el);
+        }
+    }
+
+    private void indexAttributes(T el) {
+        if (attributeIndexes != null) {
+            for (AttributeIndex<T> attributeIndex : attributeIndexes.values()) {
+                attributeIndex.add(el);
+            }
+        }
+    }
+
+    /**
+     * Recreates every {@link AttributeIndex} from the given elements, cheaper than updating them one element at a time
+     * after bulk removals or replacements. Must be called while holding {@link #lock}.
+     */
+    private void rebuildAttributeIndexes(List<T> elements) {
+        if (attributeIndexes != null) {
+            for (AttributeIndex<T> attributeIndex : attributeIndexes.values()) {
+                attributeIndex.rebuild(elements);
+            }
+        }
+    }
+
+    /**
+     * Looks for a {@link DefFilter} that names a registered index and returns the elements indexed under its value,
+     * picking the smallest set when several filters qualify. Must be called while holding {@link #lock} or the lock
+     * returned by {@link #beginIndexedRead()}, since the returned bucket is not copied.
+     *
+     * @return the candidate elements, or null if no filter can be answered by an index
+     */
+    private List<T> indexedCandidates(Filter<T>[] filters) {
+        if (attributeIndexes == null) {
+            return null;
+        }
+        List<T> candidates = null;
+        for (Filter<T> filter : filters) {
+            if (!(filter instanceof DefFilter)) {
+                continue;
+            }
+            DefFilter<T> defFilter = (DefFilter<T>) filter;
+            AttributeIndex<T> attributeIndex = defFilter.getIndex() == null ? null : attributeIndexes.get(defFilter.getIndex());
+            if (attributeIndex == null) {
+                continue;
+            }
+            List<T> bucket = attributeIndex.get(defFilter.getValue());
+            if (candidates == null || bucket.size() < candidates.size()) {
+                candidates = bucket;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the key of the given element, or the element itself if no {@link #keyMapper} is set
+     */
+    Object keyOf(T el) {
+        return keyMapper == null ? el : keyMapper.map(el);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + BaseCollection.class.getSimpleName() + " (" + size() + "): " + list + "]";
+    }
+
+    //======================================================================
+    // Static methods
+    //======================================================================
+
+    private static synchronized Handler getMainThread() {
+        if (mainThread == null) {
+            mainThread = new Handler(Looper.getMainLooper());
+        }
+        return mainThread;
+    }
+
+    /**
+     * Maps every single object in a collection to another object and returns the mapped collection.
+     *
+     * This method takes every element in {@code collection} and applies the {@code mapper} function.
+     *
+     * @param collection the input collection
+     * @param mapper the mapping function that takes an element and applies a transformation to the object
+     * @param <T> the type of the elements in the input collection
+     * @param <K> the type of the elements in the output collection
+     * @return the mapped collection
+     */
+    public static <T, K> List<K> map(Collection<T> collection, Mapper<T, K> mapper) {
+        return mapInto(collection, new ArrayList<K>(collection.size()), mapper);
+    }
+
+    /**
+     * Same as {@link #map(java.util.Collection, Mapper)} but adds the mapped elements to {@code result}. Lists that implement
+     * {@link java.util.RandomAccess} are traversed by index, so no iterator is allocated.
+     *
+     * @param result the list where mapped elements are added, it is not cleared
+     * @return {@code result}
+     */
+    public static <T, K> List<K> mapInto(Collection<T> collection, List<K> result, Mapper<T, K> mapper) {
+        if (collection instanceof RandomAccess) {
+            List<T> list = (List<T>) collection;
+            for (int i = 0, size = list.size(); i < size; i++) {
+                result.add(mapper.map(list.get(i)));
+            }
+            return result;
+        }
+        for (T el : collection) {
+            K mapped = mapper.map(el);
+            result.add(mapped);
+        }
+        return result;
+    }
+
+    /**
+     * Similar to {@link #filter(Filter...)} but it only returns the first element that matches all filters
      *
      * @param filters a list of filters
      * @return returns the first element that matches every single filter. The notion of 'first' depends on the {@code collection}'s iterator.
      */
     public static <T> T filterFirst(Collection<T> collection, Filter<T>... filters) {
-        for (T el : collection) {
-            boolean passedAllFilters = true;
-            for (Filter<T> filter : filters) {
-                if (!filter.include(el)) {
-                    passedAllFilters = false;
-                    break;
+        if (collection instanceof RandomAccess) {
+            List<T> list = (List<T>) collection;
+            for (int i = 0, size = list.size(); i < size; i++) {
+                T el = list.get(i);
+                if (passesAll(el, filters)) {
+                    return el;
                 }
             }
-            if (passedAllFilters) {
+            return null;
+        }
+        for (T el : collection) {
+            if (passesAll(el, filters)) {
                 return el;
             }
         }
@@ -394,22 +1810,44 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      * </p>
      */
     public static <T> List<T> filter(Collection<T> collection, Filter<T>... filters) {
-        List<T> result = new ArrayList<T>();
-        for (T el : collection) {
-            boolean passedAllFilters = true;
-            for (Filter<T> filter : filters) {
-                if (!filter.include(el)) {
-                    passedAllFilters = false;
-                    break;
+        return filterInto(collection, new ArrayList<T>(), filters);
+    }
+
+    /**
+     * Same as {@link #filter(java.util.Collection, Filter[])} but adds the elements that pass every filter to {@code result}.
+     * Lists that implement {@link java.util.RandomAccess} are traversed by index, so no iterator is allocated.
+     *
+     * @param result the list where the elements are added, it is not cleared
+     * @return {@code result}
+     */
+    public static <T> List<T> filterInto(Collection<T> collection, List<T> result, Filter<T>... filters) {
+        if (collection instanceof RandomAccess) {
+            List<T> list = (List<T>) collection;
+            for (int i = 0, size = list.size(); i < size; i++) {
+                T el = list.get(i);
+                if (passesAll(el, filters)) {
+                    result.add(el);
                 }
             }
-            if (passedAllFilters) {
+            return result;
+        }
+        for (T el : collection) {
+            if (passesAll(el, filters)) {
                 result.add(el);
             }
         }
         return result;
     }
 
+    private static <T> boolean passesAll(T el, Filter<T>[] filters) {
+        for (int i = 0; i < filters.length; i++) {
+            if (!filters[i].include(el)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * @param initialValue the initial value to be reduced
      * @param reducer      an interface used to reduce the list
@@ -417,12 +1855,170 @@ public abstract class BaseCollection<T> implements Iterable<T> {
      */
     public static <T,K> K reduce(K initialValue, Reducer<T, K> reducer, Collection<T> list) {
         K reduction = initialValue;
+        if (list instanceof RandomAccess) {
+            List<T> elements = (List<T>) list;
+            for (int i = 0, size = elements.size(); i < size; i++) {
+                reduction = reducer.reduce(reduction, elements.get(i));
+            }
+            return reduction;
+        }
         for (T el : list) {
             reduction = reducer.reduce(reduction, el);
         }
         return reduction;
     }
 
+    /**
+     * Runs an iterator through every element of a list, by position if the list implements {@link java.util.RandomAccess}
+     * so no iterator is allocated
+     */
+    private static <T> void each(List<T> list, Iter<T> iterator) {
+        if (list instanceof RandomAccess) {
+            for (int i = 0, size = list.size(); i < size; i++) {
+                iterator.item(list.get(i));
+            }
+            return;
+        }
+        for (T el : list) {
+            iterator.item(el);
+        }
+    }
+
+    /**
+     * Same as {@link #map(java.util.Collection, Mapper)} but, for lists of at least {@link #PARALLEL_THRESHOLD} elements,
+     * the list is split in one chunk per available processor and the chunks are mapped concurrently. The order of the
+     * result is the order of the list. {@code mapper} is called from several threads at the same time.
+     */
+    public static <T, K> List<K> parallelMap(List<T> list, final Mapper<T, K> mapper) {
+        if (!shouldRunInParallel(list)) {
+            return map(list, mapper);
+        }
+        List<List<K>> mapped = runInChunks(list, new Chunk<T, List<K>>() {
+            @Override
+            public List<K> run(List<T> chunk) {
+                return map(chunk, mapper);
+            }
+        });
+        List<K> result = new ArrayList<K>(list.size());
+        for (List<K> part : mapped) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #filter(java.util.Collection, Filter[])} but, for lists of at least {@link #PARALLEL_THRESHOLD} elements,
+     * the list is split in one chunk per available processor and the chunks are filtered concurrently. The order of the
+     * result is the order of the list. {@code filters} are called from several threads at the same time.
+     */
+    public static <T> List<T> parallelFilter(List<T> list, final Filter<T>... filters) {
+        if (!shouldRunInParallel(list)) {
+            return filter(list, filters);
+        }
+        List<List<T>> filtered = runInChunks(list, new Chunk<T, List<T>>() {
+            @Override
+            public List<T> run(List<T> chunk) {
+                return filter(chunk, filters);
+            }
+        });
+        List<T> result = new ArrayList<T>();
+        for (List<T> part : filtered) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #reduce(Object, Reducer, java.util.Collection)} but, for lists of at least {@link #PARALLEL_THRESHOLD}
+     * elements, the list is split in one chunk per available processor, every chunk is reduced concurrently starting from
+     * {@code initialValue} and the partial reductions are then combined from left to right with {@code combiner}.
+     * For the result to match the sequential one {@code initialValue} must be an identity for {@code combiner}, i.e. 0 for a sum,
+     * and {@code combiner} must be associative.
+     *
+     * @param combiner combines two partial reductions
+     */
+    public static <T, K> K parallelReduce(final K initialValue, final Reducer<T, K> reducer, Combiner<K> combiner, List<T> list) {
+        if (!shouldRunInParallel(list)) {
+            return reduce(initialValue, reducer, list);
+        }
+        List<K> reductions = runInChunks(list, new Chunk<T, K>() {
+            @Override
+            public K run(List<T> chunk) {
+                return reduce(initialValue, reducer, chunk);
+            }
+        });
+        K result = reductions.get(0);
+        for (int i = 1; i < reductions.size(); i++) {
+            result = combiner.combine(result, reductions.get(i));
+        }
+        return result;
+    }
+
+    private static boolean shouldRunInParallel(List<?> list) {
+        return list.size() >= PARALLEL_THRESHOLD && PARALLELISM > 1 && !IN_PARALLEL_WORKER.get();
+    }
+
+    /**
+     * Splits the list in {@link #PARALLELISM} chunks, runs all but the last one in the parallel executor and the last one in
+     * the calling thread, and waits for every result.
+     *
+     * @return the result of every chunk, in list order
+     */
+    private static <T, R> List<R> runInChunks(List<T> list, final Chunk<T, R> task) {
+        if (!(list instanceof RandomAccess)) {
+            list = new ArrayList<T>(list);
+        }
+        int chunkSize = (list.size() + PARALLELISM - 1) / PARALLELISM;
+        List<Future<R>> futures = new ArrayList<Future<R>>(PARALLELISM);
+        int from = 0;
+        for (; from + chunkSize < list.size(); from += chunkSize) {
+            final List<T> chunk = list.subList(from, from + chunkSize);
+            futures.add(getParallelExecutor().submit(new Callable<R>() {
+                @Override
+                public R call() {
+                    return task.run(chunk);
+                }
+            }));
+        }
+        R last = task.run(list.subList(from, list.size()));
+        List<R> results = new ArrayList<R>(futures.size() + 1);
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        results.add(last);
+        return results;
+    }
+
+    private static synchronized ExecutorService getParallelExecutor() {
+        if (parallelExecutor == null) {
+            parallelExecutor = Executors.newFixedThreadPool(PARALLELISM - 1, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            IN_PARALLEL_WORKER.set(true);
+                            r.run();
+                        }
+                    }, "BaseCollection-parallel");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return parallelExecutor;
+    }
+
     //======================================================================
     // Inner classes and interfaces
     // Unless absolutely necessary all inner classes must be static to
@@ -442,6 +2038,21 @@ public abstract class BaseCollection<T> implements Iterable<T> {
         public K reduce(K acum, T element);
     }
 
+    /**
+     * Interface used to combine the partial results of a parallel reduction, see {@link #parallelReduce(Object, Reducer, Combiner)}
+     * @param <K> the reduction's type
+     */
+    public interface Combiner<K> {
+        public K combine(K left, K right);
+    }
+
+    /**
+     * A computation run on a chunk of a list by {@link #runInChunks(java.util.List, Chunk)}
+     */
+    private interface Chunk<T, R> {
+        public R run(List<T> chunk);
+    }
+
     public interface Iter<T> {
         public void item(T el);
     }
@@ -465,10 +2076,143 @@ public abstract class BaseCollection<T> implements Iterable<T> {
     public static abstract class DefFilter<T> implements Filter<T> {
 
         protected Object value;
+        protected String index;
 
         public DefFilter(Object value) {
+            this(null, value);
+        }
+
+        /**
+         * Creates a filter that can be answered by the index registered with {@link BaseCollection#addIndex(String, Mapper)}
+         * under the given name. The {@link #include(Object)} method should accept exactly the elements whose indexed
+         * attribute equals {@code value}.
+         *
+         * @param index the name of the index
+         * @param value the value to compare against
+         */
+        public DefFilter(String index, Object value) {
+            this.index = index;
             this.value = value;
         }
+
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return the name of the index that can answer this filter, null if none
+         */
+        public String getIndex() {
+            return index;
+        }
+    }
+
+    /**
+     * Receives every element added to or removed from a collection, see {@link #setElementListener(ElementListener)}.
+     * A replaced element is reported as removed and its replacement as added. Evicted elements are not reported, they
+     * are handed to {@link #onEvicted(java.util.List)} instead.
+     */
+    interface ElementListener<T> {
+
+        public void added(T el);
+
+        public void removed(T el);
+
+        /**
+         * Called when every element was removed or the data structure was replaced, see {@link #setList(java.util.List)}
+         */
+        public void cleared();
+    }
+
+    /**
+     * Groups the elements of a collection by the value of one of their attributes.
+     *
+     * @see #addIndex(String, Mapper)
+     */
+    private static class AttributeIndex<T> {
+
+        private final Mapper<T, ?> attribute;
+        private final Map<Object, List<T>> buckets = new HashMap<Object, List<T>>();
+
+        AttributeIndex(Mapper<T, ?> attribute) {
+            this.attribute = attribute;
+        }
+
+        void add(T el) {
+            Object value = attribute.map(el);
+            List<T> bucket = buckets.get(value);
+            if (bucket == null) {
+                bucket = new ArrayList<T>();
+                buckets.put(value, bucket);
+            }
+            bucket.add(el);
+        }
+
+        void remove(T el) {
+            Object value = attribute.map(el);
+            List<T> bucket = buckets.get(value);
+            if (bucket == null) {
+                return;
+            }
+            for (Iterator<T> it = bucket.iterator(); it.hasNext(); ) {
+                if (it.next() == el) {
+                    it.remove();
+                    break;
+                }
+            }
+            if (bucket.isEmpty()) {
+                buckets.remove(value);
+            }
+        }
+
+        List<T> get(Object value) {
+            List<T> bucket = buckets.get(value);
+            return bucket == null ? Collections.<T>emptyList() : bucket;
+        }
+
+        void clear() {
+            buckets.clear();
+        }
+
+        void rebuild(List<T> elements) {
+            buckets.clear();
+            for (T el : elements) {
+                add(el);
+            }
+        }
+    }
+
+    /**
+     * Result of {@link #updateAll(java.util.Collection, boolean)}
+     */
+    public static class UpdateResult {
+
+        private final int inserted;
+        private final int replaced;
+
+        public UpdateResult(int inserted, int replaced) {
+            this.inserted = inserted;
+            this.replaced = replaced;
+        }
+
+        /**
+         * @return the number of elements that were not present and were appended to the collection
+         */
+        public int getInserted() {
+            return inserted;
+        }
+
+        /**
+         * @return the number of elements that were replaced in place
+         */
+        public int getReplaced() {
+            return replaced;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + UpdateResult.class.getSimpleName() + " inserted: " + inserted + ", replaced: " + replaced + "]";
+        }
     }
 
     /**
@@ -485,10 +2229,152 @@ public abstract class BaseCollection<T> implements Iterable<T> {
 
     }
 
+    /**
+     * Published when a bounded collection evicts elements, see {@link BaseCollection#setCapacity(int, EvictionPolicy)}.
+     * The data is the list of evicted elements.
+     *
+     * @author fernandinho
+     */
+    public static class ElementsEvictedEvent<T> extends DataEvent<List<T>> {
+
+        public ElementsEvictedEvent(List<T> data) {
+            super(data);
+        }
+    }
+
     /**
      * This event should be published when the collection's underlying data structure is modified.
+     * It carries the list of {@link Change changes} made since the previous event so views can update only what changed,
+     * i.e. by calling {@code notifyItemRangeInserted} on a RecyclerView adapter for every {@link Change.Type#inserted} change.
+     * Changes are listed in the order they were made and the positions of each change refer to the collection as it was left
+     * by the previous change.
      *
      * @author fernandinho
      */
-    public static class ModelChangedEvent {}
+    public static class ModelChangedEvent {
+
+        private List<Change> changes = Collections.emptyList();
+        private boolean fullRefresh = true;
+
+        void setChanges(List<Change> changes, boolean fullRefresh) {
+            this.changes = changes;
+            this.fullRefresh = fullRefresh;
+        }
+
+        /**
+         * @return the changes made since the previous event, empty if {@link #isFullRefresh()}
+         */
+        public List<Change> getChanges() {
+            return changes;
+        }
+
+        /**
+         * @return true if the changes are not known, i.e. because {@link BaseCollection#notifyChanges()} was called directly
+         * or too many changes were made between events, in which case the whole collection should be read again.
+         */
+        public boolean isFullRefresh() {
+            return fullRefresh;
+        }
+    }
+
+    /**
+     * Describes a modification of a contiguous range of a {@link BaseCollection}
+     *
+     * @see ModelChangedEvent#getChanges()
+     */
+    public static class Change {
+
+        public enum Type {
+            /**
+             * {@link #getCount()} elements were inserted at {@link #getPosition()}
+             */
+            inserted,
+            /**
+             * {@link #getCount()} elements were removed starting at {@link #getPosition()}
+             */
+            removed,
+            /**
+             * the {@link #getCount()} elements starting at {@link #getPosition()} were replaced
+             */
+            updated,
+            /**
+             * the {@link #getCount()} elements starting at {@link #getPosition()} were reordered, see {@link #getPreviousPositions()}
+             */
+            moved
+        }
+
+        private final Type type;
+        private final int position;
+        private int count;
+        private final int[] previousPositions;
+
+        private Change(Type type, int position, int count, int[] previousPositions) {
+            this.type = type;
+            this.position = position;
+            this.count = count;
+            this.previousPositions = previousPositions;
+        }
+
+        static Change inserted(int position, int count) {
+            return new Change(Type.inserted, position, count, null);
+        }
+
+        static Change removed(int position, int count) {
+            return new Change(Type.removed, position, count, null);
+        }
+
+        static Change updated(int position, int count) {
+            return new Change(Type.updated, position, count, null);
+        }
+
+        static Change moved(int position, int[] previousPositions) {
+            return new Change(Type.moved, position, previousPositions.length, previousPositions);
+        }
+
+        /**
+         * Extends this change with {@code next} if it describes the range that follows, i.e. two single insertions at the end.
+         *
+         * @return true if {@code next} was merged into this change
+         */
+        boolean merge(Change next) {
+            if (next.type != type) {
+                return false;
+            }
+            if ((type == Type.inserted || type == Type.updated) && next.position == position + count) {
+                count += next.count;
+                return true;
+            }
+            if (type == Type.removed && next.position == position) {
+                count += next.count;
+                return true;
+            }
+            return false;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Only available for {@link Type#moved} changes.
+         *
+         * @return an array where the i-th value is the position, before the change, of the element now at {@code getPosition() + i}
+         */
+        public int[] getPreviousPositions() {
+            return previousPositions;
+        }
+
+        @Override
+        public String toString() {
+            return type + " [" + position + ", " + (position + count) + ")";
+        }
+    }
 }
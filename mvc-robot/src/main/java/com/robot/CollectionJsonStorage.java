@@ -1,50 +1,501 @@
 package com.robot;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 
 import com.google.gson.reflect.TypeToken;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * This class provides a CollectionStorage based on the {@link JsonSerializerStorage}.
+ * This class provides a CollectionStorage based on the {@link JsonSerializerStorage}.<br>
+ * <br>
+ * The collection is kept in a file of the app's files directory as lines of at most {@value #LINE_SIZE} elements, each
+ * one a list serialized by the {@link Serializer} of the storage, so the whole collection is never held in memory as a
+ * single string. The serializer must not write line breaks, which JSON written by Gson never contains. It is a
+ * {@link StorableCollection.ChunkedStorage}, so {@link StorableCollection#loadSync()} adds the elements as they are
+ * read.<br>
+ * <br>
+ * It is also a {@link StorableCollection.DeltaStorage}: instead of serializing the whole collection on every save, the
+ * changes made since the previous save are appended to a log of deltas, and the log is compacted into a full save once it
+ * has {@link #setMaxDeltas(int) maxDeltas} entries. If the collection identifies elements by key, the same key mapper must
+ * be set with {@link #setKeyMapper(BaseCollection.Mapper)} so deltas can be applied when loading.<br>
+ * <br>
+ * Collections saved in the shared preferences by previous versions of this class are moved to the file the first time
+ * they are loaded or saved.
  *
  * @param <T>
  * @author fernandinho
  */
-public class CollectionJsonStorage<T> extends JsonSerializerStorage<List<T>> implements BaseCollection.CollectionStorage<T> {
+public class CollectionJsonStorage<T> extends JsonSerializerStorage<List<T>>
+        implements StorableCollection.DeltaStorage<T>, StorableCollection.ChunkedStorage<T>, StorableCollection.EvictionStorage<T> {
 
+    public static final int DEFAULT_MAX_DELTAS = 16;
+
+    /**
+     * The number of elements serialized in every line of the file
+     */
+    static final int LINE_SIZE = 256;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final File file;
+    private final File deltaFile;
+    private final EvictionArchive<T> evicted;
+    private BaseCollection.Mapper<T, ?> keyMapper;
+    private int maxDeltas = DEFAULT_MAX_DELTAS;
+
+    /**
+     * The number of deltas in {@link #deltaFile}, -1 until the file is read
+     */
+    private int deltas = -1;
+
+    /**
+     * @param typeToken       the type of a list of elements, i.e. {@code new TypeToken<List<Car>>(){}}
+     * @param storageLocation the name of the file in {@link Context#getFilesDir()}
+     */
     public CollectionJsonStorage(Context context, TypeToken<List<T>> typeToken, String storageLocation) {
-        super(context, typeToken, storageLocation);
+        this(context, typeToken, storageLocation, new GsonSerializer<List<T>>(typeToken.getType()));
+    }
+
+    /**
+     * @param typeToken       the type of a list of elements, i.e. {@code new TypeToken<List<Car>>(){}}
+     * @param storageLocation the name of the file in {@link Context#getFilesDir()}
+     * @param serializer      converts lists of elements to and from a single line
+     */
+    public CollectionJsonStorage(Context context, TypeToken<List<T>> typeToken, String storageLocation, Serializer<List<T>> serializer) {
+        super(context, typeToken, storageLocation, serializer);
+        this.file = new File(context.getFilesDir(), storageLocation + ".json");
+        this.deltaFile = new File(context.getFilesDir(), storageLocation + ".delta");
+        this.evicted = new EvictionArchive<T>(new File(context.getFilesDir(), storageLocation + ".evicted"), serializer);
     }
 
     @Override
-    public void save(BaseCollection<T> collection, BaseCollection.Callback<Void> callback) {
-        save(collection.toList());
+    public void save(BaseCollection<T> collection, StorableCollection.Callback<Void> callback) {
+        if (!flush(collection)) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                writeFile(collection.toList());
+            } catch (IOException e) {
+                collection.notifyError(e);
+                return;
+            }
+        }
+        notifyDataChanged(collection.toList());
         callback.onFinish(null);
     }
 
     @Override
-    public List<T> load() {
-        List<T> result = super.load();
-        if (result == null) {
-            return new ArrayList<T>();
+    public void saveChanges(BaseCollection<T> collection, StorableCollection.Delta<T> changes, StorableCollection.Callback<Void> callback) throws IOException {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            IOException failed = new IOException("unable to write the lists saved in the background");
+            failed.initCause(e);
+            throw failed;
+        }
+        synchronized (this) {
+            migrate();
+            if (changes.isFullSaveRequired() || deltaCount() >= maxDeltas) {
+                writeFile(collection.toList());
+            } else if (!changes.isEmpty()) {
+                append(changes);
+            }
         }
+        notifyDataChanged(collection.toList());
+        callback.onFinish(null);
+    }
+
+    /**
+     * Saves the whole list and drops the log of deltas
+     *
+     * @throws RuntimeException if the file can't be written
+     */
+    @Override
+    protected void write(List<T> data) {
+        synchronized (this) {
+            try {
+                writeFile(data);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        notifyDataChanged(data);
+    }
+
+    /**
+     * Reads the stored list after writing the lists saved in the background. Unlike other storages the list is read
+     * again on every call instead of being cached, so a large collection is not kept in memory twice: use
+     * {@link StorableCollection#loadSync()}, which streams the elements into the collection, to load it.
+     *
+     * @return the stored list, empty if nothing was stored
+     * @throws RuntimeException if the file can't be read
+     */
+    @Override
+    public List<T> load() {
+        flush();
+        return read();
+    }
+
+    /**
+     * @return the stored list, empty if nothing was stored
+     * @throws RuntimeException if the file can't be read
+     */
+    @Override
+    protected List<T> read() {
+        final List<T> result = new ArrayList<T>();
+        loadChunks(Integer.MAX_VALUE, new StorableCollection.Callback<Collection<T>>() {
+            @Override
+            public void onFinish(Collection<T> chunk) {
+                result.addAll(chunk);
+            }
+        });
         return result;
     }
 
     @Override
-    public void load(BaseCollection.Callback<Collection<T>> callback) {
-        Collection<T> data = load();
+    public void load(StorableCollection.Callback<Collection<T>> callback) {
+        Collection<T> data = loadSync();
         callback.onFinish(data);
     }
 
+    /**
+     * @return a new list, so it can be modified by {@link StorableCollection#afterLoad(Collection)}
+     */
     @Override
     public Collection<T> loadSync() {
         return load();
     }
 
-}
+    /**
+     * Reads the file one line at a time, applying the deltas on the way: the deltas are read first and folded into
+     * the last change of every element, then every stored element is replaced, dropped or kept as it is read, and the
+     * inserted elements are handed last. Lists saved in the background are written first.
+     *
+     * @throws RuntimeException if the file can't be read
+     */
+    @Override
+    public void loadChunks(int chunkSize, StorableCollection.Callback<Collection<T>> chunkCallback) {
+        flush();
+        readChunks(chunkSize, chunkCallback);
+    }
+
+    private synchronized void readChunks(int chunkSize, StorableCollection.Callback<Collection<T>> chunkCallback) {
+        runPendingUpdates();
+        try {
+            migrate();
+            Map<Object, Change<T>> changes = readDeltas();
+            List<T> chunk = new ArrayList<T>();
+            if (file.exists()) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+                try {
+                    for (String line; (line = reader.readLine()) != null; ) {
+                        for (T el : deserialize(file, line)) {
+                            Change<T> change = changes.isEmpty() ? null : changes.get(keyOf(el));
+                            if (change != null) {
+                                if (change.dropStored) {
+                                    continue;
+                                }
+                                change.matched = true;
+                                el = change.el;
+                            }
+                            chunk = add(chunk, el, chunkSize, chunkCallback);
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            for (Change<T> change : changes.values()) {
+                if (change.el != null && !change.matched) {
+                    chunk = add(chunk, change.el, chunkSize, chunkCallback);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunkCallback.onFinish(chunk);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends the evicted elements to a file next to the collection's file
+     */
+    @Override
+    public void saveEvicted(Collection<T> evicted) throws IOException {
+        this.evicted.append(evicted);
+    }
+
+    @Override
+    public List<T> loadEvicted() throws IOException {
+        return evicted.read();
+    }
+
+    @Override
+    public boolean isStored() {
+        return file.exists() || super.isStored();
+    }
+
+    /**
+     * Clears the file, the log of deltas, the evicted elements and anything stored in the shared preferences. Lists saved
+     * in the background and not written yet are discarded.
+     */
+    @Override
+    public void clear() {
+        discardPending();
+        synchronized (this) {
+            file.delete();
+            deltaFile.delete();
+            evicted.clear();
+            deltas = 0;
+            super.clear();
+        }
+    }
+
+    /**
+     * Sets the function used to identify elements when applying deltas, it should be the one set in
+     * {@link BaseCollection#setKeyMapper(BaseCollection.Mapper)}.
+     *
+     * @param keyMapper maps an element to its key, null to compare elements with their equals method
+     */
+    public void setKeyMapper(BaseCollection.Mapper<T, ?> keyMapper) {
+        this.keyMapper = keyMapper;
+    }
+
+    /**
+     * Sets how many deltas are appended before the next save writes the whole collection again. Larger values make saves
+     * cheaper and loads slower.
+     *
+     * @param maxDeltas the maximum number of deltas, 0 to always save the whole collection
+     */
+    public void setMaxDeltas(int maxDeltas) {
+        this.maxDeltas = maxDeltas;
+    }
+
+    /**
+     * The data is no longer kept in the shared preferences, listeners are notified after every save instead.
+     */
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+    }
+
+    /**
+     * Waits for the lists saved in the background, so they are not written over the collection's changes
+     *
+     * @return false if they could not be written, in which case the error was notified to the collection
+     */
+    private boolean flush(BaseCollection<T> collection) {
+        try {
+            flush();
+            return true;
+        } catch (RuntimeException e) {
+            collection.notifyError(e);
+            return false;
+        }
+    }
 
+    /**
+     * Writes the elements a line at a time to a temporary file that replaces the current one once it is complete, and
+     * drops the log of deltas. Must be called holding this storage's monitor.
+     */
+    private void writeFile(List<T> data) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+            for (int from = 0; from < data.size(); from += LINE_SIZE) {
+                List<T> line = data.subList(from, Math.min(from + LINE_SIZE, data.size()));
+                writer.write(LineFiles.checkLine(serializer.serialize(line)));
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("unable to replace " + file);
+        }
+        if (deltaFile.exists() && !deltaFile.delete()) {
+            throw new IOException("unable to delete " + deltaFile);
+        }
+        deltas = 0;
+        if (sharedPrefs.contains(key)) {
+            sharedPrefs.edit().remove(key).commit();
+        }
+        invalidateCache();
+    }
+
+    /**
+     * Appends the changes as a single line to the log of deltas: the length of the serialized upserts, a colon, the
+     * serialized upserts and the serialized removals. Must be called holding this storage's monitor.
+     */
+    private void append(StorableCollection.Delta<T> changes) throws IOException {
+        if (!file.exists()) {
+            writeFile(new ArrayList<T>());
+        }
+        String upserts = LineFiles.checkLine(serializer.serialize(new ArrayList<T>(changes.getUpserts())));
+        String removals = LineFiles.checkLine(serializer.serialize(new ArrayList<T>(changes.getRemovals())));
+        FileOutputStream out = new FileOutputStream(deltaFile, true);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+            writer.write(upserts.length() + ":" + upserts + removals + "\n");
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        deltas++;
+        invalidateCache();
+    }
+
+    /**
+     * Folds every delta of the log into the last change of every element, by key, in the order inserted elements should
+     * be appended. Must be called holding this storage's monitor.
+     */
+    private Map<Object, Change<T>> readDeltas() throws IOException {
+        Map<Object, Change<T>> changes = new LinkedHashMap<Object, Change<T>>();
+        if (deltaCount() == 0) {
+            return changes;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(deltaFile), UTF_8));
+        try {
+            for (String line; (line = reader.readLine()) != null; ) {
+                int separator = line.indexOf(':');
+                int upsertsEnd;
+                try {
+                    upsertsEnd = separator + 1 + Integer.parseInt(line.substring(0, separator));
+                } catch (RuntimeException e) {
+                    throw corrupt(deltaFile, e);
+                }
+                if (upsertsEnd <= separator || upsertsEnd > line.length()) {
+                    throw new IOException("corrupt data in " + deltaFile);
+                }
+                List<T> upserts = deserialize(deltaFile, line.substring(separator + 1, upsertsEnd));
+                for (T removal : deserialize(deltaFile, line.substring(upsertsEnd))) {
+                    Object key = keyOf(removal);
+                    changes.remove(key);
+                    changes.put(key, new Change<T>(null, true));
+                }
+                for (T el : upserts) {
+                    Object key = keyOf(el);
+                    Change<T> previous = changes.get(key);
+                    if (previous == null) {
+                        changes.put(key, new Change<T>(el, false));
+                    } else if (previous.el == null) {
+                        // removed and inserted again, so it goes at the end and not where it was stored
+                        changes.remove(key);
+                        changes.put(key, new Change<T>(el, true));
+                    } else {
+                        previous.el = el;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return changes;
+    }
+
+    /**
+     * @return the number of deltas in the log. A partially written last delta, left by a crash while appending it, is cut
+     * from the log.
+     */
+    private int deltaCount() throws IOException {
+        if (deltas < 0) {
+            LineFiles.cutPartialLine(deltaFile);
+            deltas = LineFiles.countLines(deltaFile);
+        }
+        return deltas;
+    }
+
+    /**
+     * Moves a collection saved in the shared preferences by a previous version of this class to the file. Must be
+     * called holding this storage's monitor.
+     */
+    private void migrate() throws IOException {
+        if (!sharedPrefs.contains(key)) {
+            return;
+        }
+        List<T> legacy = super.read();
+        writeFile(legacy == null ? new ArrayList<T>() : legacy);
+    }
+
+    private List<T> add(List<T> chunk, T el, int chunkSize, StorableCollection.Callback<Collection<T>> chunkCallback) {
+        chunk.add(el);
+        if (chunk.size() < chunkSize) {
+            return chunk;
+        }
+        chunkCallback.onFinish(chunk);
+        return new ArrayList<T>();
+    }
+
+    private Object keyOf(T el) {
+        return keyMapper == null ? el : keyMapper.map(el);
+    }
+
+    /**
+     * @return the elements of a line of the file or the log, an empty list if the serializer returns null
+     */
+    private List<T> deserialize(File source, String line) throws IOException {
+        List<T> elements;
+        try {
+            elements = serializer.deserialize(line);
+        } catch (RuntimeException e) {
+            throw corrupt(source, e);
+        }
+        return elements == null ? new ArrayList<T>() : elements;
+    }
+
+    private static IOException corrupt(File file, RuntimeException cause) {
+        IOException e = new IOException("corrupt data in " + file);
+        e.initCause(cause);
+        return e;
+    }
+
+    /**
+     * The last change of an element in the log of deltas
+     */
+    private static class Change<T> {
+
+        /**
+         * The inserted or updated element, null if it was removed
+         */
+        T el;
+
+        /**
+         * True if the stored element with the same key must be dropped, i.e. because it was removed
+         */
+        final boolean dropStored;
+
+        /**
+         * True once the stored element with the same key was replaced by {@link #el}
+         */
+        boolean matched;
+
+        Change(T el, boolean dropStored) {
+            this.el = el;
+            this.dropStored = dropStored;
+        }
+    }
+}
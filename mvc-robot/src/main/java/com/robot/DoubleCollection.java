@@ -0,0 +1,260 @@
+package com.robot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A collection of {@code double} values backed by a growable {@code double[]}, the primitive counterpart of a
+ * {@code BaseCollection<Double>}. See {@link PrimitiveCollection}.
+ *
+ * @author fernandinho
+ */
+public class DoubleCollection extends PrimitiveCollection<double[]> {
+
+    public DoubleCollection() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity the number of values the collection can hold before growing
+     */
+    public DoubleCollection(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * similar to {@link #add(double, boolean)} but publishes an event.
+     */
+    public void add(double value) {
+        add(value, true);
+    }
+
+    /**
+     * Adds the given value at the end of the collection. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     */
+    public void add(double value, boolean notifyChanges) {
+        synchronized (lock) {
+            int index = append();
+            values[index] = value;
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * @return the value at the given position
+     */
+    public double get(int index) {
+        synchronized (lock) {
+            checkIndex(index);
+            return values[index];
+        }
+    }
+
+    /**
+     * similar to {@link #set(int, double, boolean)} but publishes an event.
+     */
+    public void set(int index, double value) {
+        set(index, value, true);
+    }
+
+    /**
+     * Replaces the value at the given position. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     */
+    public void set(int index, double value, boolean notifyChanges) {
+        synchronized (lock) {
+            checkIndex(index);
+            values[index] = value;
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * similar to {@link #removeAt(int, boolean)} but publishes an event.
+     */
+    public double removeAt(int index) {
+        return removeAt(index, true);
+    }
+
+    /**
+     * Removes the value at the given position. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     * @return the removed value
+     */
+    public double removeAt(int index, boolean notifyChanges) {
+        double removed;
+        synchronized (lock) {
+            checkIndex(index);
+            removed = values[index];
+            delete(index);
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+        return removed;
+    }
+
+    /**
+     * similar to {@link #remove(double, boolean)} but publishes an event.
+     */
+    public boolean remove(double value) {
+        return remove(value, true);
+    }
+
+    /**
+     * Removes the first occurrence of the given value. Notifies changes if the value was found and {@code notifyChanges}
+     * is {@code true}
+     *
+     * @return true if the value was found and removed
+     */
+    public boolean remove(double value, boolean notifyChanges) {
+        synchronized (lock) {
+            if (!deleteFound(indexOf(value))) {
+                return false;
+            }
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+        return true;
+    }
+
+    /**
+     * Values are compared like {@link Double#equals(Object)} does, so NaN can be found and 0.0 is different from -0.0.
+     *
+     * @return the position of the first occurrence of the given value, -1 if it is not in the collection
+     */
+    public int indexOf(double value) {
+        synchronized (lock) {
+            for (int i = 0; i < size; i++) {
+                if (Double.compare(values[i], value) == 0) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    public boolean contains(double value) {
+        return indexOf(value) >= 0;
+    }
+
+    @Override
+    protected double[] newArray(int length) {
+        return new double[length];
+    }
+
+    @Override
+    protected void sortValues() {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+     * Runs an iterator through every value, in order, without boxing them.
+     */
+    public void each(DoubleIter iterator) {
+        synchronized (lock) {
+            for (int i = 0; i < size; i++) {
+                iterator.item(values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return a new collection with the values that pass every filter, in order
+     */
+    public DoubleCollection filter(DoubleFilter... filters) {
+        synchronized (lock) {
+            DoubleCollection result = new DoubleCollection();
+            for (int i = 0; i < size; i++) {
+                double value = values[i];
+                boolean passedAllFilters = true;
+                for (DoubleFilter filter : filters) {
+                    if (!filter.include(value)) {
+                        passedAllFilters = false;
+                        break;
+                    }
+                }
+                if (passedAllFilters) {
+                    result.add(value, false);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return a new collection with every value transformed by the mapper, in order
+     */
+    public DoubleCollection map(DoubleMapper mapper) {
+        synchronized (lock) {
+            DoubleCollection result = new DoubleCollection(size);
+            for (int i = 0; i < size; i++) {
+                result.values[i] = mapper.map(values[i]);
+            }
+            result.size = size;
+            return result;
+        }
+    }
+
+    /**
+     * Maps every value to an object, i.e. to build view models.
+     *
+     * @return the list of mapped objects, in order
+     */
+    public <K> List<K> mapToObject(DoubleObjectMapper<K> mapper) {
+        synchronized (lock) {
+            List<K> result = new ArrayList<K>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(mapper.map(values[i]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Reduces the values without boxing them, i.e. to compute a sum or a maximum.
+     *
+     * @param initialValue the initial value to be reduced
+     * @param reducer      an interface used to reduce the values
+     * @return the calculated reduction
+     */
+    public double reduce(double initialValue, DoubleReducer reducer) {
+        synchronized (lock) {
+            double reduction = initialValue;
+            for (int i = 0; i < size; i++) {
+                reduction = reducer.reduce(reduction, values[i]);
+            }
+            return reduction;
+        }
+    }
+
+    public interface DoubleFilter {
+        public boolean include(double value);
+    }
+
+    public interface DoubleMapper {
+        public double map(double value);
+    }
+
+    public interface DoubleObjectMapper<K> {
+        public K map(double value);
+    }
+
+    public interface DoubleReducer {
+        public double reduce(double acum, double value);
+    }
+
+    public interface DoubleIter {
+        public void item(double value);
+    }
+}
@@ -0,0 +1,99 @@
+package com.robot;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps the elements evicted from a bounded collection in a file next to the data of a
+ * {@link StorableCollection.EvictionStorage}. Every call to {@link #append(java.util.Collection)} adds a line with the
+ * list of evicted elements, written by the {@link Serializer} of the storage, and syncs it, and a last line left
+ * partially written by a crash is dropped.
+ *
+ * @param <T> the type of the elements
+ * @author fernandinho
+ */
+class EvictionArchive<T> {
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final File file;
+    private final Serializer<List<T>> serializer;
+
+    /**
+     * @param file       the file the evicted elements are appended to
+     * @param serializer converts a list of elements to and from a line, see {@link LineFiles#checkLine(String)}
+     */
+    EvictionArchive(File file, Serializer<List<T>> serializer) {
+        this.file = file;
+        this.serializer = serializer;
+    }
+
+    synchronized void append(Collection<T> evicted) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        LineFiles.cutPartialLine(file);
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+            writer.write(LineFiles.checkLine(serializer.serialize(new ArrayList<T>(evicted))));
+            writer.write('\n');
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return every archived element, in the order they were evicted
+     */
+    synchronized List<T> read() throws IOException {
+        List<T> elements = new ArrayList<T>();
+        if (!file.exists()) {
+            return elements;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        try {
+            String line = reader.readLine();
+            while (line != null) {
+                String next = reader.readLine();
+                try {
+                    List<T> evicted = serializer.deserialize(line);
+                    if (evicted != null) {
+                        elements.addAll(evicted);
+                    }
+                } catch (RuntimeException e) {
+                    if (next != null) {
+                        IOException corrupt = new IOException("corrupt data in " + file);
+                        corrupt.initCause(e);
+                        throw corrupt;
+                    }
+                    // the last line was only partially written
+                }
+                line = next;
+            }
+        } finally {
+            reader.close();
+        }
+        return elements;
+    }
+
+    /**
+     * @return false if the file could not be deleted
+     */
+    synchronized boolean clear() {
+        return !file.exists() || file.delete();
+    }
+}
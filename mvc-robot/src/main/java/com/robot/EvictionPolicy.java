@@ -0,0 +1,178 @@
+package com.robot;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Decides which elements a bounded {@link BaseCollection} drops when it grows past its capacity,
+ * see {@link BaseCollection#setCapacity(int, EvictionPolicy)}. The collection tells the policy about every element
+ * that is added or removed and asks it for victims; all calls are made while holding the collection's lock, so
+ * implementations don't need to be thread safe. A policy instance must only be used by one collection.<br>
+ * <br>
+ * Three policies are provided: {@link Fifo}, {@link Lru} and {@link LowestPriority}.
+ *
+ * @param <T> the type of the elements
+ * @author fernandinho
+ */
+public interface EvictionPolicy<T> {
+
+    /**
+     * Called when an element is added to the collection
+     */
+    public void onAdded(T el);
+
+    /**
+     * Called when an element is removed from the collection by anything but an eviction
+     */
+    public void onRemoved(T el);
+
+    /**
+     * Called when an element is used, see {@link BaseCollection#touch(Object)}
+     */
+    public void onAccessed(T el);
+
+    /**
+     * Chooses the next element to evict and forgets it.
+     *
+     * @return the element to evict, null if the policy knows no elements
+     */
+    public T evict();
+
+    /**
+     * Called when the collection is cleared
+     */
+    public void clear();
+
+    /**
+     * Evicts the element that was added first. Elements are tracked by identity.
+     */
+    public static class Fifo<T> implements EvictionPolicy<T> {
+
+        protected final LinkedHashMap<Identity<T>, T> elements;
+
+        public Fifo() {
+            this(false);
+        }
+
+        Fifo(boolean accessOrder) {
+            elements = new LinkedHashMap<Identity<T>, T>(16, 0.75f, accessOrder);
+        }
+
+        @Override
+        public void onAdded(T el) {
+            elements.put(new Identity<T>(el), el);
+        }
+
+        @Override
+        public void onRemoved(T el) {
+            elements.remove(new Identity<T>(el));
+        }
+
+        @Override
+        public void onAccessed(T el) {
+        }
+
+        @Override
+        public T evict() {
+            Iterator<Map.Entry<Identity<T>, T>> eldest = elements.entrySet().iterator();
+            if (!eldest.hasNext()) {
+                return null;
+            }
+            T el = eldest.next().getValue();
+            eldest.remove();
+            return el;
+        }
+
+        @Override
+        public void clear() {
+            elements.clear();
+        }
+
+        /**
+         * Wraps an element so it is compared by identity instead of by its equals method
+         */
+        protected static final class Identity<T> {
+
+            private final T el;
+
+            Identity(T el) {
+                this.el = el;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                return o instanceof Identity && ((Identity<?>) o).el == el;
+            }
+
+            @Override
+            public int hashCode() {
+                return System.identityHashCode(el);
+            }
+        }
+    }
+
+    /**
+     * Evicts the element that was least recently added or accessed. Accesses must be reported with
+     * {@link BaseCollection#touch(Object)}. Elements are tracked by identity.
+     */
+    public static class Lru<T> extends Fifo<T> {
+
+        public Lru() {
+            super(true);
+        }
+
+        @Override
+        public void onAccessed(T el) {
+            elements.get(new Identity<T>(el));
+        }
+    }
+
+    /**
+     * Evicts the element with the lowest priority, i.e. the smallest element according to the given comparator. Elements
+     * are tracked by identity, like {@link Fifo} does.
+     */
+    public static class LowestPriority<T> implements EvictionPolicy<T> {
+
+        private final PriorityQueue<Fifo.Identity<T>> elements;
+
+        /**
+         * @param priority orders elements from lowest to highest priority
+         */
+        public LowestPriority(final Comparator<? super T> priority) {
+            elements = new PriorityQueue<Fifo.Identity<T>>(16, new Comparator<Fifo.Identity<T>>() {
+                @Override
+                public int compare(Fifo.Identity<T> a, Fifo.Identity<T> b) {
+                    return priority.compare(a.el, b.el);
+                }
+            });
+        }
+
+        @Override
+        public void onAdded(T el) {
+            elements.add(new Fifo.Identity<T>(el));
+        }
+
+        @Override
+        public void onRemoved(T el) {
+            elements.remove(new Fifo.Identity<T>(el));
+        }
+
+        @Override
+        public void onAccessed(T el) {
+        }
+
+        @Override
+        public T evict() {
+            Fifo.Identity<T> lowest = elements.poll();
+            return lowest == null ? null : lowest.el;
+        }
+
+        @Override
+        public void clear() {
+            elements.clear();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.robot;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.lang.reflect.Type;
+
+/**
+ * The default {@link Serializer}, which converts objects to and from JSON with Gson.<br>
+ * <br>
+ * Gson caches the adapter of every type it serializes, so every serializer created with {@link #GsonSerializer(Type)}
+ * shares a single {@link #getDefaultGson() Gson} instead of creating its own and discovering the same adapters again.
+ * The shared Gson uses the adapters generated for classes annotated with {@link Stored}, if any.
+ *
+ * @param <T> the type of the serialized objects
+ * @author fernandinho
+ */
+public class GsonSerializer<T> implements Serializer<T> {
+
+    private static Gson defaultGson;
+
+    private final Gson gson;
+    private final Type type;
+
+    /**
+     * Creates a serializer using the {@link #getDefaultGson() default Gson}
+     *
+     * @param type the type of the serialized objects, i.e. {@code new TypeToken<List<Car>>(){}.getType()}
+     */
+    public GsonSerializer(Type type) {
+        this(getDefaultGson(), type);
+    }
+
+    /**
+     * @param gson the Gson used to serialize, i.e. one with custom type adapters
+     * @param type the type of the serialized objects, i.e. {@code new TypeToken<List<Car>>(){}.getType()}
+     */
+    public GsonSerializer(Gson gson, Type type) {
+        this.gson = gson;
+        this.type = type;
+    }
+
+    @Override
+    public String serialize(T data) {
+        return gson.toJson(data, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(String serialized) {
+        return (T) gson.fromJson(serialized, type);
+    }
+
+    /**
+     * @return the Gson shared by the storages of this library, which is thread safe
+     */
+    public static synchronized Gson getDefaultGson() {
+        if (defaultGson == null) {
+            defaultGson = new GsonBuilder()
+                    .registerTypeAdapterFactory(new StoredTypeAdapterFactory())
+                    .create();
+        }
+        return defaultGson;
+    }
+}
@@ -0,0 +1,258 @@
+package com.robot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A collection of {@code int} values backed by a growable {@code int[]}, the primitive counterpart of a
+ * {@code BaseCollection<Integer>}. See {@link PrimitiveCollection}.
+ *
+ * @author fernandinho
+ */
+public class IntCollection extends PrimitiveCollection<int[]> {
+
+    public IntCollection() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity the number of values the collection can hold before growing
+     */
+    public IntCollection(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * similar to {@link #add(int, boolean)} but publishes an event.
+     */
+    public void add(int value) {
+        add(value, true);
+    }
+
+    /**
+     * Adds the given value at the end of the collection. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     */
+    public void add(int value, boolean notifyChanges) {
+        synchronized (lock) {
+            int index = append();
+            values[index] = value;
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * @return the value at the given position
+     */
+    public int get(int index) {
+        synchronized (lock) {
+            checkIndex(index);
+            return values[index];
+        }
+    }
+
+    /**
+     * similar to {@link #set(int, int, boolean)} but publishes an event.
+     */
+    public void set(int index, int value) {
+        set(index, value, true);
+    }
+
+    /**
+     * Replaces the value at the given position. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     */
+    public void set(int index, int value, boolean notifyChanges) {
+        synchronized (lock) {
+            checkIndex(index);
+            values[index] = value;
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * similar to {@link #removeAt(int, boolean)} but publishes an event.
+     */
+    public int removeAt(int index) {
+        return removeAt(index, true);
+    }
+
+    /**
+     * Removes the value at the given position. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     * @return the removed value
+     */
+    public int removeAt(int index, boolean notifyChanges) {
+        int removed;
+        synchronized (lock) {
+            checkIndex(index);
+            removed = values[index];
+            delete(index);
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+        return removed;
+    }
+
+    /**
+     * similar to {@link #remove(int, boolean)} but publishes an event.
+     */
+    public boolean remove(int value) {
+        return remove(value, true);
+    }
+
+    /**
+     * Removes the first occurrence of the given value. Notifies changes if the value was found and {@code notifyChanges}
+     * is {@code true}
+     *
+     * @return true if the value was found and removed
+     */
+    public boolean remove(int value, boolean notifyChanges) {
+        synchronized (lock) {
+            if (!deleteFound(indexOf(value))) {
+                return false;
+            }
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+        return true;
+    }
+
+    /**
+     * @return the position of the first occurrence of the given value, -1 if it is not in the collection
+     */
+    public int indexOf(int value) {
+        synchronized (lock) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    @Override
+    protected int[] newArray(int length) {
+        return new int[length];
+    }
+
+    @Override
+    protected void sortValues() {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+     * Runs an iterator through every value, in order, without boxing them.
+     */
+    public void each(IntIter iterator) {
+        synchronized (lock) {
+            for (int i = 0; i < size; i++) {
+                iterator.item(values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return a new collection with the values that pass every filter, in order
+     */
+    public IntCollection filter(IntFilter... filters) {
+        synchronized (lock) {
+            IntCollection result = new IntCollection();
+            for (int i = 0; i < size; i++) {
+                int value = values[i];
+                boolean passedAllFilters = true;
+                for (IntFilter filter : filters) {
+                    if (!filter.include(value)) {
+                        passedAllFilters = false;
+                        break;
+                    }
+                }
+                if (passedAllFilters) {
+                    result.add(value, false);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return a new collection with every value transformed by the mapper, in order
+     */
+    public IntCollection map(IntMapper mapper) {
+        synchronized (lock) {
+            IntCollection result = new IntCollection(size);
+            for (int i = 0; i < size; i++) {
+                result.values[i] = mapper.map(values[i]);
+            }
+            result.size = size;
+            return result;
+        }
+    }
+
+    /**
+     * Maps every value to an object, i.e. to build view models.
+     *
+     * @return the list of mapped objects, in order
+     */
+    public <K> List<K> mapToObject(IntObjectMapper<K> mapper) {
+        synchronized (lock) {
+            List<K> result = new ArrayList<K>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(mapper.map(values[i]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Reduces the values without boxing them, i.e. to compute a sum or a maximum.
+     *
+     * @param initialValue the initial value to be reduced
+     * @param reducer      an interface used to reduce the values
+     * @return the calculated reduction
+     */
+    public int reduce(int initialValue, IntReducer reducer) {
+        synchronized (lock) {
+            int reduction = initialValue;
+            for (int i = 0; i < size; i++) {
+                reduction = reducer.reduce(reduction, values[i]);
+            }
+            return reduction;
+        }
+    }
+
+    public interface IntFilter {
+        public boolean include(int value);
+    }
+
+    public interface IntMapper {
+        public int map(int value);
+    }
+
+    public interface IntObjectMapper<K> {
+        public K map(int value);
+    }
+
+    public interface IntReducer {
+        public int reduce(int acum, int value);
+    }
+
+    public interface IntIter {
+        public void item(int value);
+    }
+}
@@ -12,10 +12,19 @@ import com.google.gson.reflect.TypeToken;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * {@link JsonSerializerStorage} is a wrapper on top of {@link android.content.SharedPreferences} to save and load simple objects.
- * Bear in mind that because objects are serialized to and from JSON when saved this can be an expensive process.
+ * Bear in mind that because objects are serialized to and from JSON when saved this can be an expensive process, which
+ * can be made cheaper with a faster {@link Serializer} than the default {@link GsonSerializer}.
  *
  * @param <T> the type of the object to be stored
  * @author fernandohur
@@ -25,24 +34,81 @@ public class JsonSerializerStorage<T> implements OnSharedPreferenceChangeListene
     public final static String KEY_VERSION = "key_version";
 
     private Context context;
-    private SharedPreferences sharedPrefs;
-    private Gson gson;
-    private String key;
-    private TypeToken<T> clazz;
+    protected SharedPreferences sharedPrefs;
+    protected Gson gson;
+    protected String key;
+    protected TypeToken<T> clazz;
+    protected Serializer<T> serializer;
     private OnDataChangedListener onDataChangedListener;
     private List<UpdateTask> updateTasks;
 
+    /**
+     * Provides the current version to every storage, see {@link #setVersionProvider(VersionProvider)}
+     */
+    private static VersionProvider versionProvider;
+
+    /**
+     * True once the stored version is known to be the current one, so loads don't check it again
+     */
+    private volatile boolean upToDate;
+    private final Object updateLock = new Object();
+
     /**
      * A reference to the cached object.
      */
-    private T cached;
+    private volatile T cached;
+
+    /**
+     * Incremented every time the cache is invalidated, so a load that read the data before a save finished doesn't cache
+     * stale data. Guarded by this storage's monitor.
+     */
+    private int cacheGeneration;
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * Writes the data saved in write-behind mode, shared by every storage
+     */
+    private static ExecutorService writeExecutor;
+
+    private volatile boolean writeBehind;
+
+    /**
+     * Guards {@link #pendingData}, {@link #queuedWrite} and {@link #lastWrite}
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * True while data saved in write-behind mode has not been written, in which case it is {@link #pendingData}
+     */
+    private volatile boolean pending;
+    private T pendingData;
+
+    /**
+     * The write that will write {@link #pendingData}, null once it has started
+     */
+    private FutureTask<Void> queuedWrite;
+
+    /**
+     * The last write handed to the executor, which finishes after every previous one
+     */
+    private Future<Void> lastWrite;
 
     public JsonSerializerStorage(Context context, TypeToken<T> clazz, String name) {
+        this(context, clazz, name, new GsonSerializer<T>(clazz.getType()));
+    }
+
+    /**
+     * @param serializer converts the saved object to and from the string kept in the shared preferences
+     */
+    public JsonSerializerStorage(Context context, TypeToken<T> clazz, String name, Serializer<T> serializer) {
         this.context = context;
         this.sharedPrefs = context.getSharedPreferences(name, Context.MODE_PRIVATE);
-        this.gson = new Gson();
+        this.gson = GsonSerializer.getDefaultGson();
         this.key = name + ".key";
         this.clazz = clazz;
+        this.serializer = serializer;
         this.sharedPrefs.registerOnSharedPreferenceChangeListener(this);
         this.updateTasks = getUpdateTasks();
     }
@@ -69,46 +135,170 @@ public class JsonSerializerStorage<T> implements OnSharedPreferenceChangeListene
      */
     public void setStoredVersion(int version){
         this.sharedPrefs.edit().putInt(KEY_VERSION, version).commit();
+        this.upToDate = version >= getCurrentVersion();
     }
 
     /**
      * saves a object of type T as a serialized JSON string in a {@link android.content.Context#MODE_PRIVATE private} shared preferences.
-     * This overrides any previously saved data.
+     * This overrides any previously saved data. In {@link #setWriteBehind(boolean) write-behind} mode it returns right away
+     * and the data is written in the background, see {@link #saveAsync(Object)}.
      * @param data the object to be saved
      */
     public void save(T data) {
-        invalidateCache();
-        String json = gson.toJson(data);
+        if (writeBehind) {
+            saveAsync(data);
+        } else {
+            write(data);
+        }
+    }
+
+    /**
+     * Saves the data in the background: it is serialized and written by a thread shared by every storage, and
+     * {@link #load()} returns it until then. If the data is saved again before it is written, only the last data is
+     * written.
+     *
+     * @param data the object to be saved
+     * @return a future that completes once this data, or data saved after it, is written. Its get method throws the
+     * exception thrown while writing, if any.
+     */
+    public Future<Void> saveAsync(T data) {
+        synchronized (writeLock) {
+            pendingData = data;
+            pending = true;
+            if (queuedWrite == null) {
+                queuedWrite = new FutureTask<Void>(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        writePending();
+                        return null;
+                    }
+                });
+                lastWrite = queuedWrite;
+                getWriteExecutor().execute(queuedWrite);
+            }
+            return queuedWrite;
+        }
+    }
+
+    /**
+     * Waits until all the data saved in the background is written.
+     *
+     * @throws RuntimeException if the last write failed, only the first time it is flushed
+     */
+    public void flush() {
+        Future<Void> write;
+        synchronized (writeLock) {
+            write = lastWrite;
+        }
+        if (write == null) {
+            return;
+        }
+        try {
+            write.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            synchronized (writeLock) {
+                // the failure is reported once
+                if (lastWrite == write) {
+                    lastWrite = null;
+                }
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Sets whether {@link #save(Object)} writes the data in the background, which keeps the calling thread, usually the UI
+     * thread, from waiting for the disk. Use {@link #flush()} to wait for the data to be written, i.e. before the process
+     * is killed. Disabled by default.
+     *
+     * @param writeBehind true to write in the background
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Serializes the data with the {@link Serializer} and writes it on the calling thread. Subclasses storing the data somewhere else override this
+     * method, and must call {@link #invalidateCache()} once the data is written.
+     *
+     * @param data the object to be saved
+     */
+    protected void write(T data) {
+        String json = serializer.serialize(data);
         Editor editor = sharedPrefs.edit();
         editor.putString(key, json);
         editor.commit();
+        invalidateCache();
     }
 
     /**
-     * Can return null if unable to find or parse the persisted json
+     * Can return null if unable to find or parse the persisted json. The loaded object is cached until the next save, clear
+     * or change of the underlying preferences, so repeated loads return the same instance without reading it again: it
+     * should not be modified unless it is saved afterwards.
      *
      * @return returns the persisted serialized object.
      */
-    @SuppressWarnings("unchecked")
     public T load() {
-        if(shouldUpdate()){
-            runUpdates(getStoredVersion(), getCurrentVersion());
-        }
+        runPendingUpdates();
 
-        if(isCacheValid()){
-            return cached;
+        if (pending) {
+            synchronized (writeLock) {
+                if (pending) {
+                    return pendingData;
+                }
+            }
+        }
+        T data = cached;
+        if (data != null) {
+            cacheHits.incrementAndGet();
+            return data;
+        }
+        cacheMisses.incrementAndGet();
+        int generation;
+        synchronized (this) {
+            generation = cacheGeneration;
+        }
+        data = read();
+        synchronized (this) {
+            if (generation == cacheGeneration) {
+                cached = data;
+            }
         }
-        String json = sharedPrefs.getString(key, null);
-        T data = (T) gson.fromJson(json, clazz.getType());
         return data;
     }
 
     /**
-     * Clears anything stored in this storage.
+     * Reads and deserializes the stored data, bypassing the cache. Subclasses storing the data somewhere else override
+     * this method, and must call {@link #invalidateCache()} once they have changed the stored data.
+     *
+     * @return the stored object or null if unable to find or parse the persisted json
+     */
+    protected T read() {
+        String json = sharedPrefs.getString(key, null);
+        return serializer.deserialize(json);
+    }
+
+    /**
+     * Clears anything stored in this storage, including the stored version, so the updates are checked again on the next
+     * access. Data saved in the background and not written yet is discarded.
      */
     public void clear() {
+        discardPending();
+        synchronized (updateLock) {
+            sharedPrefs.edit().clear().commit();
+            upToDate = false;
+        }
         invalidateCache();
-        sharedPrefs.edit().clear().commit();
     }
 
     public boolean shouldUpdate(){
@@ -119,6 +309,24 @@ public class JsonSerializerStorage<T> implements OnSharedPreferenceChangeListene
         return false;
     }
 
+    /**
+     * Runs the updates if {@link #shouldUpdate()}. The stored version is only checked the first time, so after that this
+     * method neither reads the preferences nor asks for the current version.
+     */
+    protected void runPendingUpdates() {
+        if (upToDate) {
+            return;
+        }
+        synchronized (updateLock) {
+            if (!upToDate) {
+                if (shouldUpdate()) {
+                    runUpdates(getStoredVersion(), getCurrentVersion());
+                }
+                upToDate = true;
+            }
+        }
+    }
+
     /**
      * Runs all updates where storedVersion <= update.version() <= currentVersion
      * @param storedVersion
@@ -133,11 +341,66 @@ public class JsonSerializerStorage<T> implements OnSharedPreferenceChangeListene
         setStoredVersion(getCurrentVersion());
     }
 
+    /**
+     * Discards the data saved in the background and not written yet, and waits for the write in progress, if any
+     */
+    protected void discardPending() {
+        synchronized (writeLock) {
+            pending = false;
+            pendingData = null;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // the data that failed to be written was going to be discarded anyway
+        }
+    }
+
+    private void writePending() {
+        T data;
+        synchronized (writeLock) {
+            if (!pending) {
+                queuedWrite = null;
+                return;
+            }
+            data = pendingData;
+            queuedWrite = null;
+        }
+        try {
+            write(data);
+        } finally {
+            synchronized (writeLock) {
+                // data saved while writing is still pending, and has its own write queued
+                if (queuedWrite == null) {
+                    pending = false;
+                    pendingData = null;
+                }
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getWriteExecutor() {
+        if (writeExecutor == null) {
+            writeExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "JsonSerializerStorage-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return writeExecutor;
+    }
+
     /**
      * Removes the cache, forcing calls of load to load from disk and create the serialized object
      */
     protected void invalidateCache(){
-        cached = null;
+        synchronized (this) {
+            cacheGeneration++;
+            cached = null;
+        }
     }
 
     /**
@@ -147,6 +410,20 @@ public class JsonSerializerStorage<T> implements OnSharedPreferenceChangeListene
         return cached != null;
     }
 
+    /**
+     * @return the number of loads answered by the cache
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return the number of loads that had to read and deserialize the stored data
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
     /**
      * Sets a listener to be notified when changes occur to the underlying data
      * @param listener
@@ -164,27 +441,60 @@ public class JsonSerializerStorage<T> implements OnSharedPreferenceChangeListene
 
 
     /**
-     * @return returns the current version
+     * @return returns the current version, as given by the {@link VersionProvider}
      */
-    private int getCurrentVersion() {
-        PackageManager manager = context.getPackageManager();
-        try {
-            PackageInfo info = manager.getPackageInfo(context.getPackageName(), 0);
-            return info.versionCode;
-        } catch (PackageManager.NameNotFoundException e) {
-            e.printStackTrace();
+    protected int getCurrentVersion() {
+        return getVersionProvider(context).getVersion();
+    }
+
+    /**
+     * Sets the provider of the current version used by every storage to decide whether to run the {@link UpdateTask}s. By
+     * default it is the app's version code, read once from the {@link PackageManager}; tests running outside of Android
+     * can set their own.
+     *
+     * @param provider the provider of the current version, null to use the app's version code
+     */
+    public static synchronized void setVersionProvider(VersionProvider provider) {
+        versionProvider = provider;
+    }
+
+    private static synchronized VersionProvider getVersionProvider(Context context) {
+        if (versionProvider == null) {
+            versionProvider = new PackageVersionProvider(context.getApplicationContext());
         }
-        return 0;
+        return versionProvider;
     }
 
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-        if (this.key.equals(key) && onDataChangedListener != null) {
+        if (this.key.equals(key)) {
+            invalidateCache();
+            notifyDataChanged();
+        }
+    }
+
+    /**
+     * Loads the data and passes it to the listener set in {@link #setOnDataChangedListener(OnDataChangedListener)}, if any
+     */
+    protected void notifyDataChanged() {
+        if (onDataChangedListener != null) {
             T data = load();
             onDataChangedListener.onDataChanged(data, this);
         }
     }
 
+    /**
+     * Passes data that was just saved to the listener set in {@link #setOnDataChangedListener(OnDataChangedListener)}, if
+     * any, without loading it again
+     *
+     * @param data the saved data
+     */
+    protected void notifyDataChanged(T data) {
+        if (onDataChangedListener != null) {
+            onDataChangedListener.onDataChanged(data, this);
+        }
+    }
+
     /**
      * Simple listener class that is notified when changes occur to the underlying data structure.
      */
@@ -193,6 +503,49 @@ public class JsonSerializerStorage<T> implements OnSharedPreferenceChangeListene
     }
 
 
+    /**
+     * Provides the current version of the stored data, see {@link #setVersionProvider(VersionProvider)}
+     */
+    public interface VersionProvider {
+
+        /**
+         * @return the current version. Called often, so it should not be expensive.
+         */
+        public int getVersion();
+    }
+
+    /**
+     * Provides the app's version code, asking the {@link PackageManager} only once.
+     */
+    public static class PackageVersionProvider implements VersionProvider {
+
+        private final Context context;
+        private volatile int version = -1;
+
+        public PackageVersionProvider(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public int getVersion() {
+            if (version == -1) {
+                version = readVersion();
+            }
+            return version;
+        }
+
+        private int readVersion() {
+            PackageManager manager = context.getPackageManager();
+            try {
+                PackageInfo info = manager.getPackageInfo(context.getPackageName(), 0);
+                return info.versionCode;
+            } catch (PackageManager.NameNotFoundException e) {
+                e.printStackTrace();
+            }
+            return 0;
+        }
+    }
+
     public interface UpdateTask{
 
         /**
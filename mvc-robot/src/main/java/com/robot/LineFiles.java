@@ -0,0 +1,98 @@
+package com.robot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Helpers for the files the storages append lines to: the log of deltas of a {@link CollectionJsonStorage}, the log of
+ * a {@link LogCollectionStorage} and an {@link EvictionArchive}. A crash while appending can leave the last line
+ * partially written, and every line is complete once it ends with a new line.
+ *
+ * @author fernandinho
+ */
+final class LineFiles {
+
+    private static final int BLOCK_SIZE = 8192;
+
+    private LineFiles() {
+    }
+
+    /**
+     * Cuts a last line that was only partially written, so the next line appended doesn't start in the middle of it,
+     * and syncs the file if it was cut. Only the end of the file is read. Does nothing if the file doesn't exist.
+     */
+    static void cutPartialLine(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        RandomAccessFile lines = new RandomAccessFile(file, "rw");
+        try {
+            long end = completeLength(lines);
+            if (end < lines.length()) {
+                lines.setLength(end);
+                lines.getFD().sync();
+            }
+        } finally {
+            lines.close();
+        }
+    }
+
+    /**
+     * @param line a line written by a {@link Serializer}
+     * @return the line, so it can be written
+     * @throws IOException if it contains a line break, which would split it in two lines when read
+     */
+    static String checkLine(String line) throws IOException {
+        if (line.indexOf('\n') >= 0 || line.indexOf('\r') >= 0) {
+            throw new IOException("serialized data can't contain line breaks");
+        }
+        return line;
+    }
+
+    /**
+     * @return the number of complete lines in the file, 0 if it doesn't exist
+     */
+    static int countLines(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] block = new byte[BLOCK_SIZE];
+            int lines = 0;
+            for (int read; (read = in.read(block)) != -1; ) {
+                for (int i = 0; i < read; i++) {
+                    if (block[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+            return lines;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the length of the file up to the end of its last complete line, read backwards a block at a time
+     */
+    private static long completeLength(RandomAccessFile lines) throws IOException {
+        byte[] block = new byte[BLOCK_SIZE];
+        long end = lines.length();
+        while (end > 0) {
+            int read = (int) Math.min(BLOCK_SIZE, end);
+            lines.seek(end - read);
+            lines.readFully(block, 0, read);
+            for (int i = read - 1; i >= 0; i--) {
+                if (block[i] == '\n') {
+                    return end - read + i + 1;
+                }
+            }
+            end -= read;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,767 @@
+package com.robot;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link StorableCollection.DeltaStorage} that keeps a collection in a directory as a snapshot of every element plus an
+ * append-only log of the changes saved since the snapshot, for collections too large to be rewritten as a whole on
+ * every save. Every save appends a single line to the log; once the log grows past {@link #setMaxLogSize(long)} the next
+ * save writes a new snapshot and starts an empty log. {@link #loadSync()} reads the snapshot and replays the log on top of
+ * it, ignoring a last record that was only partially written because the process died while appending it. A damaged
+ * record followed by complete ones is not a torn write, so it makes the load fail instead of dropping the records
+ * after it.<br>
+ * <br>
+ * Writes are group-committed: {@link #saveChanges(BaseCollection, StorableCollection.Delta, StorableCollection.Callback)}
+ * queues the record and returns, and a background thread shared by every storage writes the queued records a batch at
+ * a time, with a single write and a single sync however many saves were made while the previous batch was written.
+ * The callback of every save of a batch, which publishes the {@link StorableCollection.ModelStoredEvent}, is called
+ * from that thread once the batch is written and synced as the {@link FsyncPolicy} asks, so the collection's bus must
+ * accept posts from any thread, i.e. an {@link EventBus}. {@link #flush()} writes the queued records on the calling
+ * thread. It only depends on the JDK and Gson, so it can be used in plain JVM tests with a temporary directory:<br>
+ * <br>
+ * <code>
+ * LogCollectionStorage&lt;Car&gt; storage = new LogCollectionStorage&lt;Car&gt;(directory, new TypeToken&lt;List&lt;Car&gt;&gt;(){});<br>
+ * storage.setKeyMapper(new CarIdMapper());<br>
+ * cars.setStorage(storage);<br>
+ * </code>
+ * <br>
+ * A directory must only be used by one storage at a time.
+ *
+ * @param <T> the type of the elements
+ * @author fernandinho
+ */
+public class LogCollectionStorage<T> implements StorableCollection.DeltaStorage<T>, StorableCollection.EvictionStorage<T> {
+
+    public static final long DEFAULT_MAX_LOG_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_FSYNC_INTERVAL = 1000;
+
+    private static final String SNAPSHOT = "snapshot";
+    private static final String LOG = "log.";
+    private static final String TEMP = ".tmp";
+    private static final String UPSERTS = "upserts";
+    private static final String REMOVALS = "removals";
+    private static final String EVICTED = "evicted";
+    private static final String UTF_8 = "UTF-8";
+
+    private final File directory;
+    private final TypeToken<List<T>> typeToken;
+    private final Gson gson = GsonSerializer.getDefaultGson();
+    private final EvictionArchive<T> evicted;
+    private BaseCollection.Mapper<T, ?> keyMapper;
+    private volatile FsyncPolicy fsyncPolicy = FsyncPolicy.always;
+    private volatile long fsyncInterval = DEFAULT_FSYNC_INTERVAL;
+    private volatile long maxLogSize = DEFAULT_MAX_LOG_SIZE;
+
+    /**
+     * Writes the queued records of every storage and syncs the logs on time with {@link FsyncPolicy#interval}
+     */
+    private static ScheduledExecutorService writer;
+
+    /**
+     * Guards {@link #logSize}, {@link #writing} and the queue of records. The log file itself and the fields describing
+     * it are only used by the thread that set {@link #writing}.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The records saved and not written yet, one per line, and the saves waiting for them
+     */
+    private StringBuilder queued = new StringBuilder();
+    private List<Save<T>> waiting = new ArrayList<Save<T>>();
+
+    /**
+     * True while the writer has a task that didn't take the queued records yet
+     */
+    private boolean writeScheduled;
+
+    /**
+     * True while the writer has a task that will sync the log
+     */
+    private boolean syncScheduled;
+
+    /**
+     * True once a batch could not be written, until a snapshot replaces the log: records are kept in the queue and
+     * the next save writes a snapshot, which covers them
+     */
+    private boolean snapshotRequired;
+
+    /**
+     * The generation of the current snapshot, the log of a generation holds the changes saved after its snapshot
+     */
+    private int generation;
+    private FileOutputStream log;
+    private long logSize;
+    private long lastSync;
+    private boolean unsynced;
+
+    /**
+     * True while a thread owns the log file, i.e. appending a record or writing a snapshot
+     */
+    private boolean writing;
+
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            writeQueued();
+        }
+    };
+
+    private final Runnable syncTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (lock) {
+                syncScheduled = false;
+            }
+            acquire();
+            try {
+                if (log != null && unsynced) {
+                    sync();
+                }
+            } catch (IOException e) {
+                // the saves of these records were already acknowledged, so the next one writes a snapshot instead
+                abandonLog();
+                synchronized (lock) {
+                    snapshotRequired = true;
+                }
+            } finally {
+                release();
+            }
+        }
+    };
+
+    /**
+     * @param directory the directory the snapshot and the log are kept in, it is created if it doesn't exist
+     * @param typeToken the type of a list of elements, i.e. {@code new TypeToken<List<Car>>(){}}
+     */
+    public LogCollectionStorage(File directory, TypeToken<List<T>> typeToken) {
+        this.directory = directory;
+        this.typeToken = typeToken;
+        this.evicted = new EvictionArchive<T>(new File(directory, EVICTED),
+                new GsonSerializer<List<T>>(gson, typeToken.getType()));
+    }
+
+    @Override
+    public void save(BaseCollection<T> collection, StorableCollection.Callback<Void> callback) {
+        List<Save<T>> covered;
+        try {
+            covered = snapshot(collection);
+        } catch (IOException e) {
+            collection.notifyError(e);
+            return;
+        }
+        complete(covered);
+        callback.onFinish(null);
+    }
+
+    /**
+     * Queues the changes as a record of the log and returns before it is written, see the group commit described
+     * above. A full save, a log larger than {@link #setMaxLogSize(long)} or a batch that could not be written make
+     * this save write a new snapshot on the calling thread instead, which also covers the records still queued.
+     * An error writing a batch is published to the collections that saved it, the callbacks of those saves are then
+     * called by the next save once its snapshot is written.
+     *
+     * @throws IOException if a snapshot was written and failed
+     */
+    @Override
+    public void saveChanges(BaseCollection<T> collection, StorableCollection.Delta<T> changes, StorableCollection.Callback<Void> callback) throws IOException {
+        if (changes.isFullSaveRequired() || isSnapshotDue()) {
+            List<Save<T>> covered = snapshot(collection);
+            complete(covered);
+            callback.onFinish(null);
+            return;
+        }
+        String record = "";
+        if (!changes.isEmpty()) {
+            JsonObject json = new JsonObject();
+            json.add(UPSERTS, gson.toJsonTree(new ArrayList<T>(changes.getUpserts()), typeToken.getType()));
+            json.add(REMOVALS, gson.toJsonTree(new ArrayList<T>(changes.getRemovals()), typeToken.getType()));
+            record = gson.toJson(json) + '\n';
+        }
+        synchronized (lock) {
+            // an empty save still waits for the previous ones, so the events are published in order
+            queued.append(record);
+            waiting.add(new Save<T>(collection, callback));
+            if (!writeScheduled) {
+                writeScheduled = true;
+                getWriter().execute(writeTask);
+            }
+        }
+    }
+
+    @Override
+    public void load(StorableCollection.Callback<Collection<T>> callback) {
+        callback.onFinish(loadSync());
+    }
+
+    /**
+     * Reads the snapshot and replays the log on top of it. A partially written record at the end of the log is dropped.
+     *
+     * @throws RuntimeException if the snapshot or the log can't be read, or a record before the last one is damaged
+     */
+    @Override
+    public Collection<T> loadSync() {
+        writeQueued();
+        acquire();
+        try {
+            closeLog();
+            return recover();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Appends the evicted elements to a file of the directory, apart from the snapshot and the log
+     */
+    @Override
+    public void saveEvicted(Collection<T> evicted) throws IOException {
+        this.evicted.append(evicted);
+    }
+
+    @Override
+    public List<T> loadEvicted() throws IOException {
+        return evicted.read();
+    }
+
+    /**
+     * Writes the records queued by the previous saves on the calling thread, without waiting for the background
+     * thread, and syncs the log. Their callbacks are called on the calling thread too.
+     */
+    public void flush() throws IOException {
+        writeQueued();
+        acquire();
+        try {
+            if (log != null) {
+                sync();
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Writes the queued records, syncs the log and closes it. The storage can still be used afterwards.
+     */
+    public void close() throws IOException {
+        writeQueued();
+        acquire();
+        try {
+            closeLog();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Removes the snapshot, the log and the evicted elements. Records queued and not written yet are discarded and the
+     * callbacks of their saves are never called.
+     */
+    public void clear() throws IOException {
+        acquire();
+        try {
+            synchronized (lock) {
+                queued = new StringBuilder();
+                waiting = new ArrayList<Save<T>>();
+                snapshotRequired = false;
+            }
+            closeLog();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().startsWith(SNAPSHOT) || file.getName().startsWith(LOG)) {
+                        delete(file);
+                    }
+                }
+            }
+            if (!evicted.clear()) {
+                throw new IOException("unable to delete the evicted elements in " + directory);
+            }
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Sets the function used to identify elements when replaying the log, it should be the one set in
+     * {@link BaseCollection#setKeyMapper(BaseCollection.Mapper)}.
+     *
+     * @param keyMapper maps an element to its key, null to compare elements with their equals method
+     */
+    public void setKeyMapper(BaseCollection.Mapper<T, ?> keyMapper) {
+        this.keyMapper = keyMapper;
+    }
+
+    /**
+     * Sets when appended records are forced to the disk, {@link FsyncPolicy#always} by default. With
+     * {@link FsyncPolicy#interval} a batch written less than {@code interval} milliseconds after the previous sync is
+     * synced by the writer when the interval ends, so no record stays unsynced for longer than the interval plus the
+     * time to write it, even if nothing else is saved.
+     *
+     * @param fsyncPolicy the policy
+     * @param interval    the minimum time in milliseconds between two syncs, only used by {@link FsyncPolicy#interval}
+     */
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy, long interval) {
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = interval;
+    }
+
+    /**
+     * Sets the size in bytes the log can reach before the next save writes a new snapshot. Larger values make saves
+     * cheaper and loads slower.
+     */
+    public void setMaxLogSize(long maxLogSize) {
+        this.maxLogSize = maxLogSize;
+    }
+
+    private boolean isSnapshotDue() {
+        synchronized (lock) {
+            return snapshotRequired || logSize >= maxLogSize;
+        }
+    }
+
+    /**
+     * Writes the queued records as a single batch, then calls the callbacks of their saves or, if the batch could not
+     * be written, keeps the records queued for the next snapshot and publishes the error to the collections that saved
+     * them. Callbacks and errors are delivered once the log is released, so they can use this storage.
+     */
+    private void writeQueued() {
+        String batch;
+        List<Save<T>> saves;
+        IOException error = null;
+        acquire();
+        try {
+            synchronized (lock) {
+                writeScheduled = false;
+                if (snapshotRequired || waiting.isEmpty()) {
+                    return;
+                }
+                batch = queued.toString();
+                saves = waiting;
+                queued = new StringBuilder();
+                waiting = new ArrayList<Save<T>>();
+            }
+            try {
+                write(batch);
+            } catch (IOException e) {
+                error = e;
+                synchronized (lock) {
+                    queued.insert(0, batch);
+                    waiting.addAll(0, saves);
+                    snapshotRequired = true;
+                }
+            }
+        } finally {
+            release();
+        }
+        if (error == null) {
+            complete(saves);
+            return;
+        }
+        BaseCollection<T> notified = null;
+        for (Save<T> save : saves) {
+            if (save.collection != notified) {
+                notified = save.collection;
+                notified.notifyError(error);
+            }
+        }
+    }
+
+    /**
+     * Writes the elements of the collection to a new snapshot and starts an empty log. The snapshot is written to a
+     * temporary file that replaces the previous snapshot once it is complete, so a crash leaves either snapshot intact.
+     * The records still queued are dropped since the collection already holds their changes.
+     *
+     * @return the saves of the dropped records, whose callbacks must be called
+     */
+    private List<Save<T>> snapshot(BaseCollection<T> collection) throws IOException {
+        acquire();
+        try {
+            List<Save<T>> covered;
+            synchronized (lock) {
+                covered = waiting;
+                queued = new StringBuilder();
+                waiting = new ArrayList<Save<T>>();
+                // until the snapshot is written, in case it fails
+                snapshotRequired = true;
+            }
+            if (log == null) {
+                reopen();
+            }
+            List<T> elements = new ArrayList<T>(collection.toList());
+            int next = generation + 1;
+            File temp = new File(directory, SNAPSHOT + TEMP);
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+                writer.write(next + "\n");
+                gson.toJson(elements, typeToken.getType(), writer);
+                writer.flush();
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(new File(directory, SNAPSHOT))) {
+                throw new IOException("unable to replace " + SNAPSHOT + " in " + directory);
+            }
+            closeLog();
+            delete(logFile(generation));
+            generation = next;
+            openLog();
+            synchronized (lock) {
+                snapshotRequired = false;
+            }
+            return covered;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Reads the snapshot and its log, truncates a partially written record at the end of the log, removes files left
+     * behind by an interrupted snapshot and opens the log for appending. Must be called by the thread owning the log.
+     *
+     * @return the recovered elements
+     */
+    private List<T> recover() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        List<T> elements = new ArrayList<T>();
+        generation = 0;
+        File snapshot = new File(directory, SNAPSHOT);
+        if (snapshot.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(snapshot), UTF_8));
+            try {
+                generation = Integer.parseInt(reader.readLine());
+                List<T> stored = gson.fromJson(reader, typeToken.getType());
+                if (stored != null) {
+                    elements = stored;
+                }
+            } catch (RuntimeException e) {
+                throw corruptSnapshot(e);
+            } finally {
+                reader.close();
+            }
+        }
+        deleteStaleFiles();
+        File logFile = logFile(generation);
+        if (logFile.exists()) {
+            elements = replay(logFile, elements);
+        }
+        openLog();
+        return elements;
+    }
+
+    /**
+     * Opens the log of the current snapshot for appending without reading any element: only the generation is read
+     * from the first line of the snapshot, and a partially written record at the end of the log is cut so the next one
+     * doesn't start in the middle of it. Must be called by the thread owning the log.
+     */
+    private void reopen() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+        generation = 0;
+        File snapshot = new File(directory, SNAPSHOT);
+        if (snapshot.exists()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(snapshot), UTF_8));
+            try {
+                generation = Integer.parseInt(reader.readLine());
+            } catch (RuntimeException e) {
+                throw corruptSnapshot(e);
+            } finally {
+                reader.close();
+            }
+        }
+        deleteStaleFiles();
+        LineFiles.cutPartialLine(logFile(generation));
+        openLog();
+    }
+
+    /**
+     * Deletes the logs of older generations and a snapshot left behind by an interrupted {@link #snapshot(BaseCollection)}
+     */
+    private void deleteStaleFiles() throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if ((file.getName().startsWith(LOG) && !file.equals(logFile(generation))) || file.getName().equals(SNAPSHOT + TEMP)) {
+                    delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies every complete record of the log to the given elements and cuts the log after the last one. Only the last
+     * record can be damaged by a crash while appending, so a damaged record followed by complete ones is reported as
+     * corruption instead of being dropped along with every record after it.
+     */
+    private List<T> replay(File logFile, List<T> elements) throws IOException {
+        byte[] bytes = readFully(logFile);
+        int start = 0;
+        for (int end = 0; end < bytes.length; end++) {
+            if (bytes[end] != '\n') {
+                continue;
+            }
+            JsonObject record;
+            try {
+                record = new JsonParser().parse(new String(bytes, start, end - start, UTF_8)).getAsJsonObject();
+            } catch (JsonParseException e) {
+                checkLastRecord(logFile, bytes, start, end, e);
+                break;
+            } catch (IllegalStateException e) {
+                checkLastRecord(logFile, bytes, start, end, e);
+                break;
+            }
+            List<T> upserts = gson.fromJson(record.get(UPSERTS), typeToken.getType());
+            List<T> removals = gson.fromJson(record.get(REMOVALS), typeToken.getType());
+            elements = StorableCollection.Delta.apply(elements, upserts, removals, keyMapper);
+            start = end + 1;
+        }
+        if (start < bytes.length) {
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            try {
+                file.setLength(start);
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+        }
+        return elements;
+    }
+
+    /**
+     * Throws if the damaged record between {@code start} and {@code end} is followed by a complete record
+     */
+    private static void checkLastRecord(File logFile, byte[] bytes, int start, int end, RuntimeException cause) throws IOException {
+        for (int i = end + 1; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                IOException corrupt = new IOException("corrupt record in " + logFile + " at byte " + start);
+                corrupt.initCause(cause);
+                throw corrupt;
+            }
+        }
+    }
+
+    /**
+     * Appends a batch of records to the log and syncs it if the {@link FsyncPolicy} asks for it, or schedules the sync
+     * of {@link FsyncPolicy#interval}. A failed write leaves the log closed, the snapshot written next reopens it and
+     * cuts what was written of the batch. Must be called by the thread owning the log.
+     */
+    private void write(String batch) throws IOException {
+        byte[] bytes = batch.getBytes(UTF_8);
+        if (bytes.length == 0) {
+            return;
+        }
+        if (log == null) {
+            reopen();
+        }
+        try {
+            log.write(bytes);
+            unsynced = true;
+            synchronized (lock) {
+                logSize += bytes.length;
+            }
+            FsyncPolicy policy = fsyncPolicy;
+            long wait = lastSync + fsyncInterval - System.currentTimeMillis();
+            if (policy == FsyncPolicy.always || (policy == FsyncPolicy.interval && wait <= 0)) {
+                sync();
+            } else if (policy == FsyncPolicy.interval) {
+                scheduleSync(wait);
+            }
+        } catch (IOException e) {
+            abandonLog();
+            throw e;
+        }
+    }
+
+    private void sync() throws IOException {
+        log.getFD().sync();
+        lastSync = System.currentTimeMillis();
+        unsynced = false;
+    }
+
+    /**
+     * Makes the writer sync the log in {@code delay} milliseconds, unless it already will
+     */
+    private void scheduleSync(long delay) {
+        synchronized (lock) {
+            if (syncScheduled) {
+                return;
+            }
+            syncScheduled = true;
+        }
+        getWriter().schedule(syncTask, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void openLog() throws IOException {
+        File logFile = logFile(generation);
+        log = new FileOutputStream(logFile, true);
+        synchronized (lock) {
+            logSize = logFile.length();
+        }
+    }
+
+    private void closeLog() throws IOException {
+        if (log != null) {
+            try {
+                sync();
+            } finally {
+                log.close();
+                log = null;
+            }
+        }
+    }
+
+    /**
+     * Closes the log after a failed write or sync, without syncing it
+     */
+    private void abandonLog() {
+        try {
+            log.close();
+        } catch (IOException ignored) {
+            // the snapshot the next save writes reopens the log and cuts its damaged tail
+        }
+        log = null;
+        unsynced = false;
+    }
+
+    private static void complete(List<? extends Save<?>> saves) {
+        for (Save<?> save : saves) {
+            save.callback.onFinish(null);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getWriter() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "LogCollectionStorage-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return writer;
+    }
+
+    private File logFile(int generation) {
+        return new File(directory, LOG + generation);
+    }
+
+    /**
+     * Waits until no other thread owns the log and takes it
+     */
+    private void acquire() {
+        synchronized (lock) {
+            while (writing) {
+                await();
+            }
+            writing = true;
+        }
+    }
+
+    private void release() {
+        synchronized (lock) {
+            writing = false;
+            lock.notifyAll();
+        }
+    }
+
+    private void await() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(new InterruptedIOException("interrupted while waiting for the log"));
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private IOException corruptSnapshot(RuntimeException cause) {
+        IOException corrupt = new IOException("corrupt snapshot in " + directory);
+        corrupt.initCause(cause);
+        return corrupt;
+    }
+
+    private static void delete(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("unable to delete " + file);
+        }
+    }
+
+    /**
+     * A save waiting for its record to be written
+     */
+    private static class Save<T> {
+
+        final BaseCollection<T> collection;
+        final StorableCollection.Callback<Void> callback;
+
+        Save(BaseCollection<T> collection, StorableCollection.Callback<Void> callback) {
+            this.collection = collection;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * When appended records are forced from the operating system's buffers to the disk
+     */
+    public enum FsyncPolicy {
+
+        /**
+         * the callback of every save is called once its record is on the disk
+         */
+        always,
+        /**
+         * records are synced at most once per interval, a crash of the device can lose the saves of the last interval
+         */
+        interval,
+        /**
+         * records are left to the operating system, a crash of the process loses nothing but a crash of the device can
+         */
+        never
+    }
+}
@@ -0,0 +1,258 @@
+package com.robot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A collection of {@code long} values backed by a growable {@code long[]}, the primitive counterpart of a
+ * {@code BaseCollection<Long>}. See {@link PrimitiveCollection}.
+ *
+ * @author fernandinho
+ */
+public class LongCollection extends PrimitiveCollection<long[]> {
+
+    public LongCollection() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity the number of values the collection can hold before growing
+     */
+    public LongCollection(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * similar to {@link #add(long, boolean)} but publishes an event.
+     */
+    public void add(long value) {
+        add(value, true);
+    }
+
+    /**
+     * Adds the given value at the end of the collection. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     */
+    public void add(long value, boolean notifyChanges) {
+        synchronized (lock) {
+            int index = append();
+            values[index] = value;
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * @return the value at the given position
+     */
+    public long get(int index) {
+        synchronized (lock) {
+            checkIndex(index);
+            return values[index];
+        }
+    }
+
+    /**
+     * similar to {@link #set(int, long, boolean)} but publishes an event.
+     */
+    public void set(int index, long value) {
+        set(index, value, true);
+    }
+
+    /**
+     * Replaces the value at the given position. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     */
+    public void set(int index, long value, boolean notifyChanges) {
+        synchronized (lock) {
+            checkIndex(index);
+            values[index] = value;
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * similar to {@link #removeAt(int, boolean)} but publishes an event.
+     */
+    public long removeAt(int index) {
+        return removeAt(index, true);
+    }
+
+    /**
+     * Removes the value at the given position. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     * @return the removed value
+     */
+    public long removeAt(int index, boolean notifyChanges) {
+        long removed;
+        synchronized (lock) {
+            checkIndex(index);
+            removed = values[index];
+            delete(index);
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+        return removed;
+    }
+
+    /**
+     * similar to {@link #remove(long, boolean)} but publishes an event.
+     */
+    public boolean remove(long value) {
+        return remove(value, true);
+    }
+
+    /**
+     * Removes the first occurrence of the given value. Notifies changes if the value was found and {@code notifyChanges}
+     * is {@code true}
+     *
+     * @return true if the value was found and removed
+     */
+    public boolean remove(long value, boolean notifyChanges) {
+        synchronized (lock) {
+            if (!deleteFound(indexOf(value))) {
+                return false;
+            }
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+        return true;
+    }
+
+    /**
+     * @return the position of the first occurrence of the given value, -1 if it is not in the collection
+     */
+    public int indexOf(long value) {
+        synchronized (lock) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    @Override
+    protected long[] newArray(int length) {
+        return new long[length];
+    }
+
+    @Override
+    protected void sortValues() {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+     * Runs an iterator through every value, in order, without boxing them.
+     */
+    public void each(LongIter iterator) {
+        synchronized (lock) {
+            for (int i = 0; i < size; i++) {
+                iterator.item(values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return a new collection with the values that pass every filter, in order
+     */
+    public LongCollection filter(LongFilter... filters) {
+        synchronized (lock) {
+            LongCollection result = new LongCollection();
+            for (int i = 0; i < size; i++) {
+                long value = values[i];
+                boolean passedAllFilters = true;
+                for (LongFilter filter : filters) {
+                    if (!filter.include(value)) {
+                        passedAllFilters = false;
+                        break;
+                    }
+                }
+                if (passedAllFilters) {
+                    result.add(value, false);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return a new collection with every value transformed by the mapper, in order
+     */
+    public LongCollection map(LongMapper mapper) {
+        synchronized (lock) {
+            LongCollection result = new LongCollection(size);
+            for (int i = 0; i < size; i++) {
+                result.values[i] = mapper.map(values[i]);
+            }
+            result.size = size;
+            return result;
+        }
+    }
+
+    /**
+     * Maps every value to an object, i.e. to build view models.
+     *
+     * @return the list of mapped objects, in order
+     */
+    public <K> List<K> mapToObject(LongObjectMapper<K> mapper) {
+        synchronized (lock) {
+            List<K> result = new ArrayList<K>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(mapper.map(values[i]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Reduces the values without boxing them, i.e. to compute a sum or a maximum.
+     *
+     * @param initialValue the initial value to be reduced
+     * @param reducer      an interface used to reduce the values
+     * @return the calculated reduction
+     */
+    public long reduce(long initialValue, LongReducer reducer) {
+        synchronized (lock) {
+            long reduction = initialValue;
+            for (int i = 0; i < size; i++) {
+                reduction = reducer.reduce(reduction, values[i]);
+            }
+            return reduction;
+        }
+    }
+
+    public interface LongFilter {
+        public boolean include(long value);
+    }
+
+    public interface LongMapper {
+        public long map(long value);
+    }
+
+    public interface LongObjectMapper<K> {
+        public K map(long value);
+    }
+
+    public interface LongReducer {
+        public long reduce(long acum, long value);
+    }
+
+    public interface LongIter {
+        public void item(long value);
+    }
+}
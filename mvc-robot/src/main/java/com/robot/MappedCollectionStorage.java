@@ -0,0 +1,442 @@
+package com.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link StorableCollection.CollectionStorage} that keeps every element in a fixed size slot of a memory-mapped file.
+ * Unlike {@link CollectionJsonStorage}, which reads and rewrites the whole collection as a single string, the file is
+ * never read as a whole: pages of the file are only brought into memory when an element in them is decoded, and saving
+ * the changes of a few elements only writes the slots of those elements.<br>
+ * <br>
+ * It is a {@link StorableCollection.DeltaStorage}, so {@link StorableCollection#save()} replaces inserted and updated
+ * elements in their slot or appends them in a new one, and marks removed elements with a tombstone, and a
+ * {@link StorableCollection.PagedStorage}, so {@link StorableCollection#loadPaged(int, int)} only decodes the elements
+ * that are read. Once more than half of the slots hold removed elements the live slots are copied to a new file.<br>
+ * <br>
+ * Elements are encoded into slots of a fixed size by the same {@link OffHeapList.Codec} an {@link OffHeapList} uses: a
+ * slot holds the columns of an element side by side, and the codec reads and writes them as row 0 of a view of every
+ * column, so values of variable length such as strings need a maximum length. If the collection identifies elements
+ * by key the same key mapper must be set with {@link #setKeyMapper(BaseCollection.Mapper)}. A save that is interrupted by a crash of the device can leave a replaced
+ * element partially written, use {@link LogCollectionStorage} when that matters.
+ *
+ * @param <T> the type of the elements
+ * @author fernandinho
+ */
+public class MappedCollectionStorage<T> implements StorableCollection.DeltaStorage<T>, StorableCollection.PagedStorage<T> {
+
+    private static final int MAGIC = 0x524f4254;
+    private static final int SIZE_OFFSET = 4;
+    private static final int USED_OFFSET = 8;
+    private static final int HEADER_SIZE = 12;
+    private static final byte LIVE = 1;
+    private static final byte REMOVED = 2;
+    private static final int MIN_CAPACITY = 64;
+
+    private final File file;
+    private final OffHeapList.Codec<T> codec;
+    private final int[] widths;
+    private final int elementSize;
+    private final int slotSize;
+    private BaseCollection.Mapper<T, ?> keyMapper;
+
+    /**
+     * Guards every field below
+     */
+    private final Object lock = new Object();
+
+    private RandomAccessFile randomAccessFile;
+    private MappedByteBuffer buffer;
+
+    /**
+     * The number of slots that fit in the mapped file
+     */
+    private int capacity;
+
+    /**
+     * The number of slots written so far, live or removed
+     */
+    private int used;
+
+    /**
+     * The live slots in ascending order, the i-th element of the collection is in slot {@code live[i]}
+     */
+    private int[] live = new int[MIN_CAPACITY];
+    private int liveCount;
+
+    /**
+     * The slot of every live element by key, only built once a delta is saved
+     */
+    private Map<Object, Integer> slotsByKey;
+
+    /**
+     * @param file  the file the elements are kept in, it is created if it doesn't exist
+     * @param codec encodes the elements into slots
+     */
+    public MappedCollectionStorage(File file, OffHeapList.Codec<T> codec) {
+        this.file = file;
+        this.codec = codec;
+        this.widths = codec.columnWidths().clone();
+        int size = 0;
+        for (int width : widths) {
+            size += width;
+        }
+        this.elementSize = size;
+        this.slotSize = 1 + size;
+    }
+
+    @Override
+    public void save(BaseCollection<T> collection, StorableCollection.Callback<Void> callback) {
+        try {
+            synchronized (lock) {
+                rewrite(new ArrayList<T>(collection.toList()));
+            }
+        } catch (IOException e) {
+            collection.notifyError(e);
+            return;
+        }
+        callback.onFinish(null);
+    }
+
+    @Override
+    public void saveChanges(BaseCollection<T> collection, StorableCollection.Delta<T> changes, StorableCollection.Callback<Void> callback) throws IOException {
+        synchronized (lock) {
+            if (changes.isFullSaveRequired()) {
+                rewrite(new ArrayList<T>(collection.toList()));
+            } else if (!changes.isEmpty()) {
+                apply(changes);
+            }
+        }
+        callback.onFinish(null);
+    }
+
+    @Override
+    public void load(StorableCollection.Callback<Collection<T>> callback) {
+        callback.onFinish(loadSync());
+    }
+
+    /**
+     * @throws RuntimeException if the file can't be read
+     */
+    @Override
+    public Collection<T> loadSync() {
+        synchronized (lock) {
+            open();
+            return decode(0, liveCount);
+        }
+    }
+
+    /**
+     * @throws RuntimeException if the file can't be read
+     */
+    @Override
+    public int count() {
+        synchronized (lock) {
+            open();
+            return liveCount;
+        }
+    }
+
+    /**
+     * @throws RuntimeException if the file can't be read
+     */
+    @Override
+    public List<T> loadPage(int offset, int limit) {
+        synchronized (lock) {
+            open();
+            return decode(Math.min(offset, liveCount), Math.min(offset + limit, liveCount));
+        }
+    }
+
+    /**
+     * Writes the mapped pages that were modified to the disk and closes the file. The storage can still be used afterwards.
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (buffer != null) {
+                buffer.force();
+                randomAccessFile.close();
+                randomAccessFile = null;
+                buffer = null;
+                slotsByKey = null;
+            }
+        }
+    }
+
+    /**
+     * Removes the file
+     */
+    public void clear() throws IOException {
+        synchronized (lock) {
+            close();
+            if (file.exists() && !file.delete()) {
+                throw new IOException("unable to delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Sets the function used to find the slot of an element, it should be the one set in
+     * {@link BaseCollection#setKeyMapper(BaseCollection.Mapper)}.
+     *
+     * @param keyMapper maps an element to its key, null to compare elements with their equals method
+     */
+    public void setKeyMapper(BaseCollection.Mapper<T, ?> keyMapper) {
+        synchronized (lock) {
+            this.keyMapper = keyMapper;
+            slotsByKey = null;
+        }
+    }
+
+    /**
+     * Writes the upserts in their slots or in new ones and marks the removals. The slots are forced to the disk before
+     * the header, so a crash never makes the header count a slot that wasn't written.
+     */
+    private void apply(StorableCollection.Delta<T> changes) throws IOException {
+        open();
+        Map<Object, Integer> slots = slotsByKey();
+        for (T el : changes.getRemovals()) {
+            Integer slot = slots.remove(keyOf(el));
+            if (slot != null) {
+                buffer.put(offset(slot), REMOVED);
+                removeLive(slot);
+            }
+        }
+        for (T el : changes.getUpserts()) {
+            Object key = keyOf(el);
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                ensureCapacity(used + 1);
+                slot = used++;
+                slots.put(key, slot);
+                addLive(slot);
+            }
+            encode(slot, el);
+        }
+        buffer.force();
+        buffer.putInt(USED_OFFSET, used);
+        buffer.force();
+        if (used - liveCount > liveCount && used > MIN_CAPACITY) {
+            compact();
+        }
+    }
+
+    /**
+     * Replaces the file with one holding the given elements, and no free slots
+     */
+    private void rewrite(List<T> elements) throws IOException {
+        createDirectory();
+        File temp = tempFile();
+        RandomAccessFile target = new RandomAccessFile(temp, "rw");
+        try {
+            // a temporary file left by an interrupted rewrite may be longer
+            target.setLength(0);
+            MappedByteBuffer mapped = map(target, elements.size());
+            for (int slot = 0; slot < elements.size(); slot++) {
+                encode(mapped, slot, elements.get(slot));
+            }
+            writeHeader(mapped, elements.size());
+        } finally {
+            target.close();
+        }
+        replace(temp);
+    }
+
+    /**
+     * Copies the live slots, without decoding them, to a new file with no free slots that replaces the current one
+     */
+    private void compact() throws IOException {
+        File temp = tempFile();
+        RandomAccessFile target = new RandomAccessFile(temp, "rw");
+        try {
+            target.setLength(0);
+            MappedByteBuffer mapped = map(target, liveCount);
+            byte[] slot = new byte[slotSize];
+            ByteBuffer source = buffer.duplicate();
+            for (int i = 0; i < liveCount; i++) {
+                source.position(offset(live[i]));
+                source.get(slot);
+                mapped.position(offset(i));
+                mapped.put(slot);
+            }
+            writeHeader(mapped, liveCount);
+        } finally {
+            target.close();
+        }
+        replace(temp);
+    }
+
+    private void writeHeader(MappedByteBuffer mapped, int used) {
+        mapped.force();
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(SIZE_OFFSET, elementSize);
+        mapped.putInt(USED_OFFSET, used);
+        mapped.force();
+    }
+
+    private void replace(File temp) throws IOException {
+        close();
+        if (!temp.renameTo(file)) {
+            throw new IOException("unable to replace " + file);
+        }
+        open();
+    }
+
+    /**
+     * Maps the file, creating it if needed, and finds the live slots
+     *
+     * @throws RuntimeException if the file can't be read or was written with a different codec
+     */
+    private void open() {
+        if (buffer != null) {
+            return;
+        }
+        try {
+            createDirectory();
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            if (randomAccessFile.length() < HEADER_SIZE) {
+                buffer = map(randomAccessFile, MIN_CAPACITY);
+                writeHeader(buffer, 0);
+            } else {
+                buffer = map(randomAccessFile, (int) ((randomAccessFile.length() - HEADER_SIZE) / slotSize));
+            }
+            capacity = (buffer.capacity() - HEADER_SIZE) / slotSize;
+            used = buffer.getInt(USED_OFFSET);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(SIZE_OFFSET) != elementSize || used < 0 || used > capacity) {
+                throw new IOException(file + " was not written by a " + MappedCollectionStorage.class.getSimpleName() + " with this codec");
+            }
+        } catch (IOException e) {
+            buffer = null;
+            try {
+                if (randomAccessFile != null) {
+                    randomAccessFile.close();
+                }
+            } catch (IOException ignored) {
+            }
+            throw new RuntimeException(e);
+        }
+        liveCount = 0;
+        for (int slot = 0; slot < used; slot++) {
+            if (buffer.get(offset(slot)) == LIVE) {
+                addLive(slot);
+            }
+        }
+    }
+
+    private void ensureCapacity(int minCapacity) throws IOException {
+        if (minCapacity > capacity) {
+            buffer.force();
+            // a rewritten file has no free slots, don't grow it one slot at a time
+            buffer = map(randomAccessFile, Math.max(minCapacity, Math.max(MIN_CAPACITY, capacity * 2)));
+            capacity = (buffer.capacity() - HEADER_SIZE) / slotSize;
+        }
+    }
+
+    /**
+     * Maps room for the header and the given number of slots, growing the file if needed
+     */
+    private MappedByteBuffer map(RandomAccessFile target, int slots) throws IOException {
+        long size = HEADER_SIZE + (long) slots * slotSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("a mapped file can't hold " + slots + " elements of " + slotSize + " bytes");
+        }
+        return target.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private List<T> decode(int from, int to) {
+        List<T> elements = new ArrayList<T>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            elements.add(codec.decode(0, columns(buffer, live[i])));
+        }
+        return elements;
+    }
+
+    private void encode(int slot, T el) {
+        encode(buffer, slot, el);
+    }
+
+    private void encode(MappedByteBuffer target, int slot, T el) {
+        codec.encode(el, 0, columns(target, slot));
+        target.put(offset(slot), LIVE);
+    }
+
+    /**
+     * @return a view of every column of the slot, in which the codec finds the element at row 0
+     */
+    private ByteBuffer[] columns(MappedByteBuffer target, int slot) {
+        ByteBuffer[] columns = new ByteBuffer[widths.length];
+        int offset = offset(slot) + 1;
+        for (int c = 0; c < widths.length; c++) {
+            ByteBuffer view = target.duplicate();
+            view.limit(offset + widths[c]).position(offset);
+            columns[c] = view.slice();
+            offset += widths[c];
+        }
+        return columns;
+    }
+
+    private Map<Object, Integer> slotsByKey() {
+        if (slotsByKey == null) {
+            slotsByKey = new HashMap<Object, Integer>();
+            List<T> elements = decode(0, liveCount);
+            for (int i = 0; i < liveCount; i++) {
+                slotsByKey.put(keyOf(elements.get(i)), live[i]);
+            }
+        }
+        return slotsByKey;
+    }
+
+    private void addLive(int slot) {
+        if (liveCount == live.length) {
+            int[] grown = new int[live.length * 2];
+            System.arraycopy(live, 0, grown, 0, liveCount);
+            live = grown;
+        }
+        live[liveCount++] = slot;
+    }
+
+    private void removeLive(int slot) {
+        int low = 0;
+        int high = liveCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (live[middle] < slot) {
+                low = middle + 1;
+            } else if (live[middle] > slot) {
+                high = middle - 1;
+            } else {
+                System.arraycopy(live, middle + 1, live, middle, liveCount - middle - 1);
+                liveCount--;
+                return;
+            }
+        }
+    }
+
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private void createDirectory() throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("unable to create " + directory);
+        }
+    }
+
+    private File tempFile() {
+        return new File(file.getPath() + ".tmp");
+    }
+
+    private Object keyOf(T el) {
+        return keyMapper == null ? el : keyMapper.map(el);
+    }
+}
@@ -0,0 +1,225 @@
+package com.robot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.RandomAccess;
+
+/**
+ * A {@link java.util.List} that keeps its elements outside of the managed heap, in direct {@link ByteBuffer}s, so very
+ * large collections don't make the garbage collector walk hundreds of thousands of objects. Elements are stored in
+ * columns: every field of the element is written by a {@link Codec} to its own fixed width column, and an element is
+ * only materialized when it is read, i.e. by {@link #get(int)} or while iterating.<br>
+ * <br>
+ * To use it as the storage of a {@link BaseCollection} call
+ * <code>collection.setList(new OffHeapList&lt;Car&gt;(new CarCodec()));</code><br>
+ * <br>
+ * Since elements are decoded on every read, modifying an element returned by this list does not modify the stored
+ * element, replace it instead. Inserting or removing anywhere but at the end moves the following rows, like an
+ * {@link java.util.ArrayList} does. Snapshot reads (see {@link BaseCollection#setSnapshotReads(boolean)}) copy the
+ * elements into the managed heap, so they should not be combined with this list.
+ *
+ * @param <T> the type of the elements
+ * @author fernandinho
+ */
+public class OffHeapList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Codec<T> codec;
+    private final int[] widths;
+    private ByteBuffer[] columns;
+    private int capacity;
+    private int size;
+
+    public OffHeapList(Codec<T> codec) {
+        this(codec, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param codec           writes and reads the columns of an element
+     * @param initialCapacity the number of elements that can be stored before the columns have to grow
+     */
+    public OffHeapList(Codec<T> codec, int initialCapacity) {
+        this.codec = codec;
+        this.widths = codec.columnWidths().clone();
+        this.columns = new ByteBuffer[widths.length];
+        this.capacity = Math.max(1, initialCapacity);
+        for (int c = 0; c < widths.length; c++) {
+            columns[c] = allocate(capacity * widths[c]);
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        checkIndex(index, size);
+        return codec.decode(index, columns);
+    }
+
+    @Override
+    public T set(int index, T element) {
+        T previous = get(index);
+        codec.encode(element, index, columns);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        checkIndex(index, size + 1);
+        ensureCapacity(size + 1);
+        if (index < size) {
+            moveRows(index, index + 1, size - index);
+        }
+        codec.encode(element, index, columns);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        T removed = get(index);
+        if (index < size - 1) {
+            moveRows(index + 1, index, size - index - 1);
+        }
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Makes sure the columns can hold at least {@code minCapacity} elements without growing
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > capacity) {
+            resize(Math.max(minCapacity, capacity + (capacity >> 1)));
+        }
+    }
+
+    /**
+     * Shrinks the columns to the number of elements in the list
+     */
+    public void trimToSize() {
+        if (size < capacity) {
+            resize(Math.max(1, size));
+        }
+    }
+
+    private void resize(int newCapacity) {
+        for (int c = 0; c < widths.length; c++) {
+            ByteBuffer resized = allocate(newCapacity * widths[c]);
+            ByteBuffer used = columns[c].duplicate();
+            used.position(0).limit(size * widths[c]);
+            resized.put(used);
+            resized.clear();
+            columns[c] = resized;
+        }
+        capacity = newCapacity;
+    }
+
+    /**
+     * Removes the rows whose positions are set in {@code rows} in a single pass, moving every kept row at most once.
+     */
+    void removeRows(BitSet rows) {
+        int to = rows.nextSetBit(0);
+        if (to < 0 || to >= size) {
+            return;
+        }
+        int from = rows.nextClearBit(to);
+        while (from < size) {
+            int end = rows.nextSetBit(from);
+            if (end < 0 || end > size) {
+                end = size;
+            }
+            moveRows(from, to, end - from);
+            to += end - from;
+            from = end < size ? rows.nextClearBit(end) : size;
+        }
+        size = to;
+        modCount++;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (toIndex < size) {
+            moveRows(toIndex, fromIndex, size - toIndex);
+        }
+        size -= toIndex - fromIndex;
+        modCount++;
+    }
+
+    /**
+     * Moves {@code count} rows starting at {@code from} so they start at {@code to}, in every column, without leaving
+     * the columns. Overlapping copies between views of the same buffer are not guaranteed to work, so the rows are
+     * moved in blocks no longer than the distance they move, starting with the block on the side they move to.
+     */
+    private void moveRows(int from, int to, int count) {
+        int distance = Math.abs(from - to);
+        if (distance == 0 || count == 0) {
+            return;
+        }
+        for (int c = 0; c < widths.length; c++) {
+            int width = widths[c];
+            ByteBuffer source = columns[c].duplicate();
+            ByteBuffer target = columns[c].duplicate();
+            for (int moved = 0; moved < count; ) {
+                int rows = Math.min(distance, count - moved);
+                int offset = to < from ? moved : count - moved - rows;
+                source.limit((from + offset + rows) * width).position((from + offset) * width);
+                target.limit((to + offset + rows) * width).position((to + offset) * width);
+                target.put(source);
+                moved += rows;
+            }
+        }
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Converts elements from and to their columns. Every column has a fixed width in bytes, so values of variable
+     * length such as strings must be stored elsewhere, i.e. as an id into a table, or with a maximum length.<br>
+     * <br>
+     * Row {@code row} of a column of width {@code w} starts at byte {@code row * w}. Implementations must use the
+     * absolute get and put methods of {@link ByteBuffer}, i.e. {@code columns[0].putLong(row * 8, car.getId())},
+     * so several threads can decode at the same time. The same codec can store the elements in a
+     * {@link MappedCollectionStorage}, which doesn't assume any byte order.
+     *
+     * @param <T> the type of the elements
+     */
+    public interface Codec<T> {
+
+        /**
+         * @return the width in bytes of every column, one entry per column
+         */
+        public int[] columnWidths();
+
+        /**
+         * Writes every column of {@code element} at the given row
+         */
+        public void encode(T element, int row, ByteBuffer[] columns);
+
+        /**
+         * @return a new element built from the columns at the given row
+         */
+        public T decode(int row, ByteBuffer[] columns);
+    }
+}
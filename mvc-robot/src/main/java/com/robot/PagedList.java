@@ -0,0 +1,176 @@
+package com.robot;
+
+import com.robot.StorableCollection.PagedStorage;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A read only {@link java.util.List} that reads its elements from a {@link PagedStorage} one page at a time, so a
+ * collection over millions of stored elements can be shown without loading all of them. Only the most recently used
+ * pages are kept in memory; reading an element of any other page loads that page from the storage, and reading an
+ * element of a page also starts loading the following page in the background so sequential reads, i.e. scrolling a list
+ * or iterating, rarely wait for the storage.<br>
+ * <br>
+ * It is usually created by {@link StorableCollection#loadPaged(int, int)}. The size is read from the storage once, when
+ * the list is created, so changes made to the storage afterwards are only seen by a new list. The list can't be
+ * modified and, like {@link OffHeapList}, should not be combined with snapshot reads, key mappers or attribute indexes
+ * since all of them read every element.
+ *
+ * @param <T> the type of the elements
+ * @author fernandinho
+ */
+public class PagedList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static ExecutorService prefetchExecutor;
+
+    private final PagedStorage<T> storage;
+    private final int pageSize;
+    private final int size;
+
+    /**
+     * The resident pages by page number, least recently used first. Also guards {@link #prefetching}.
+     */
+    private final LinkedHashMap<Integer, List<T>> pages;
+
+    /**
+     * Pages being loaded in the background, by page number.
+     */
+    private final Map<Integer, Future<List<T>>> prefetching = new HashMap<Integer, Future<List<T>>>();
+
+    /**
+     * @param storage       the storage the elements are read from
+     * @param pageSize      the number of elements read from the storage at a time
+     * @param residentPages the number of pages kept in memory, at least 2 so the prefetched page doesn't replace the current one
+     */
+    public PagedList(PagedStorage<T> storage, int pageSize, final int residentPages) {
+        if (pageSize <= 0 || residentPages < 2) {
+            throw new IllegalArgumentException("pageSize must be positive and residentPages at least 2");
+        }
+        this.storage = storage;
+        this.pageSize = pageSize;
+        this.size = storage.count();
+        this.pages = new LinkedHashMap<Integer, List<T>>(residentPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > residentPages;
+            }
+        };
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        int page = index / pageSize;
+        List<T> elements = page(page);
+        prefetch(page + 1);
+        return elements.get(index - page * pageSize);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of elements read from the storage at a time
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the elements of the given page, waiting for the storage if the page is not resident
+     */
+    private List<T> page(int page) {
+        Future<List<T>> pending;
+        synchronized (pages) {
+            List<T> elements = pages.get(page);
+            if (elements != null) {
+                return elements;
+            }
+            pending = prefetching.get(page);
+        }
+        List<T> elements = pending != null ? await(pending) : storage.loadPage(page * pageSize, pageSize);
+        synchronized (pages) {
+            pages.put(page, elements);
+            prefetching.remove(page);
+        }
+        return elements;
+    }
+
+    /**
+     * Starts loading the given page in the background unless it is resident, already loading or past the end of the list
+     */
+    private void prefetch(final int page) {
+        if (page * pageSize >= size) {
+            return;
+        }
+        synchronized (pages) {
+            if (pages.containsKey(page) || prefetching.containsKey(page)) {
+                return;
+            }
+            prefetching.put(page, getPrefetchExecutor().submit(new Callable<List<T>>() {
+                @Override
+                public List<T> call() {
+                    List<T> elements;
+                    try {
+                        elements = storage.loadPage(page * pageSize, pageSize);
+                    } catch (RuntimeException e) {
+                        // forget the failed load so the next read of the page tries again
+                        synchronized (pages) {
+                            prefetching.remove(page);
+                        }
+                        throw e;
+                    }
+                    synchronized (pages) {
+                        if (prefetching.remove(page) != null) {
+                            pages.put(page, elements);
+                        }
+                    }
+                    return elements;
+                }
+            }));
+        }
+    }
+
+    private static <K> K await(Future<K> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static synchronized ExecutorService getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "PagedList-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return prefetchExecutor;
+    }
+}
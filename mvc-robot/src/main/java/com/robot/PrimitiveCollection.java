@@ -0,0 +1,276 @@
+package com.robot;
+
+import com.squareup.otto.Bus;
+
+import java.lang.reflect.Array;
+
+/**
+ * Base class for the collections of primitive values, {@link LongCollection}, {@link IntCollection} and
+ * {@link DoubleCollection}. They mirror the API of {@link BaseCollection} but store their values in a growable
+ * primitive array instead of a list of boxed objects, which takes 4 to 5 times less memory and lets
+ * aggregations such as {@code reduce} run without boxing.<br>
+ * <br>
+ * This class keeps the array, grows and shrinks it, and moves values when one is removed; subclasses only add the
+ * methods that take or return a value of their primitive type. Like {@link BaseCollection}, every method that modifies
+ * the collection publishes a {@link BaseCollection.ModelChangedEvent} on the event bus unless it is called with
+ * {@code notifyChanges} set to false, override {@link #getModelChangeEventInstance()} to publish a more specific event.
+ *
+ * @param <A> the type of the backing array, i.e. {@code long[]}
+ * @author fernandinho
+ */
+public abstract class PrimitiveCollection<A> {
+
+    protected static final int DEFAULT_CAPACITY = 10;
+
+    protected Bus bus;
+
+    /**
+     * Lock used to read and modify the values of the collection.
+     */
+    protected final Object lock = new Object();
+
+    /**
+     * The values of the collection followed by unused slots, guarded by {@link #lock}.
+     */
+    protected A values;
+
+    /**
+     * The number of values in the collection, guarded by {@link #lock}.
+     */
+    protected int size;
+
+    /**
+     * The length of {@link #values}, kept so growing doesn't need to look it up by reflection
+     */
+    private int capacity;
+
+    /**
+     * @param initialCapacity the number of values the collection can hold before growing
+     */
+    protected PrimitiveCollection(int initialCapacity) {
+        bus = new Bus();
+        values = newArray(initialCapacity);
+        capacity = initialCapacity;
+    }
+
+    /**
+     * @return a new array of the primitive type of this collection
+     */
+    protected abstract A newArray(int length);
+
+    /**
+     * Sorts the first {@link #size} values in ascending order, called while holding {@link #lock}.
+     */
+    protected abstract void sortValues();
+
+    /**
+     * @return the number of values in this collection
+     */
+    public int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * @return true if this collection has no values
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Adds every given value at the end of the collection, growing it at most once.
+     *
+     * @param newValues an array of the primitive type of this collection
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     */
+    public void addAll(A newValues, boolean notifyChanges) {
+        int length = Array.getLength(newValues);
+        if (length == 0) {
+            return;
+        }
+        synchronized (lock) {
+            ensureCapacity(size + length);
+            System.arraycopy(newValues, 0, values, size, length);
+            size += length;
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * Removes every value. Notifies changes if the collection was not empty and {@code notifyChanges} is {@code true}
+     */
+    public void clear(boolean notifyChanges) {
+        boolean changes;
+        synchronized (lock) {
+            changes = size > 0;
+            size = 0;
+        }
+        if (changes && notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * Sorts the values in ascending order and publishes an event
+     */
+    public void sort() {
+        sort(true);
+    }
+
+    /**
+     * Sorts the values in ascending order. Optionally publishes a {@link BaseCollection.ModelChangedEvent}
+     *
+     * @param notifyChanges if true, changes will be notified, if false, no changes will be notified.
+     */
+    public void sort(boolean notifyChanges) {
+        synchronized (lock) {
+            sortValues();
+        }
+        if (notifyChanges) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * @return a copy of the values in this collection
+     */
+    public A toArray() {
+        synchronized (lock) {
+            return copyOf(size);
+        }
+    }
+
+    /**
+     * Makes sure the collection can hold at least {@code minCapacity} values without growing
+     */
+    public void ensureCapacity(int minCapacity) {
+        synchronized (lock) {
+            if (minCapacity > capacity) {
+                resize(grownCapacity(capacity, minCapacity));
+            }
+        }
+    }
+
+    /**
+     * Shrinks the backing array to the number of values in the collection
+     */
+    public void trimToSize() {
+        synchronized (lock) {
+            if (size < capacity) {
+                resize(size);
+            }
+        }
+    }
+
+    /**
+     * Sets the event bus used by this collection to publish events.
+     *
+     * @param bus the bus where events will be posted
+     */
+    public void setEventBus(Bus bus) {
+        this.bus = bus;
+    }
+
+    /**
+     * Publishes a {@link BaseCollection.ModelChangedEvent}
+     */
+    public void notifyChanges() {
+        notifyEvent(getModelChangeEventInstance());
+    }
+
+    /**
+     * Posts an event to the event bus. This can be any event.
+     *
+     * @param object the event.
+     */
+    public void notifyEvent(Object object) {
+        bus.post(object);
+    }
+
+    /**
+     * @return returns a new instance of ModelChangedEvent
+     * @see BaseCollection#getModelChangeEventInstance()
+     */
+    public BaseCollection.ModelChangedEvent getModelChangeEventInstance() {
+        return new BaseCollection.ModelChangedEvent();
+    }
+
+    /**
+     * Makes room for one more value at the end, must be called while holding {@link #lock}. It may replace
+     * {@link #values}, so call it before reading the field, i.e. not as in {@code values[append()] = value}.
+     *
+     * @return the position the new value must be stored at
+     */
+    protected int append() {
+        ensureCapacity(size + 1);
+        return size++;
+    }
+
+    /**
+     * Removes the value at the given position by moving the ones after it, must be called while holding {@link #lock}
+     */
+    protected void delete(int index) {
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+    }
+
+    /**
+     * Removes the value at a position returned by a search such as {@code indexOf}, must be called while holding
+     * {@link #lock}
+     *
+     * @return false if the position is negative, i.e. the value was not found
+     */
+    protected boolean deleteFound(int index) {
+        if (index < 0) {
+            return false;
+        }
+        delete(index);
+        return true;
+    }
+
+    /**
+     * @return a new array with the first {@code length} values, must be called while holding {@link #lock}
+     */
+    protected A copyOf(int length) {
+        A copy = newArray(length);
+        System.arraycopy(values, 0, copy, 0, Math.min(size, length));
+        return copy;
+    }
+
+    private void resize(int length) {
+        values = copyOf(length);
+        capacity = length;
+    }
+
+    /**
+     * @return the capacity to grow an array of {@code capacity} values to so it can hold at least {@code minCapacity} values
+     */
+    protected static int grownCapacity(int capacity, int minCapacity) {
+        int grown = capacity + (capacity >> 1) + 1;
+        return grown < minCapacity ? minCapacity : grown;
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            StringBuilder builder = new StringBuilder("[" + getClass().getSimpleName() + " (" + size + "): [");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(Array.get(values, i));
+            }
+            return builder.append("]]").toString();
+        }
+    }
+}
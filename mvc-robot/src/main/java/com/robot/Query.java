@@ -0,0 +1,292 @@
+package com.robot;
+
+import com.robot.BaseCollection.Filter;
+import com.robot.BaseCollection.Iter;
+import com.robot.BaseCollection.Mapper;
+import com.robot.BaseCollection.Reducer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A lazy query over the elements of a {@link BaseCollection}, created by {@link BaseCollection#query()}.
+ * Intermediate operations such as {@link #filter(Filter)} or {@link #map(Mapper)} only describe the query, nothing
+ * is computed until a terminal operation such as {@link #toList()} or {@link #first()} is called. The terminal operation
+ * then runs every stage on one element at a time in a single traversal of the collection, so no intermediate lists are
+ * created, and stops as soon as {@link #limit(int)} or {@link #first()} have what they need. For example
+ * <br>
+ * <code>
+ * List&lt;MessageViewModel&gt; page = messages.query()<br>
+ * .filter(new UnreadFilter())<br>
+ * .map(new ViewModelMapper())<br>
+ * .limit(20)<br>
+ * .toList();<br>
+ * </code>
+ * <br>
+ * only looks at elements until it finds the first 20 unread messages and only maps those 20.<br>
+ * <br>
+ * A query can be run several times, every run reads the current elements of the collection.
+ * {@link #filter(Filter)}, {@link #skip(int)} and {@link #limit(int)} modify and return this query. {@link #map(Mapper)}
+ * changes the type of the elements, so it returns a new query with the stages of this one followed by the mapping, and
+ * leaves this one unchanged.
+ *
+ * @param <T> the type of the elements produced by this query
+ * @author fernandinho
+ */
+public class Query<T> {
+
+    private final BaseCollection<?> source;
+    private final List<Stage> stages;
+
+    Query(BaseCollection<?> source) {
+        this(source, new ArrayList<Stage>());
+    }
+
+    private Query(BaseCollection<?> source, List<Stage> stages) {
+        this.source = source;
+        this.stages = stages;
+    }
+
+    /**
+     * Keeps only the elements accepted by the given filter
+     */
+    public Query<T> filter(final Filter<T> filter) {
+        stages.add(new Stage() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Sink sink(final Sink downstream) {
+                return new Sink() {
+                    @Override
+                    public boolean accept(Object el) {
+                        return !filter.include((T) el) || downstream.accept(el);
+                    }
+                };
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Transforms every element with the given mapper. The mapper is only called for elements that reach this stage.
+     *
+     * @return a new query that runs the stages of this one and then the mapper, this query is not modified
+     */
+    public <K> Query<K> map(final Mapper<T, K> mapper) {
+        List<Stage> mapped = new ArrayList<Stage>(stages.size() + 1);
+        mapped.addAll(stages);
+        mapped.add(new Stage() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Sink sink(final Sink downstream) {
+                return new Sink() {
+                    @Override
+                    public boolean accept(Object el) {
+                        return downstream.accept(mapper.map((T) el));
+                    }
+                };
+            }
+        });
+        return new Query<K>(source, mapped);
+    }
+
+    /**
+     * Discards the first {@code count} elements that reach this stage
+     */
+    public Query<T> skip(final int count) {
+        stages.add(new Stage() {
+            @Override
+            public Sink sink(final Sink downstream) {
+                return new Sink() {
+                    private int skipped;
+
+                    @Override
+                    public boolean accept(Object el) {
+                        if (skipped < count) {
+                            skipped++;
+                            return true;
+                        }
+                        return downstream.accept(el);
+                    }
+                };
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Stops the traversal once {@code count} elements have reached this stage
+     */
+    public Query<T> limit(final int count) {
+        stages.add(new Stage() {
+            @Override
+            public Sink sink(final Sink downstream) {
+                return new Sink() {
+                    private int remaining = count;
+
+                    @Override
+                    public boolean accept(Object el) {
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        remaining--;
+                        return downstream.accept(el) && remaining > 0;
+                    }
+                };
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Discards elements equal, using their equals method, to an element that already reached this stage
+     */
+    public Query<T> distinct() {
+        stages.add(new Stage() {
+            @Override
+            public Sink sink(final Sink downstream) {
+                return new Sink() {
+                    private final Set<Object> seen = new HashSet<Object>();
+
+                    @Override
+                    public boolean accept(Object el) {
+                        return !seen.add(el) || downstream.accept(el);
+                    }
+                };
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @return the elements produced by this query
+     */
+    public List<T> toList() {
+        final List<T> result = new ArrayList<T>();
+        run(new Sink() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean accept(Object el) {
+                result.add((T) el);
+                return true;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return the first element produced by this query, null if there is none. The traversal stops as soon as it is found.
+     */
+    public T first() {
+        final List<T> result = new ArrayList<T>(1);
+        run(new Sink() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean accept(Object el) {
+                result.add((T) el);
+                return false;
+            }
+        });
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * @return the number of elements produced by this query
+     */
+    public int count() {
+        final int[] count = new int[1];
+        run(new Sink() {
+            @Override
+            public boolean accept(Object el) {
+                count[0]++;
+                return true;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Runs the iterator on every element produced by this query
+     */
+    public void each(final Iter<T> iterator) {
+        run(new Sink() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean accept(Object el) {
+                iterator.item((T) el);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Reduces the elements produced by this query
+     */
+    public <K> K reduce(K initialValue, final Reducer<T, K> reducer) {
+        final List<K> reduction = new ArrayList<K>(1);
+        reduction.add(initialValue);
+        run(new Sink() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean accept(Object el) {
+                reduction.set(0, reducer.reduce(reduction.get(0), (T) el));
+                return true;
+            }
+        });
+        return reduction.get(0);
+    }
+
+    /**
+     * Chains a sink for every stage in front of the terminal one and pushes the elements of the source through them
+     * until the source is exhausted or a sink asks to stop.
+     */
+    private void run(Sink terminal) {
+        Sink head = terminal;
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            head = stages.get(i).sink(head);
+        }
+        if (source.exclusiveReads()) {
+            synchronized (source.lock) {
+                push(source.elements(), head);
+            }
+            return;
+        }
+        Lock readLock = source.beginRead();
+        try {
+            push(source.elements(), head);
+        } finally {
+            source.endRead(readLock);
+        }
+    }
+
+    /**
+     * Pushes the given elements into a sink until they are exhausted or the sink asks to stop
+     */
+    private static void push(List<?> elements, Sink head) {
+        for (Object el : elements) {
+            if (!head.accept(el)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Receives the elements of a query one at a time
+     */
+    private interface Sink {
+
+        /**
+         * @return false if the traversal should stop
+         */
+        public boolean accept(Object el);
+    }
+
+    /**
+     * An intermediate operation. Creates a fresh sink for every run so stages with state, i.e. {@link #limit(int)}, can be reused.
+     */
+    private interface Stage {
+        public Sink sink(Sink downstream);
+    }
+}
@@ -0,0 +1,25 @@
+package com.robot;
+
+/**
+ * Converts the objects saved by a {@link JsonSerializerStorage} to and from the string kept in the shared preferences.
+ * {@link GsonSerializer} is used by default; a storage can be given a faster one, i.e. hand written for its type, with
+ * {@link JsonSerializerStorage#JsonSerializerStorage(android.content.Context, com.google.gson.reflect.TypeToken, String, Serializer)}.
+ * Implementations must be thread safe since saves and loads can run on different threads.
+ *
+ * @param <T> the type of the serialized objects
+ * @author fernandinho
+ */
+public interface Serializer<T> {
+
+    /**
+     * @param data the object to be serialized, can be null
+     * @return the serialized object
+     */
+    public String serialize(T data);
+
+    /**
+     * @param serialized a string returned by {@link #serialize(Object)}, null if nothing was stored
+     * @return the deserialized object, null if serialized is null
+     */
+    public T deserialize(String serialized);
+}
@@ -0,0 +1,183 @@
+package com.robot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * A {@link BaseCollection} that keeps its elements sorted by a {@link Comparator} at all times.
+ * Single elements are placed in their position with a binary search and bulk insertions such as
+ * {@link #addAll(Iterable, boolean)} are merged in a single pass, so the collection never has to be sorted again
+ * after new data arrives. Iteration, {@link #toList()} and every query see the elements in comparator order.<br>
+ * <br>
+ * Besides the usual queries it offers range queries in the spirit of {@link java.util.SortedSet}, i.e.
+ * {@link #headList(Object)}, {@link #tailList(Object)} and {@link #subList(Object, Object)}, which take
+ * O(log n) to locate the range.
+ *
+ * @param <T> the type of data this collection contains
+ * @author fernandinho
+ */
+public class SortedCollection<T> extends BaseCollection<T> {
+
+    private Comparator<? super T> comparator;
+
+    /**
+     * @param comparator the comparator that defines the order of the elements
+     */
+    public SortedCollection(Comparator<? super T> comparator) {
+        setComparator(comparator);
+    }
+
+    /**
+     * Changes the order of this collection, sorting the current elements once.
+     *
+     * @param comparator the comparator that defines the order of the elements
+     */
+    public void setComparator(Comparator<? super T> comparator) {
+        if (comparator == null) {
+            throw new IllegalArgumentException("comparator can't be null");
+        }
+        this.comparator = comparator;
+        setOrder(comparator);
+    }
+
+    /**
+     * @return the comparator that defines the order of the elements
+     */
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * A sorted collection is always sorted, so this method replaces its comparator.
+     *
+     * @see #setComparator(java.util.Comparator)
+     */
+    @Override
+    public void sort(Comparator<T> comparator) {
+        setComparator(comparator);
+    }
+
+    /**
+     * @return the smallest element, null if the collection is empty
+     */
+    public T first() {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> elements = elements();
+                return elements.isEmpty() ? null : elements.get(0);
+            }
+        }
+        Lock readLock = beginRead();
+        try {
+            List<T> elements = elements();
+            return elements.isEmpty() ? null : elements.get(0);
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * @return the greatest element, null if the collection is empty
+     */
+    public T last() {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> elements = elements();
+                return elements.isEmpty() ? null : elements.get(elements.size() - 1);
+            }
+        }
+        Lock readLock = beginRead();
+        try {
+            List<T> elements = elements();
+            return elements.isEmpty() ? null : elements.get(elements.size() - 1);
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * @param toElement the high endpoint, exclusive
+     * @return a copy of the elements strictly less than {@code toElement}
+     */
+    public List<T> headList(T toElement) {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> elements = elements();
+                return copy(elements, 0, lowerBound(elements, toElement));
+            }
+        }
+        Lock readLock = beginRead();
+        try {
+            List<T> elements = elements();
+            return copy(elements, 0, lowerBound(elements, toElement));
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * @param fromElement the low endpoint, inclusive
+     * @return a copy of the elements greater than or equal to {@code fromElement}
+     */
+    public List<T> tailList(T fromElement) {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> elements = elements();
+                return copy(elements, lowerBound(elements, fromElement), elements.size());
+            }
+        }
+        Lock readLock = beginRead();
+        try {
+            List<T> elements = elements();
+            return copy(elements, lowerBound(elements, fromElement), elements.size());
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * @param fromElement the low endpoint, inclusive
+     * @param toElement   the high endpoint, exclusive
+     * @return a copy of the elements greater than or equal to {@code fromElement} and strictly less than {@code toElement}
+     */
+    public List<T> subList(T fromElement, T toElement) {
+        if (exclusiveReads()) {
+            synchronized (lock) {
+                List<T> elements = elements();
+                int from = lowerBound(elements, fromElement);
+                return copy(elements, from, Math.max(from, lowerBound(elements, toElement)));
+            }
+        }
+        Lock readLock = beginRead();
+        try {
+            List<T> elements = elements();
+            int from = lowerBound(elements, fromElement);
+            return copy(elements, from, Math.max(from, lowerBound(elements, toElement)));
+        } finally {
+            endRead(readLock);
+        }
+    }
+
+    /**
+     * @return the position of the first element that is not less than {@code el}
+     */
+    private int lowerBound(List<T> elements, T el) {
+        int low = 0;
+        int high = elements.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(elements.get(middle), el) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static <T> List<T> copy(List<T> elements, int from, int to) {
+        return new ArrayList<T>(elements.subList(from, to));
+    }
+}
@@ -1,31 +1,134 @@
 package com.robot;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by fernandinho on 6/24/14.
  */
 public class StorableCollection<T> extends BaseCollection<T> {
 
+    /**
+     * The number of elements handed at a time to {@link #afterLoad(java.util.Collection)} when the storage is a {@link ChunkedStorage}
+     */
+    public static final int LOAD_CHUNK_SIZE = 500;
+
     protected CollectionStorage<T> storage;
 
+    private boolean persistEvicted;
+
+    /**
+     * The changes made since the last save, guarded by {@link #lock}. Only tracked when the storage is a {@link DeltaStorage}.
+     */
+    private Delta<T> delta = new Delta<T>(true);
+
     /**
-     * saves the collections objects using the {@link BaseCollection}'s storage
+     * Makes deltas reach the storage in the order they were taken
+     */
+    private final Object saveLock = new Object();
+
+    /**
+     * The elements being added by {@link #addLoaded(Collection)}, null if none. They are not tracked as changes, nor
+     * saved when evicted, since the storage already has them. Guarded by {@link #lock}.
+     */
+    private Map<T, Boolean> loading;
+
+    private final ElementListener<T> changeTracker = new ElementListener<T>() {
+        @Override
+        public void added(T el) {
+            if (loading == null || !loading.containsKey(el)) {
+                delta.upsert(keyOf(el), el);
+            }
+        }
+
+        @Override
+        public void removed(T el) {
+            delta.remove(keyOf(el), el);
+        }
+
+        @Override
+        public void cleared() {
+            delta.clear();
+        }
+    };
+
+    /**
+     * saves the collections objects using the {@link BaseCollection}'s storage. If the storage is a {@link DeltaStorage}
+     * only the elements inserted, replaced or removed since the last save are handed to it. If that fails the error is
+     * published as an {@link ErrorCapturedEvent} and the next save hands the whole collection to the storage.<br>
+     * <br>
+     * A {@link DeltaStorage} only learns about elements that are added, removed or replaced through this collection's
+     * methods: an element modified in place, i.e. through one of its setters, must be reported with
+     * {@link #markChanged(Object)} before saving, otherwise the storage keeps its previous version. Elements evicted from a
+     * bounded collection are not removed from the storage.
      */
     public void save() {
-        storage.save(this, new Callback<Void>() {
+        Callback<Void> callback = new Callback<Void>() {
             @Override
             public void onFinish(Void data) {
                 notifySave();
             }
-        });
+        };
+        if (storage instanceof DeltaStorage) {
+            synchronized (saveLock) {
+                Delta<T> changes;
+                synchronized (lock) {
+                    changes = delta;
+                    delta = new Delta<T>(false);
+                }
+                boolean saved = false;
+                try {
+                    ((DeltaStorage<T>) storage).saveChanges(this, changes, callback);
+                    saved = true;
+                } catch (IOException e) {
+                    notifyError(e);
+                } finally {
+                    if (!saved) {
+                        // the changes were taken but may not have reached the storage
+                        synchronized (lock) {
+                            delta = new Delta<T>(true);
+                        }
+                    }
+                }
+            }
+        } else {
+            storage.save(this, callback);
+        }
+    }
+
+    /**
+     * Reports an element that was modified in place, i.e. through one of its setters, so the next {@link #save()}
+     * hands it to a {@link DeltaStorage}. Elements added, removed or replaced through this collection's methods don't
+     * need to be reported. Does nothing if the element is not in the collection or the storage is not a
+     * {@link DeltaStorage}.
+     *
+     * @param el the modified element
+     */
+    public void markChanged(T el) {
+        synchronized (lock) {
+            if (storage instanceof DeltaStorage && contains(el)) {
+                delta.upsert(keyOf(el), el);
+            }
+        }
     }
 
     /**
      * Loads and adds all elements obtained by the BaseCollection's storage.
-     * A {@link ModelChangedEvent} is guaranteed to be thrown.
+     * A {@link ModelChangedEvent} is guaranteed to be thrown. If the storage is a {@link ChunkedStorage} this is the same
+     * as {@link #loadSync()}.
      */
     public void load() {
+        if (storage instanceof ChunkedStorage) {
+            loadSync();
+            return;
+        }
         load(new Callback<Collection<T>>() {
             @Override
             public void onFinish(Collection<T> data) {
@@ -38,25 +141,107 @@ public class StorableCollection<T> extends BaseCollection<T> {
             @Override
             public void onFinish(Collection<T> data) {
                 data = afterLoad(data);
-                addAll(data, true);
+                if (addLoaded(data)) {
+                    notifyChanges();
+                }
                 cb.onFinish(data);
             }
         });
     }
 
     /**
-     * Similar to {@link #load()} but is guaranteed to run synchronous.
+     * Similar to {@link #load()} but is guaranteed to run synchronous. If the storage is a {@link ChunkedStorage} elements
+     * are added, and passed to {@link #afterLoad(java.util.Collection)}, {@link #LOAD_CHUNK_SIZE} at a time as they are
+     * read, so the whole stored collection is never held in memory twice, and a single event is published at the end.
      */
     public void loadSync() {
+        if (storage instanceof ChunkedStorage) {
+            final boolean[] changes = new boolean[1];
+            ((ChunkedStorage<T>) storage).loadChunks(LOAD_CHUNK_SIZE, new Callback<Collection<T>>() {
+                @Override
+                public void onFinish(Collection<T> chunk) {
+                    changes[0] |= addLoaded(afterLoad(chunk));
+                }
+            });
+            if (changes[0]) {
+                notifyChanges();
+            }
+            return;
+        }
         Collection<T> data = storage.loadSync();
         data = afterLoad(data);
-        addAll(data, true);
+        if (addLoaded(data)) {
+            notifyChanges();
+        }
+    }
+
+    /**
+     * Adds elements read from the storage without publishing an event. They are not tracked as changes, nor saved by
+     * {@link #onEvicted(List)}, since the storage already has them. Like any insertion the lock is only held while they
+     * are added, so evictions are handled after it is released.
+     *
+     * @return true if any element was added
+     */
+    private boolean addLoaded(Collection<T> data) {
+        synchronized (lock) {
+            if (loading == null) {
+                loading = new IdentityHashMap<T, Boolean>();
+            }
+            for (T el : data) {
+                loading.put(el, Boolean.TRUE);
+            }
+        }
+        try {
+            addAll(data, false);
+        } finally {
+            synchronized (lock) {
+                for (T el : data) {
+                    loading.remove(el);
+                }
+                if (loading.isEmpty()) {
+                    loading = null;
+                }
+                delta.loaded();
+            }
+        }
+        return !data.isEmpty();
+    }
+
+    /**
+     * Replaces the elements of this collection with a {@link PagedList} over the storage, so only the pages being read
+     * are loaded instead of every stored element, and publishes a {@link ModelChangedEvent}. The collection can't be
+     * modified afterwards, call {@link #loadPaged(int, int)} again to see changes made to the storage.
+     * The storage must implement {@link PagedStorage}.<br>
+     * <br>
+     * A key mapper, an attribute index, an order, snapshot reads or a capacity would read every page as soon as the list
+     * is set, so they can't be combined with a paged collection.
+     *
+     * @param pageSize      the number of elements read from the storage at a time
+     * @param residentPages the number of pages kept in memory, at least 2
+     * @throws IllegalStateException if the storage can't load pages or the collection uses one of the features above
+     */
+    public void loadPaged(int pageSize, int residentPages) {
+        if (!(storage instanceof PagedStorage)) {
+            throw new IllegalStateException("the storage of this collection can't load pages");
+        }
+        @SuppressWarnings("unchecked")
+        PagedStorage<T> pagedStorage = (PagedStorage<T>) storage;
+        synchronized (lock) {
+            String feature = getWholeListFeature();
+            if (feature != null) {
+                throw new IllegalStateException("a paged collection can't have " + feature + ", it would load every page");
+            }
+            setList(new PagedList<T>(pagedStorage, pageSize, residentPages));
+            delta = new Delta<T>(false);
+        }
+        notifyChanges();
     }
 
     /**
      * Allows operations on a loaded element before it has been added. This method by default does not
      * do anything i.e it just returns the elements parameter but it allows subclasses to do
-     * additional operations on the underlying collection.
+     * additional operations on the underlying collection. When the storage is a {@link ChunkedStorage} it is called once
+     * for every chunk of loaded elements.
      *
      * @param elements
      */
@@ -78,6 +263,54 @@ public class StorableCollection<T> extends BaseCollection<T> {
      */
     public void setStorage(CollectionStorage<T> storage) {
         this.storage = storage;
+        synchronized (lock) {
+            delta = new Delta<T>(true);
+            setElementListener(storage instanceof DeltaStorage ? changeTracker : null);
+        }
+    }
+
+    /**
+     * When enabled, elements evicted from a bounded collection (see {@link #setCapacity(int, EvictionPolicy)}) are handed
+     * to the storage so they can be read again later with {@link EvictionStorage#loadEvicted()} instead of being lost.
+     * Only has an effect when the storage implements {@link EvictionStorage}, i.e. a {@link CollectionJsonStorage} or a
+     * {@link LogCollectionStorage}. Errors saving them are published as {@link ErrorCapturedEvent}s.
+     *
+     * @param persistEvicted true to save evicted elements
+     */
+    public void setPersistEvicted(boolean persistEvicted) {
+        this.persistEvicted = persistEvicted;
+    }
+
+    /**
+     * Saves the evicted elements if {@link #setPersistEvicted(boolean)} is enabled, except the ones evicted while they
+     * were being loaded from the storage, which would otherwise be saved again on every load.
+     */
+    @Override
+    protected void onEvicted(List<T> evicted) {
+        if (!persistEvicted || !(storage instanceof EvictionStorage)) {
+            return;
+        }
+        List<T> unsaved = evicted;
+        synchronized (lock) {
+            if (loading != null) {
+                unsaved = new ArrayList<T>(evicted.size());
+                for (T el : evicted) {
+                    if (!loading.containsKey(el)) {
+                        unsaved.add(el);
+                    }
+                }
+            }
+        }
+        if (unsaved.isEmpty()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        EvictionStorage<T> evictionStorage = (EvictionStorage<T>) storage;
+        try {
+            evictionStorage.saveEvicted(unsaved);
+        } catch (IOException e) {
+            notifyError(e);
+        }
     }
 
     /**
@@ -113,6 +346,199 @@ public class StorableCollection<T> extends BaseCollection<T> {
         public Collection<K> loadSync();
     }
 
+    /**
+     * Implemented by storages that can read the stored elements a few at a time, see {@link #loadSync()}.
+     *
+     * @param <K>
+     * @author fernandinho
+     */
+    public interface ChunkedStorage<K> extends CollectionStorage<K> {
+
+        /**
+         * Reads every stored element, in order, and hands them to the callback as they are read, at most
+         * {@code chunkSize} at a time. Returns once every element was handed to the callback, which is called on the
+         * calling thread.
+         */
+        public void loadChunks(int chunkSize, Callback<Collection<K>> chunkCallback);
+    }
+
+    /**
+     * Implemented by storages that can save only what changed since the previous save instead of the whole collection,
+     * i.e. by appending the changes to a log that is compacted from time to time.
+     *
+     * @param <K>
+     * @author fernandinho
+     */
+    public interface DeltaStorage<K> extends CollectionStorage<K> {
+
+        /**
+         * Saves the changes made to the collection since the previous save. Calls for the same collection never overlap
+         * and are made in the order the changes were taken. When {@link Delta#isFullSaveRequired()} is true
+         * the changes are not known and the whole collection must be saved, like {@link #save(BaseCollection, Callback)} does.
+         * It may return before the changes are written, i.e. to write the changes of several saves together, in which case
+         * the callback is called once they are, possibly from another thread.
+         *
+         * @throws IOException if the changes could not be saved, the next call is then a full save
+         */
+        public void saveChanges(BaseCollection<K> collection, Delta<K> changes, Callback<Void> callback) throws IOException;
+    }
+
+    /**
+     * Implemented by storages that can keep the elements a bounded collection evicts, see {@link #setPersistEvicted(boolean)}.
+     *
+     * @param <K>
+     * @author fernandinho
+     */
+    public interface EvictionStorage<K> {
+
+        /**
+         * Saves elements that were evicted from the collection, next to the stored collection. Called on the thread that
+         * caused the eviction, after the collection's lock is released.
+         */
+        public void saveEvicted(Collection<K> evicted) throws IOException;
+
+        /**
+         * @return every element saved by {@link #saveEvicted(java.util.Collection)}, in the order they were evicted. An
+         * element that was evicted more than once is returned once per eviction.
+         */
+        public List<K> loadEvicted() throws IOException;
+    }
+
+    /**
+     * Implemented by storages that can read a range of the stored elements without reading all of them,
+     * see {@link #loadPaged(int, int)}. Methods may be called from a background thread.
+     *
+     * @param <K>
+     * @author fernandinho
+     */
+    public interface PagedStorage<K> {
+
+        /**
+         * @return the number of stored elements
+         */
+        public int count();
+
+        /**
+         * @return the stored elements from position {@code offset}, at most {@code limit} of them, in order
+         */
+        public List<K> loadPage(int offset, int limit);
+    }
+
+    /**
+     * The elements inserted, replaced or removed since the previous save, see {@link DeltaStorage}. Elements are identified
+     * like in {@link BaseCollection#updateAll(java.util.Collection, boolean)}, by key or by their equals method, and only the
+     * last change of each element is kept, so an element inserted and then removed is only listed as removed.
+     *
+     * @param <K>
+     * @author fernandinho
+     */
+    public static class Delta<K> {
+
+        private final Map<Object, K> upserts = new LinkedHashMap<Object, K>();
+        private final Map<Object, K> removals = new LinkedHashMap<Object, K>();
+        private boolean unknown;
+        private boolean cleared;
+
+        /**
+         * @param unknown true if the stored elements are not known yet, i.e. nothing was loaded or saved
+         */
+        Delta(boolean unknown) {
+            this.unknown = unknown;
+        }
+
+        void upsert(Object key, K el) {
+            removals.remove(key);
+            upserts.put(key, el);
+        }
+
+        void remove(Object key, K el) {
+            upserts.remove(key);
+            removals.put(key, el);
+        }
+
+        void clear() {
+            upserts.clear();
+            removals.clear();
+            cleared = true;
+        }
+
+        void loaded() {
+            unknown = false;
+        }
+
+        /**
+         * @return the elements that were inserted or replaced, in the order they were last changed
+         */
+        public Collection<K> getUpserts() {
+            return upserts.values();
+        }
+
+        /**
+         * @return the elements that were removed
+         */
+        public Collection<K> getRemovals() {
+            return removals.values();
+        }
+
+        /**
+         * @return true if the collection was cleared or its data structure replaced, or nothing was loaded or saved yet,
+         * in which case the whole collection must be saved
+         */
+        public boolean isFullSaveRequired() {
+            return unknown || cleared;
+        }
+
+        /**
+         * @return true if nothing changed
+         */
+        public boolean isEmpty() {
+            return !isFullSaveRequired() && upserts.isEmpty() && removals.isEmpty();
+        }
+
+        /**
+         * Applies a delta read back from a storage: replaces the elements of {@code list} that match an upsert in place,
+         * appends the other upserts and drops the elements that match a removal, like
+         * {@link BaseCollection#updateAll(java.util.Collection, boolean)} and {@link BaseCollection#removeAll(java.util.Collection)} do.
+         *
+         * @param keyMapper the key mapper of the collection, null if elements are compared with their equals method
+         * @return a new list with the delta applied
+         */
+        static <K> List<K> apply(List<K> list, Collection<K> upserts, Collection<K> removals, BaseCollection.Mapper<K, ?> keyMapper) {
+            Set<Object> removed = new HashSet<Object>();
+            for (K el : removals) {
+                removed.add(keyOf(el, keyMapper));
+            }
+            Map<Object, K> pending = new LinkedHashMap<Object, K>();
+            for (K el : upserts) {
+                pending.put(keyOf(el, keyMapper), el);
+            }
+            Set<Object> matched = new HashSet<Object>();
+            List<K> result = new ArrayList<K>(list.size() + pending.size());
+            for (K el : list) {
+                Object key = keyOf(el, keyMapper);
+                if (removed.contains(key)) {
+                    continue;
+                }
+                K replacement = pending.get(key);
+                if (replacement != null) {
+                    matched.add(key);
+                    el = replacement;
+                }
+                result.add(el);
+            }
+            for (Map.Entry<Object, K> entry : pending.entrySet()) {
+                if (!matched.contains(entry.getKey())) {
+                    result.add(entry.getValue());
+                }
+            }
+            return result;
+        }
+
+        private static <K> Object keyOf(K el, BaseCollection.Mapper<K, ?> keyMapper) {
+            return keyMapper == null ? el : keyMapper.map(el);
+        }
+    }
+
     public interface Callback<K> {
         public void onFinish(K data);
     }
@@ -0,0 +1,24 @@
+package com.robot;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a model class saved by a {@link JsonSerializerStorage} or a {@link CollectionJsonStorage}. When the robot-compiler
+ * annotation processor is on the app's annotation processor path it generates a Gson type adapter for the class, named
+ * after it with a {@code $$TypeAdapter} suffix, that reads and writes its fields without reflection. The adapter is found
+ * by {@link StoredTypeAdapterFactory}, which is registered in the {@link GsonSerializer#getDefaultGson() shared Gson}.<br>
+ * <br>
+ * The serialized form is the same as Gson's: every field that is neither static nor transient is written under its name,
+ * or the name given by {@link com.google.gson.annotations.SerializedName}. The class must not be generic, must have a non
+ * private constructor without arguments, and its fields must be neither private nor final, so the generated adapter can
+ * reach them. Classes annotated without running the processor are serialized by reflection as before.
+ *
+ * @author fernandinho
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Stored {
+}
@@ -0,0 +1,73 @@
+package com.robot;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the type adapters generated by the robot-compiler annotation processor for classes annotated with
+ * {@link Stored}. The generated class of every type is looked up once and its constructor cached, so Gson only falls
+ * back to reflection for types without a generated adapter.
+ *
+ * @author fernandinho
+ */
+public class StoredTypeAdapterFactory implements TypeAdapterFactory {
+
+    /**
+     * Appended to the binary name of a stored class to get the name of its generated adapter
+     */
+    public static final String SUFFIX = "$$TypeAdapter";
+
+    /**
+     * Cached for the types without a generated adapter, since a ConcurrentHashMap can't hold null values
+     */
+    private static final Object NONE = new Object();
+
+    /**
+     * The constructor of the generated adapter by stored class, or {@link #NONE}
+     */
+    private final ConcurrentHashMap<Class<?>, Object> constructors = new ConcurrentHashMap<Class<?>, Object>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (type.getType() != rawType) {
+            // adapters are only generated for classes without type parameters
+            return null;
+        }
+        Object cached = constructors.get(rawType);
+        if (cached == null) {
+            cached = findConstructor(rawType);
+            constructors.put(rawType, cached);
+        }
+        if (cached == NONE) {
+            return null;
+        }
+        Constructor<?> constructor = (Constructor<?>) cached;
+        try {
+            return (TypeAdapter<T>) constructor.newInstance(gson);
+        } catch (Exception e) {
+            throw new RuntimeException("unable to create " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    private static Object findConstructor(Class<?> rawType) {
+        if (!rawType.isAnnotationPresent(Stored.class)) {
+            return NONE;
+        }
+        try {
+            Class<?> adapter = Class.forName(rawType.getName() + SUFFIX, true, rawType.getClassLoader());
+            return adapter.getConstructor(Gson.class);
+        } catch (ClassNotFoundException e) {
+            // the annotation processor didn't run, Gson serializes the type by reflection
+            return NONE;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(rawType.getName() + SUFFIX + " has no constructor taking a Gson", e);
+        }
+    }
+}
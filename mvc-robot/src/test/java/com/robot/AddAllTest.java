@@ -0,0 +1,94 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fernandinho
+ */
+public class AddAllTest {
+
+    private final List<BaseCollection.ModelChangedEvent> events = new ArrayList<BaseCollection.ModelChangedEvent>();
+
+    private final StorableCollection<Car> cars = Cars.identifiedById(new StorableCollection<Car>() {
+        @Override
+        public void notifyEvent(Object event) {
+            if (event instanceof ModelChangedEvent) {
+                events.add((ModelChangedEvent) event);
+            }
+        }
+    });
+
+    @Test
+    public void elementsAreAppendedInOrderWithOneEvent() {
+        cars.add(new Car(1, "fiat", 100), false);
+        cars.addAll(Arrays.asList(new Car(2, "audi", 200), new Car(3, "bmw", 300)), true);
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(3, "bmw", 300)), cars.toList());
+        assertEquals(1, events.size());
+        assertTrue(cars.contains(new Car(3, "other brand", 0)));
+    }
+
+    @Test
+    public void iterablesThatAreNotCollectionsAreAdded() {
+        final List<Car> source = Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200));
+        cars.addAll(new Iterable<Car>() {
+            @Override
+            public Iterator<Car> iterator() {
+                return source.iterator();
+            }
+        }, false);
+
+        assertEquals(source, cars.toList());
+    }
+
+    @Test
+    public void addingNothingPublishesNothing() {
+        cars.addAll(new ArrayList<Car>(), true);
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void boundedCollectionEvictsWhatDoesNotFit() {
+        cars.setCapacity(2, new EvictionPolicy.Fifo<Car>());
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(3, "bmw", 300)), false);
+
+        assertEquals(Arrays.asList(new Car(2, "audi", 200), new Car(3, "bmw", 300)), cars.toList());
+    }
+
+    @Test
+    public void loadedElementsAreAddedInOrder() {
+        final List<Car> stored = new ArrayList<Car>();
+        for (int i = 0; i < 1000; i++) {
+            stored.add(new Car(i, "fiat", i));
+        }
+        cars.setStorage(new StorableCollection.CollectionStorage<Car>() {
+            @Override
+            public void save(BaseCollection<Car> collection, StorableCollection.Callback<Void> callback) {
+            }
+
+            @Override
+            public void load(StorableCollection.Callback<Collection<Car>> callback) {
+                callback.onFinish(loadSync());
+            }
+
+            @Override
+            public Collection<Car> loadSync() {
+                return new ArrayList<Car>(stored);
+            }
+        });
+        cars.loadSync();
+
+        assertEquals(stored, cars.toList());
+        assertTrue(cars.contains(new Car(999, "other brand", 0)));
+    }
+}
@@ -0,0 +1,118 @@
+package com.robot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that filters naming an index registered with {@link BaseCollection#addIndex(String, BaseCollection.Mapper)}
+ * only look at the elements found in it, and that the index follows every change of the collection.
+ *
+ * @author fernandinho
+ */
+public class AttributeIndexTest {
+
+    private static final String BRAND = "brand";
+    private static final BaseCollection.Mapper<Car, Object> BRAND_OF = new BaseCollection.Mapper<Car, Object>() {
+        @Override
+        public Object map(Car car) {
+            return car.brand;
+        }
+    };
+
+    private final StorableCollection<Car> cars = Cars.collection();
+    private int checked;
+
+    @Before
+    public void setUp() {
+        List<Car> all = new ArrayList<Car>();
+        for (int i = 0; i < 100; i++) {
+            all.add(new Car(i, i % 10 == 0 ? "fiat" : "audi", i));
+        }
+        cars.addAll(all, false);
+        cars.addIndex(BRAND, BRAND_OF);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void indexedFiltersOnlyCheckTheIndexedElements() {
+        List<Car> fiats = cars.filter(brand("fiat"));
+
+        assertEquals(10, fiats.size());
+        assertEquals(10, checked);
+        assertEquals(new Car(0, "fiat", 0), fiats.get(0));
+        assertEquals(new Car(90, "fiat", 90), fiats.get(9));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void otherFiltersAreAppliedToTheIndexedElements() {
+        BaseCollection.Filter<Car> expensive = new BaseCollection.Filter<Car>() {
+            @Override
+            public boolean include(Car el) {
+                return el.price >= 50;
+            }
+        };
+
+        assertEquals(Arrays.asList(new Car(50, "fiat", 50), new Car(60, "fiat", 60), new Car(70, "fiat", 70),
+                new Car(80, "fiat", 80), new Car(90, "fiat", 90)), cars.filter(expensive, brand("fiat")));
+        assertEquals(new Car(50, "fiat", 50), cars.filterFirst(expensive, brand("fiat")));
+        assertNull(cars.filterFirst(brand("bmw")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void indexFollowsTheChangesOfTheCollection() {
+        cars.add(new Car(100, "fiat", 100), false);
+        cars.remove(new Car(0, "fiat", 0));
+        cars.updateAll(Arrays.asList(new Car(10, "bmw", 10), new Car(1, "fiat", 1)), false);
+
+        assertEquals(new HashSet<Car>(Arrays.asList(new Car(1, "fiat", 1), new Car(20, "fiat", 20), new Car(30, "fiat", 30),
+                new Car(40, "fiat", 40), new Car(50, "fiat", 50), new Car(60, "fiat", 60), new Car(70, "fiat", 70),
+                new Car(80, "fiat", 80), new Car(90, "fiat", 90), new Car(100, "fiat", 100))),
+                new HashSet<Car>(cars.filter(brand("fiat"))));
+        assertEquals(Arrays.asList(new Car(10, "bmw", 10)), cars.filter(brand("bmw")));
+
+        cars.clear(false);
+        assertEquals(new ArrayList<Car>(), cars.filter(brand("fiat")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void removedIndexesAreNotUsed() {
+        cars.removeIndex(BRAND);
+
+        assertEquals(10, cars.filter(brand("fiat")).size());
+        assertEquals(100, checked);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void filtersNamingAnUnknownIndexScanTheCollection() {
+        assertEquals(10, cars.filter(new BaseCollection.DefFilter<Car>("unknown", "fiat") {
+            @Override
+            public boolean include(Car el) {
+                checked++;
+                return value.equals(el.brand);
+            }
+        }).size());
+        assertEquals(100, checked);
+    }
+
+    private BaseCollection.Filter<Car> brand(String brand) {
+        return new BaseCollection.DefFilter<Car>(BRAND, brand) {
+            @Override
+            public boolean include(Car el) {
+                checked++;
+                return value.equals(el.brand);
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fernandinho
+ */
+public class BatchTest {
+
+    private final List<BaseCollection.ModelChangedEvent> events = new ArrayList<BaseCollection.ModelChangedEvent>();
+
+    private final StorableCollection<Car> cars = Cars.identifiedById(new StorableCollection<Car>() {
+        @Override
+        public void notifyEvent(Object event) {
+            if (event instanceof ModelChangedEvent) {
+                events.add((ModelChangedEvent) event);
+            }
+        }
+    });
+
+    @Test
+    public void changesInABatchArePublishedOnceWhenItEnds() {
+        cars.beginBatch();
+        try {
+            cars.add(new Car(1, "fiat", 100), true);
+            cars.add(new Car(2, "audi", 200), true);
+            cars.remove(new Car(1, "fiat", 100));
+            assertTrue(events.isEmpty());
+        } finally {
+            cars.endBatch();
+        }
+
+        assertEquals(1, events.size());
+        assertEquals(Arrays.asList(new Car(2, "audi", 200)), cars.toList());
+    }
+
+    @Test
+    public void onlyTheOutermostBatchPublishes() {
+        cars.beginBatch();
+        cars.batch(new Runnable() {
+            @Override
+            public void run() {
+                cars.add(new Car(1, "fiat", 100), true);
+            }
+        });
+        assertTrue(events.isEmpty());
+        cars.add(new Car(2, "audi", 200), true);
+        cars.endBatch();
+
+        assertEquals(1, events.size());
+        assertEquals(1, events.get(0).getChanges().size());
+        assertEquals(2, events.get(0).getChanges().get(0).getCount());
+    }
+
+    @Test
+    public void batchWithoutNotifiedChangesPublishesNothing() {
+        cars.batch(new Runnable() {
+            @Override
+            public void run() {
+                cars.add(new Car(1, "fiat", 100), false);
+            }
+        });
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void batchEndsWhenTheOperationsThrow() {
+        try {
+            cars.batch(new Runnable() {
+                @Override
+                public void run() {
+                    cars.add(new Car(1, "fiat", 100), true);
+                    throw new IllegalArgumentException();
+                }
+            });
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(1, events.size());
+
+        cars.add(new Car(2, "audi", 200), true);
+        assertEquals(2, events.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void endingABatchThatWasNotBegunThrows() {
+        cars.endBatch();
+    }
+}
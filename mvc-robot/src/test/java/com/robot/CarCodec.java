@@ -0,0 +1,56 @@
+package com.robot;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Stores a {@link Car} in three columns: the id, the brand as its length followed by up to {@value #MAX_BRAND} bytes,
+ * and the price
+ *
+ * @author fernandinho
+ */
+public class CarCodec implements OffHeapList.Codec<Car> {
+
+    static final int MAX_BRAND = 15;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int[] WIDTHS = {8, 1 + MAX_BRAND, 4};
+
+    @Override
+    public int[] columnWidths() {
+        return WIDTHS;
+    }
+
+    @Override
+    public void encode(Car car, int row, ByteBuffer[] columns) {
+        columns[0].putLong(row * WIDTHS[0], car.id);
+        int offset = row * WIDTHS[1];
+        if (car.brand == null) {
+            columns[1].put(offset, (byte) -1);
+        } else {
+            byte[] brand = car.brand.getBytes(UTF_8);
+            if (brand.length > MAX_BRAND) {
+                throw new IllegalArgumentException(car.brand + " is longer than " + MAX_BRAND + " bytes");
+            }
+            columns[1].put(offset, (byte) brand.length);
+            for (int i = 0; i < brand.length; i++) {
+                columns[1].put(offset + 1 + i, brand[i]);
+            }
+        }
+        columns[2].putInt(row * WIDTHS[2], car.price);
+    }
+
+    @Override
+    public Car decode(int row, ByteBuffer[] columns) {
+        int offset = row * WIDTHS[1];
+        int length = columns[1].get(offset);
+        String brand = null;
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = columns[1].get(offset + 1 + i);
+            }
+            brand = new String(bytes, UTF_8);
+        }
+        return new Car(columns[0].getLong(row * WIDTHS[0]), brand, columns[2].getInt(row * WIDTHS[2]));
+    }
+}
@@ -0,0 +1,45 @@
+package com.robot;
+
+import com.google.gson.reflect.TypeToken;
+import com.squareup.otto.Bus;
+import com.squareup.otto.ThreadEnforcer;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Builds the collections and storages of {@link Car}s used by the tests
+ *
+ * @author fernandinho
+ */
+final class Cars {
+
+    private Cars() {
+    }
+
+    /**
+     * @return a collection that identifies cars by id and posts its events on the calling thread
+     */
+    static StorableCollection<Car> collection() {
+        return identifiedById(new StorableCollection<Car>());
+    }
+
+    /**
+     * Makes the collection identify cars by id and post its events on the calling thread, instead of the main thread
+     * the default bus requires
+     */
+    static <C extends BaseCollection<Car>> C identifiedById(C collection) {
+        collection.setEventBus(new Bus(ThreadEnforcer.ANY));
+        collection.setKeyMapper(Car.ID);
+        return collection;
+    }
+
+    /**
+     * @return a storage in the given directory that identifies cars by id
+     */
+    static LogCollectionStorage<Car> logStorage(File directory) {
+        LogCollectionStorage<Car> storage = new LogCollectionStorage<Car>(directory, new TypeToken<List<Car>>() {});
+        storage.setKeyMapper(Car.ID);
+        return storage;
+    }
+}
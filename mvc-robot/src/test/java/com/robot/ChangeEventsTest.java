@@ -0,0 +1,137 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the {@link BaseCollection.Change changes} attached to every {@link BaseCollection.ModelChangedEvent}
+ *
+ * @author fernandinho
+ */
+public class ChangeEventsTest {
+
+    private final List<BaseCollection.ModelChangedEvent> events = new ArrayList<BaseCollection.ModelChangedEvent>();
+
+    private final StorableCollection<Car> cars = Cars.identifiedById(new StorableCollection<Car>() {
+        @Override
+        public void notifyEvent(Object event) {
+            if (event instanceof ModelChangedEvent) {
+                events.add((ModelChangedEvent) event);
+            }
+        }
+    });
+
+    @Test
+    public void contiguousInsertionsAreMerged() {
+        cars.add(new Car(1, "fiat", 100), false);
+        cars.add(new Car(2, "audi", 200), false);
+        cars.addAll(Arrays.asList(new Car(3, "bmw", 300), new Car(4, "seat", 400)), true);
+
+        List<BaseCollection.Change> changes = lastChanges();
+        assertEquals(1, changes.size());
+        assertChange(BaseCollection.Change.Type.inserted, 0, 4, changes.get(0));
+    }
+
+    @Test
+    public void removalsReportWhereTheRemovedRangesWere() {
+        addCars(6);
+        cars.removeAll(Arrays.asList(new Car(1, "", 0), new Car(2, "", 0), new Car(4, "", 0)), true);
+
+        List<BaseCollection.Change> changes = lastChanges();
+        assertEquals(2, changes.size());
+        assertChange(BaseCollection.Change.Type.removed, 1, 2, changes.get(0));
+        assertChange(BaseCollection.Change.Type.removed, 2, 1, changes.get(1));
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        addCars(3);
+        cars.clear(true);
+
+        List<BaseCollection.Change> changes = lastChanges();
+        assertEquals(1, changes.size());
+        assertChange(BaseCollection.Change.Type.removed, 0, 3, changes.get(0));
+    }
+
+    @Test
+    public void sortReportsThePreviousPositions() {
+        cars.addAll(Arrays.asList(new Car(3, "bmw", 300), new Car(1, "fiat", 100), new Car(2, "audi", 200)), true);
+        events.clear();
+        cars.sort(new Comparator<Car>() {
+            @Override
+            public int compare(Car lhs, Car rhs) {
+                return lhs.id < rhs.id ? -1 : (lhs.id == rhs.id ? 0 : 1);
+            }
+        });
+        cars.notifyChanges();
+
+        List<BaseCollection.Change> changes = lastChanges();
+        assertEquals(1, changes.size());
+        assertChange(BaseCollection.Change.Type.moved, 0, 3, changes.get(0));
+        assertArrayEquals(new int[]{1, 2, 0}, changes.get(0).getPreviousPositions());
+    }
+
+    @Test
+    public void updatesAreReportedInPlace() {
+        addCars(4);
+        cars.updateAll(Arrays.asList(new Car(1, "fiat", 150), new Car(2, "audi", 250)), true);
+
+        List<BaseCollection.Change> changes = lastChanges();
+        assertEquals(1, changes.size());
+        assertChange(BaseCollection.Change.Type.updated, 1, 2, changes.get(0));
+    }
+
+    @Test
+    public void tooManyChangesBecomeAFullRefresh() {
+        addCars(4000);
+        List<Car> everyOther = new ArrayList<Car>();
+        for (int i = 0; i < 4000; i += 2) {
+            everyOther.add(new Car(i, "", 0));
+        }
+        cars.removeAll(everyOther, true);
+
+        BaseCollection.ModelChangedEvent event = events.get(events.size() - 1);
+        assertTrue(event.isFullRefresh());
+        assertTrue(event.getChanges().isEmpty());
+
+        cars.add(new Car(1, "fiat", 100), true);
+        assertFalse("the overflow outlived its event", events.get(events.size() - 1).isFullRefresh());
+    }
+
+    @Test
+    public void notifyingWithoutChangesIsAFullRefresh() {
+        cars.notifyChanges();
+
+        assertTrue(events.get(0).isFullRefresh());
+    }
+
+    private void addCars(int count) {
+        List<Car> all = new ArrayList<Car>();
+        for (int i = 0; i < count; i++) {
+            all.add(new Car(i, "car " + i, i * 100));
+        }
+        cars.addAll(all, true);
+        events.clear();
+    }
+
+    private List<BaseCollection.Change> lastChanges() {
+        BaseCollection.ModelChangedEvent event = events.get(events.size() - 1);
+        assertFalse(event.isFullRefresh());
+        return event.getChanges();
+    }
+
+    private static void assertChange(BaseCollection.Change.Type type, int position, int count, BaseCollection.Change change) {
+        assertEquals(type, change.getType());
+        assertEquals(position, change.getPosition());
+        assertEquals(count, change.getCount());
+    }
+}
@@ -0,0 +1,162 @@
+package com.robot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Saves collections through a {@link StorableCollection.DeltaStorage} and reloads them in a new collection.
+ *
+ * @author fernandinho
+ */
+public class DeltaSaveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private RecordingStorage storage;
+    private StorableCollection<Car> cars;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "cars");
+        storage = new RecordingStorage(directory);
+        cars = open(storage);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        storage.storage.close();
+    }
+
+    @Test
+    public void onlyChangesAreSaved() {
+        cars.add(new Car(1, "fiat", 100));
+        cars.add(new Car(2, "audi", 200));
+        cars.save();
+        cars.updateAll(Arrays.asList(new Car(1, "fiat", 150)), false);
+        cars.remove(new Car(2, "audi", 200));
+        cars.add(new Car(3, "bmw", 300));
+        cars.save();
+
+        StorableCollection.Delta<Car> last = storage.saved.get(storage.saved.size() - 1);
+        assertFalse(last.isFullSaveRequired());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 150), new Car(3, "bmw", 300)), new ArrayList<Car>(last.getUpserts()));
+        assertEquals(Arrays.asList(new Car(2, "audi", 200)), new ArrayList<Car>(last.getRemovals()));
+        assertEquals(cars.toList(), reload());
+    }
+
+    @Test
+    public void loadedElementsAreNotSavedAgain() {
+        cars.add(new Car(1, "fiat", 100));
+        cars.save();
+
+        RecordingStorage reloadedStorage = new RecordingStorage(directory);
+        open(reloadedStorage).save();
+
+        assertTrue(reloadedStorage.saved.get(0).isEmpty());
+        assertFalse(reloadedStorage.saved.get(0).isFullSaveRequired());
+    }
+
+    @Test
+    public void failedSaveIsRetriedInFull() {
+        cars.add(new Car(1, "fiat", 100));
+        storage.fail = true;
+        cars.save();
+        storage.fail = false;
+        cars.add(new Car(2, "audi", 200));
+        cars.save();
+
+        assertTrue(storage.saved.get(1).isFullSaveRequired());
+        assertEquals(cars.toList(), reload());
+    }
+
+    @Test
+    public void markChangedSavesInPlaceModifications() {
+        Car car = new Car(1, "fiat", 100);
+        cars.add(car);
+        cars.save();
+        car.price = 120;
+        cars.markChanged(car);
+        cars.save();
+
+        assertEquals(Collections.singletonList(new Car(1, "fiat", 120)), reload());
+    }
+
+    private List<Car> reload() {
+        storage.flush();
+        return open(new RecordingStorage(directory)).toList();
+    }
+
+    private static StorableCollection<Car> open(RecordingStorage storage) {
+        StorableCollection<Car> cars = Cars.collection();
+        cars.setStorage(storage);
+        cars.loadSync();
+        return cars;
+    }
+
+    /**
+     * Keeps the changes handed to a {@link LogCollectionStorage}, and fails saves on demand
+     */
+    private static class RecordingStorage implements StorableCollection.DeltaStorage<Car> {
+
+        final LogCollectionStorage<Car> storage;
+        final List<StorableCollection.Delta<Car>> saved = new ArrayList<StorableCollection.Delta<Car>>();
+        boolean fail;
+
+        RecordingStorage(File directory) {
+            storage = Cars.logStorage(directory);
+        }
+
+        @Override
+        public void saveChanges(BaseCollection<Car> collection, StorableCollection.Delta<Car> changes,
+                                StorableCollection.Callback<Void> callback) throws IOException {
+            saved.add(changes);
+            if (fail) {
+                throw new IOException("disk full");
+            }
+            storage.saveChanges(collection, changes, callback);
+        }
+
+        /**
+         * Writes the changes the storage queued, so another storage can read them
+         */
+        void flush() {
+            try {
+                storage.flush();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public void save(BaseCollection<Car> collection, StorableCollection.Callback<Void> callback) {
+            storage.save(collection, callback);
+        }
+
+        @Override
+        public void load(StorableCollection.Callback<Collection<Car>> callback) {
+            storage.load(callback);
+        }
+
+        @Override
+        public Collection<Car> loadSync() {
+            return storage.loadSync();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.robot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fernandinho
+ */
+public class DoubleCollectionTest {
+
+    private final DoubleCollection values = new DoubleCollection();
+
+    @Test
+    public void notANumberIsFound() {
+        values.addAll(new double[]{1.5, Double.NaN, 2.5}, false);
+
+        assertEquals(1, values.indexOf(Double.NaN));
+        assertTrue(values.contains(Double.NaN));
+        assertTrue(values.remove(Double.NaN, false));
+        assertArrayEquals(new double[]{1.5, 2.5}, values.toArray(), 0);
+    }
+
+    @Test
+    public void zeroesAreDifferent() {
+        values.add(-0.0, false);
+
+        assertFalse(values.contains(0.0));
+        assertFalse(values.remove(0.0, false));
+        assertEquals(0, values.indexOf(-0.0));
+    }
+
+    @Test
+    public void addingPastTheCapacityKeepsEveryValue() {
+        DoubleCollection small = new DoubleCollection(1);
+        small.add(1.5, false);
+        small.add(2.5, false);
+        small.add(3.5, false);
+
+        assertArrayEquals(new double[]{1.5, 2.5, 3.5}, small.toArray(), 0);
+    }
+}
@@ -0,0 +1,176 @@
+package com.robot;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author fernandinho
+ */
+public class EvictionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<Car> evicted;
+    private StorableCollection<Car> cars;
+    private File directory;
+
+    @Before
+    public void setUp() {
+        evicted = new ArrayList<Car>();
+        cars = Cars.identifiedById(new StorableCollection<Car>() {
+            @Override
+            protected void onEvicted(List<Car> els) {
+                assertFalse("evictions are handled holding the lock", Thread.holdsLock(lock));
+                super.onEvicted(els);
+                evicted.addAll(els);
+            }
+        });
+        directory = new File(folder.getRoot(), "cars");
+    }
+
+    @Test
+    public void fifoKeepsTheCapacity() {
+        cars.setCapacity(3, new EvictionPolicy.Fifo<Car>());
+        for (int i = 1; i <= 5; i++) {
+            cars.add(new Car(i, "fiat", i));
+        }
+
+        assertEquals(Arrays.asList(new Car(3, "fiat", 3), new Car(4, "fiat", 4), new Car(5, "fiat", 5)), cars.toList());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 1), new Car(2, "fiat", 2)), evicted);
+    }
+
+    @Test
+    public void settingACapacityEvictsRightAway() {
+        for (int i = 1; i <= 4; i++) {
+            cars.add(new Car(i, "fiat", i));
+        }
+        cars.setCapacity(2, new EvictionPolicy.Fifo<Car>());
+
+        assertEquals(2, cars.size());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 1), new Car(2, "fiat", 2)), evicted);
+    }
+
+    @Test
+    public void lruKeepsTouchedElements() {
+        Car first = new Car(1, "fiat", 1);
+        Car second = new Car(2, "fiat", 2);
+        cars.setCapacity(2, new EvictionPolicy.Lru<Car>());
+        cars.add(first);
+        cars.add(second);
+        cars.touch(first);
+        cars.add(new Car(3, "fiat", 3));
+
+        assertEquals(Arrays.asList(first, new Car(3, "fiat", 3)), cars.toList());
+        assertEquals(Arrays.asList(second), evicted);
+    }
+
+    @Test
+    public void lowestPriorityEvictsTheCheapest() {
+        cars.setCapacity(2, new EvictionPolicy.LowestPriority<Car>(new Comparator<Car>() {
+            @Override
+            public int compare(Car a, Car b) {
+                return a.price < b.price ? -1 : (a.price == b.price ? 0 : 1);
+            }
+        }));
+        cars.add(new Car(1, "fiat", 300));
+        cars.add(new Car(2, "fiat", 100));
+        cars.add(new Car(3, "fiat", 200));
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 300), new Car(3, "fiat", 200)), cars.toList());
+        assertEquals(Arrays.asList(new Car(2, "fiat", 100)), evicted);
+    }
+
+    @Test
+    public void lowestPriorityTracksInstances() {
+        // two elements that are equal but have different priorities, removing one must not drop the other
+        EvictionPolicy<Car> policy = new EvictionPolicy.LowestPriority<Car>(new Comparator<Car>() {
+            @Override
+            public int compare(Car a, Car b) {
+                return a.brand.compareTo(b.brand);
+            }
+        });
+        Car audi = new SameId(1, "audi");
+        Car bmw = new SameId(1, "bmw");
+        policy.onAdded(audi);
+        policy.onAdded(bmw);
+        policy.onRemoved(bmw);
+
+        assertSame(audi, policy.evict());
+        assertNull(policy.evict());
+    }
+
+    @Test
+    public void evictedElementsArePersisted() throws Exception {
+        LogCollectionStorage<Car> storage = saveEvicting(cars);
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 1), new Car(2, "fiat", 2)), storage.loadEvicted());
+        // evictions are not removals, the storage keeps every element
+        assertEquals(4, new ArrayList<Car>(storage.loadSync()).size());
+    }
+
+    @Test
+    public void loadingDoesNotPersistStoredElementsAgain() throws Exception {
+        LogCollectionStorage<Car> storage = saveEvicting(cars);
+        // the storage keeps the 4 cars, loading them in a collection that keeps 2 evicts the other 2 again
+        for (int load = 0; load < 2; load++) {
+            StorableCollection<Car> reloaded = Cars.collection();
+            reloaded.setStorage(storage);
+            reloaded.setPersistEvicted(true);
+            reloaded.setCapacity(2, new EvictionPolicy.Fifo<Car>());
+            reloaded.loadSync();
+            assertEquals(2, reloaded.size());
+        }
+
+        assertEquals(2, storage.loadEvicted().size());
+    }
+
+    /**
+     * Adds 4 cars to a collection that keeps 2 and persists the evicted ones, and saves it
+     */
+    private LogCollectionStorage<Car> saveEvicting(StorableCollection<Car> cars) {
+        LogCollectionStorage<Car> storage = Cars.logStorage(directory);
+        cars.setStorage(storage);
+        cars.loadSync();
+        cars.setPersistEvicted(true);
+        cars.setCapacity(2, new EvictionPolicy.Fifo<Car>());
+        for (int i = 1; i <= 4; i++) {
+            cars.add(new Car(i, "fiat", i));
+        }
+        cars.save();
+        return storage;
+    }
+
+    /**
+     * A car equal to every car with the same id
+     */
+    private static class SameId extends Car {
+
+        SameId(long id, String brand) {
+            super(id, brand, 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Car && ((Car) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (id ^ (id >>> 32));
+        }
+    }
+}
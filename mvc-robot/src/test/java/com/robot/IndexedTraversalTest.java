@@ -0,0 +1,111 @@
+package com.robot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that {@link BaseCollection#each(BaseCollection.Iter)}, {@link BaseCollection#mapInto(List, BaseCollection.Mapper)}
+ * and {@link BaseCollection#filterInto(List, BaseCollection.Filter[])} traverse random access lists by index and
+ * append to the given list.
+ *
+ * @author fernandinho
+ */
+public class IndexedTraversalTest {
+
+    private static final BaseCollection.Mapper<Car, Long> ID = new BaseCollection.Mapper<Car, Long>() {
+        @Override
+        public Long map(Car el) {
+            return el.id;
+        }
+    };
+    private static final BaseCollection.Filter<Car> FIATS = new BaseCollection.Filter<Car>() {
+        @Override
+        public boolean include(Car el) {
+            return "fiat".equals(el.brand);
+        }
+    };
+
+    private final StorableCollection<Car> cars = Cars.collection();
+
+    @Before
+    public void setUp() {
+        IndexOnlyList<Car> all = new IndexOnlyList<Car>();
+        all.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(3, "fiat", 300)));
+        cars.setList(all);
+        all.iterable = false;
+    }
+
+    @Test
+    public void eachVisitsEveryElementInOrder() {
+        final List<Car> visited = new ArrayList<Car>();
+        cars.each(new BaseCollection.Iter<Car>() {
+            @Override
+            public void item(Car el) {
+                visited.add(el);
+            }
+        });
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(3, "fiat", 300)), visited);
+    }
+
+    @Test
+    public void mapIntoAppendsToTheGivenList() {
+        List<Long> result = new ArrayList<Long>(Arrays.asList(0L));
+
+        assertSame(result, cars.mapInto(result, ID));
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), result);
+
+        result.clear();
+        cars.mapInto(result, ID);
+        assertEquals(Arrays.asList(1L, 2L, 3L), result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void filterIntoAppendsToTheGivenList() {
+        List<Car> result = new ArrayList<Car>(Arrays.asList(new Car(0, "seat", 0)));
+
+        assertSame(result, cars.filterInto(result, FIATS));
+        assertEquals(Arrays.asList(new Car(0, "seat", 0), new Car(1, "fiat", 100), new Car(3, "fiat", 300)), result);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void listsWithoutRandomAccessAreIterated() {
+        List<Car> linked = new LinkedList<Car>(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)));
+
+        assertEquals(Arrays.asList(9L, 1L, 2L), BaseCollection.mapInto(linked, new ArrayList<Long>(Arrays.asList(9L)), ID));
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100)), BaseCollection.filterInto(linked, new ArrayList<Car>(), FIATS));
+    }
+
+    /**
+     * A random access list that fails when it is iterated once {@link #iterable} is cleared
+     */
+    private static class IndexOnlyList<T> extends ArrayList<T> {
+
+        private boolean iterable = true;
+
+        @Override
+        public Iterator<T> iterator() {
+            return listIterator();
+        }
+
+        @Override
+        public ListIterator<T> listIterator() {
+            if (!iterable) {
+                throw new AssertionError("a random access list was iterated");
+            }
+            return super.listIterator();
+        }
+    }
+}
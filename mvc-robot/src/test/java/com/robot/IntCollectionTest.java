@@ -0,0 +1,76 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fernandinho
+ */
+public class IntCollectionTest {
+
+    private final IntCollection values = new IntCollection(1);
+
+    @Test
+    public void valuesAreAddedReplacedAndRemoved() {
+        for (int i = 0; i < 50; i++) {
+            values.add(i, false);
+        }
+        values.set(0, 100, false);
+
+        assertEquals(100, values.removeAt(0, false));
+        assertTrue(values.remove(49, false));
+        assertFalse(values.contains(49));
+        assertEquals(48, values.size());
+        assertEquals(1, values.get(0));
+        assertEquals(47, values.indexOf(48));
+    }
+
+    @Test
+    public void queriesRunInOrder() {
+        values.addAll(new int[]{3, 1, 2}, false);
+        final List<Integer> visited = new ArrayList<Integer>();
+        values.each(new IntCollection.IntIter() {
+            @Override
+            public void item(int value) {
+                visited.add(value);
+            }
+        });
+
+        assertEquals(Arrays.asList(3, 1, 2), visited);
+        assertArrayEquals(new int[]{3, 2}, values.filter(new IntCollection.IntFilter() {
+            @Override
+            public boolean include(int value) {
+                return value > 1;
+            }
+        }).toArray());
+        assertEquals(3, values.reduce(Integer.MIN_VALUE, new IntCollection.IntReducer() {
+            @Override
+            public int reduce(int acum, int value) {
+                return Math.max(acum, value);
+            }
+        }));
+    }
+
+    @Test
+    public void sortingOrdersTheValues() {
+        values.addAll(new int[]{3, 1, 2, 1}, false);
+        values.sort(false);
+
+        assertArrayEquals(new int[]{1, 1, 2, 3}, values.toArray());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void removedPositionsAreRejected() {
+        values.add(1, false);
+        values.removeAt(0, false);
+        values.set(0, 2, false);
+    }
+}
@@ -0,0 +1,92 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks lookups and removals through the key index built by {@link BaseCollection#setKeyMapper(BaseCollection.Mapper)}
+ *
+ * @author fernandinho
+ */
+public class KeyIndexTest {
+
+    private final StorableCollection<Car> cars = Cars.collection();
+
+    @Test
+    public void elementsAreFoundByKey() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)), false);
+
+        assertTrue(cars.contains(new Car(1, "other brand", 0)));
+        assertFalse(cars.contains(new Car(3, "fiat", 100)));
+    }
+
+    @Test
+    public void elementsAreRemovedByKey() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(3, "bmw", 300)), false);
+        cars.remove(new Car(2, "other brand", 0));
+        cars.remove(new Car(4, "fiat", 100));
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(3, "bmw", 300)), cars.toList());
+        assertFalse(cars.contains(new Car(2, "audi", 200)));
+    }
+
+    @Test
+    public void removingManyElementsKeepsTheOrderOfTheOthers() {
+        List<Car> all = new ArrayList<Car>();
+        List<Car> removed = new ArrayList<Car>();
+        List<Car> kept = new ArrayList<Car>();
+        for (int i = 0; i < 20000; i++) {
+            all.add(new Car(i, "fiat", i));
+            if (i % 2 == 0) {
+                removed.add(new Car(i, "other brand", 0));
+            } else {
+                kept.add(new Car(i, "fiat", i));
+            }
+        }
+        cars.addAll(all, false);
+        cars.removeAll(removed, false);
+
+        assertEquals(kept, cars.toList());
+        assertFalse(cars.contains(new Car(0, "fiat", 0)));
+        assertTrue(cars.contains(new Car(1, "fiat", 1)));
+    }
+
+    @Test
+    public void elementsWithTheSameKeyAreCounted() {
+        cars.add(new Car(1, "fiat", 100), false);
+        cars.add(new Car(1, "audi", 200), false);
+        cars.remove(new Car(1, "fiat", 100));
+
+        assertTrue("the other element with the key was forgotten", cars.contains(new Car(1, "bmw", 0)));
+        cars.remove(new Car(1, "audi", 200));
+        assertFalse(cars.contains(new Car(1, "bmw", 0)));
+    }
+
+    @Test
+    public void settingAKeyMapperIndexesTheCurrentElements() {
+        StorableCollection<Car> plain = new StorableCollection<Car>();
+        plain.add(new Car(1, "fiat", 100), false);
+        assertFalse(plain.contains(new Car(1, "audi", 200)));
+
+        plain.setKeyMapper(Car.ID);
+        assertTrue(plain.contains(new Car(1, "audi", 200)));
+
+        plain.setKeyMapper(null);
+        assertFalse(plain.contains(new Car(1, "audi", 200)));
+    }
+
+    @Test
+    public void clearingEmptiesTheIndex() {
+        cars.add(new Car(1, "fiat", 100), false);
+        cars.clear(false);
+
+        assertFalse(cars.contains(new Car(1, "fiat", 100)));
+    }
+}
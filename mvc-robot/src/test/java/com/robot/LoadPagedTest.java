@@ -0,0 +1,116 @@
+package com.robot;
+
+import com.squareup.otto.Bus;
+import com.squareup.otto.ThreadEnforcer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author fernandinho
+ */
+public class LoadPagedTest {
+
+    private static final StorableCollection.Callback<Void> IGNORE = new StorableCollection.Callback<Void>() {
+        @Override
+        public void onFinish(Void data) {
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger pagesRead = new AtomicInteger();
+    private MappedCollectionStorage<Car> storage;
+    private StorableCollection<Car> collection;
+    private List<Car> cars = new ArrayList<Car>();
+
+    @Before
+    public void setUp() {
+        storage = new MappedCollectionStorage<Car>(new File(folder.getRoot(), "cars"), new CarCodec()) {
+            @Override
+            public List<Car> loadPage(int offset, int limit) {
+                pagesRead.incrementAndGet();
+                return super.loadPage(offset, limit);
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            cars.add(new Car(i, "car " + i, i * 100));
+        }
+        StorableCollection<Car> stored = new StorableCollection<Car>();
+        stored.addAll(cars, false);
+        storage.save(stored, IGNORE);
+
+        collection = new StorableCollection<Car>();
+        collection.setEventBus(new Bus(ThreadEnforcer.ANY));
+        collection.setStorage(storage);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        storage.close();
+    }
+
+    @Test
+    public void pagesAreOnlyReadWhenTheirElementsAre() {
+        collection.loadPaged(10, 2);
+        assertEquals(100, collection.size());
+        assertEquals(0, pagesRead.get());
+
+        assertEquals(cars.get(35), collection.get(35));
+        assertTrue(pagesRead.get() < 10);
+        assertEquals(cars, new ArrayList<Car>(collection.toList()));
+    }
+
+    @Test
+    public void keyMapperIsRejected() {
+        collection.setKeyMapper(Car.ID);
+        assertRejected();
+    }
+
+    @Test
+    public void attributeIndexIsRejected() {
+        collection.addIndex("brand", new BaseCollection.Mapper<Car, Object>() {
+            @Override
+            public Object map(Car car) {
+                return car.brand;
+            }
+        });
+        assertRejected();
+    }
+
+    @Test
+    public void snapshotReadsAreRejected() {
+        collection.setSnapshotReads(true);
+        assertRejected();
+    }
+
+    @Test
+    public void capacityIsRejected() {
+        collection.setCapacity(50, new EvictionPolicy.Fifo<Car>());
+        assertRejected();
+    }
+
+    private void assertRejected() {
+        try {
+            collection.loadPaged(10, 2);
+            fail("every page would have been read");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, pagesRead.get());
+        assertEquals(0, collection.size());
+    }
+}
@@ -0,0 +1,254 @@
+package com.robot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author fernandinho
+ */
+public class LogCollectionStorageTest {
+
+    private static final StorableCollection.Callback<Void> IGNORE = new StorableCollection.Callback<Void>() {
+        @Override
+        public void onFinish(Void data) {
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private LogCollectionStorage<Car> storage;
+
+    /**
+     * The elements the storage should hold after the saves of the test
+     */
+    private List<Car> saved = new ArrayList<Car>();
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "cars");
+        storage = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        storage.close();
+    }
+
+    @Test
+    public void changesAreReplayed() throws IOException {
+        save(upserts(new Car(1, "fiat", 100), new Car(2, "audi", 200)));
+        StorableCollection.Delta<Car> changes = upserts(new Car(1, "fiat", 150));
+        changes.remove(2L, new Car(2, "audi", 200));
+        save(changes);
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 150)), load());
+    }
+
+    @Test
+    public void tornLastRecordIsDropped() throws IOException {
+        save(upserts(new Car(1, "fiat", 100)));
+        save(upserts(new Car(2, "audi", 200)));
+        storage.close();
+        append("{\"upserts\":[{\"id\":3,\"bra");
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)), load());
+    }
+
+    @Test
+    public void appendingAfterATornRecordStartsANewLine() throws IOException {
+        save(upserts(new Car(1, "fiat", 100)));
+        storage.close();
+        append("{\"upserts\":[{\"id\":3,\"bra");
+        storage = open();
+        save(upserts(new Car(2, "audi", 200)));
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)), load());
+    }
+
+    @Test
+    public void damagedRecordBeforeTheLastOneFailsTheLoad() throws IOException {
+        save(upserts(new Car(1, "fiat", 100)));
+        save(upserts(new Car(2, "audi", 200)));
+        storage.close();
+        RandomAccessFile log = new RandomAccessFile(logFile(), "rw");
+        try {
+            log.seek(0);
+            log.write('[');
+        } finally {
+            log.close();
+        }
+        long length = logFile().length();
+
+        try {
+            load();
+            fail("the damaged record was dropped");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals("the log was truncated", length, logFile().length());
+    }
+
+    @Test
+    public void longLogIsCompactedIntoASnapshot() throws IOException {
+        storage.setMaxLogSize(1);
+        save(upserts(new Car(1, "fiat", 100)));
+        save(upserts(new Car(2, "audi", 200)));
+        save(upserts(new Car(3, "bmw", 300)));
+
+        assertTrue(new File(directory, "snapshot").exists());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(3, "bmw", 300)), load());
+    }
+
+    @Test
+    public void clearRemovesEverything() throws IOException {
+        save(upserts(new Car(1, "fiat", 100)));
+        storage.saveEvicted(Arrays.asList(new Car(2, "audi", 200)));
+        storage.clear();
+
+        assertTrue(load().isEmpty());
+        assertTrue(storage.loadEvicted().isEmpty());
+    }
+
+    @Test
+    public void callbackIsCalledOnceTheRecordIsWritten() throws Exception {
+        final CountDownLatch written = new CountDownLatch(1);
+        saved.add(new Car(1, "fiat", 100));
+        storage.saveChanges(collection(), upserts(new Car(1, "fiat", 100)), new StorableCollection.Callback<Void>() {
+            @Override
+            public void onFinish(Void data) {
+                written.countDown();
+            }
+        });
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        // read by another storage without flushing this one
+        LogCollectionStorage<Car> reader = open();
+        try {
+            assertEquals(saved, new ArrayList<Car>(reader.loadSync()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void concurrentSavesAreAllWritten() throws Exception {
+        final int threads = 8;
+        final CountDownLatch written = new CountDownLatch(threads);
+        final StorableCollection.Callback<Void> callback = new StorableCollection.Callback<Void>() {
+            @Override
+            public void onFinish(Void data) {
+                written.countDown();
+            }
+        };
+        List<Thread> savers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final Car car = new Car(t, "fiat", t * 100);
+            savers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        storage.saveChanges(collection(), upserts(car), callback);
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            saved.add(car);
+        }
+        for (Thread saver : savers) {
+            saver.start();
+        }
+        for (Thread saver : savers) {
+            saver.join();
+        }
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals(new HashSet<Car>(saved), new HashSet<Car>(load()));
+    }
+
+    private LogCollectionStorage<Car> open() {
+        return Cars.logStorage(directory);
+    }
+
+    /**
+     * Saves the changes the way {@link StorableCollection#save()} does, with the collection holding every change saved
+     * so far so a snapshot writes the same elements, and writes them
+     */
+    private void save(StorableCollection.Delta<Car> changes) throws IOException {
+        saved = StorableCollection.Delta.apply(saved,
+                new ArrayList<Car>(changes.getUpserts()), new ArrayList<Car>(changes.getRemovals()), Car.ID);
+        storage.saveChanges(collection(), changes, IGNORE);
+        storage.flush();
+    }
+
+    private StorableCollection<Car> collection() {
+        StorableCollection<Car> collection = new StorableCollection<Car>();
+        collection.addAll(saved, false);
+        return collection;
+    }
+
+    /**
+     * @return what a new storage loads from the directory
+     */
+    private List<Car> load() {
+        LogCollectionStorage<Car> reader = open();
+        try {
+            return new ArrayList<Car>(reader.loadSync());
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static StorableCollection.Delta<Car> upserts(Car... cars) {
+        StorableCollection.Delta<Car> changes = new StorableCollection.Delta<Car>(false);
+        for (Car car : cars) {
+            changes.upsert(car.id, car);
+        }
+        return changes;
+    }
+
+    private File logFile() {
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        for (File file : files) {
+            if (file.getName().startsWith("log.")) {
+                return file;
+            }
+        }
+        throw new AssertionError("no log in " + directory);
+    }
+
+    private void append(String data) throws IOException {
+        FileOutputStream out = new FileOutputStream(logFile(), true);
+        try {
+            out.write(data.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
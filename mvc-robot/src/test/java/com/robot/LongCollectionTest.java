@@ -0,0 +1,139 @@
+package com.robot;
+
+import com.squareup.otto.Bus;
+import com.squareup.otto.ThreadEnforcer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fernandinho
+ */
+public class LongCollectionTest {
+
+    private final List<Object> events = new ArrayList<Object>();
+
+    private final LongCollection values = new LongCollection(2) {
+        @Override
+        public void notifyEvent(Object object) {
+            events.add(object);
+        }
+    };
+
+    @Test
+    public void valuesAreAddedAndReadInOrder() {
+        for (long i = 0; i < 100; i++) {
+            values.add(i * 3, false);
+        }
+        values.addAll(new long[]{Long.MAX_VALUE, Long.MIN_VALUE}, false);
+
+        assertEquals(102, values.size());
+        assertEquals(297, values.get(99));
+        assertEquals(Long.MIN_VALUE, values.get(101));
+        assertEquals(33, values.indexOf(99));
+        assertFalse(values.contains(1));
+    }
+
+    @Test
+    public void valuesAreReplacedAndRemoved() {
+        values.addAll(new long[]{5, 7, 5, 9}, false);
+        values.set(3, 11, false);
+
+        assertEquals(7, values.removeAt(1, false));
+        assertTrue(values.remove(5, false));
+        assertFalse(values.remove(8, false));
+        assertArrayEquals(new long[]{5, 11}, values.toArray());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void positionsPastTheEndAreRejected() {
+        values.addAll(new long[]{1, 2}, false);
+        values.get(2);
+    }
+
+    @Test
+    public void queriesRunInOrderWithoutChangingTheCollection() {
+        values.addAll(new long[]{4, 1, 3, 2}, false);
+
+        assertArrayEquals(new long[]{4, 2}, values.filter(new LongCollection.LongFilter() {
+            @Override
+            public boolean include(long value) {
+                return value % 2 == 0;
+            }
+        }).toArray());
+        assertArrayEquals(new long[]{40, 10, 30, 20}, values.map(new LongCollection.LongMapper() {
+            @Override
+            public long map(long value) {
+                return value * 10;
+            }
+        }).toArray());
+        assertEquals(Arrays.asList("4", "1", "3", "2"), values.mapToObject(new LongCollection.LongObjectMapper<String>() {
+            @Override
+            public String map(long value) {
+                return String.valueOf(value);
+            }
+        }));
+        assertEquals(10, values.reduce(0, new LongCollection.LongReducer() {
+            @Override
+            public long reduce(long acum, long value) {
+                return acum + value;
+            }
+        }));
+        assertArrayEquals(new long[]{4, 1, 3, 2}, values.toArray());
+    }
+
+    @Test
+    public void emptyCollectionsCanBeMapped() {
+        assertEquals(0, new LongCollection().map(new LongCollection.LongMapper() {
+            @Override
+            public long map(long value) {
+                return value;
+            }
+        }).size());
+    }
+
+    @Test
+    public void sortingAndTrimmingKeepTheValues() {
+        values.ensureCapacity(100);
+        values.addAll(new long[]{3, -1, 2}, false);
+        values.trimToSize();
+        values.sort(false);
+        values.add(4, false);
+
+        assertArrayEquals(new long[]{-1, 2, 3, 4}, values.toArray());
+    }
+
+    @Test
+    public void onlyActualChangesAreNotified() {
+        values.add(1);
+        values.remove(2);
+        values.clear(true);
+        values.clear(true);
+
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void changesArePostedOnTheEventBus() {
+        final List<Object> posted = new ArrayList<Object>();
+        LongCollection collection = new LongCollection();
+        collection.setEventBus(new Bus(ThreadEnforcer.ANY) {
+            @Override
+            public void post(Object event) {
+                posted.add(event);
+            }
+        });
+        collection.add(1);
+
+        assertEquals(1, posted.size());
+        assertTrue(posted.get(0) instanceof BaseCollection.ModelChangedEvent);
+    }
+}
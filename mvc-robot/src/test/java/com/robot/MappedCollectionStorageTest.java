@@ -0,0 +1,185 @@
+package com.robot;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author fernandinho
+ */
+public class MappedCollectionStorageTest {
+
+    private static final StorableCollection.Callback<Void> IGNORE = new StorableCollection.Callback<Void>() {
+        @Override
+        public void onFinish(Void data) {
+        }
+    };
+
+    private static final int HEADER_SIZE = 12;
+    private static final int SLOT_SIZE = 1 + 8 + 1 + CarCodec.MAX_BRAND + 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private MappedCollectionStorage<Car> storage;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "cars");
+        storage = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        storage.close();
+    }
+
+    @Test
+    public void savedElementsAreLoaded() throws IOException {
+        List<Car> cars = cars(0, 10);
+        storage.save(collection(cars), IGNORE);
+        storage.close();
+
+        MappedCollectionStorage<Car> reader = open();
+        try {
+            assertEquals(cars, new ArrayList<Car>(reader.loadSync()));
+            assertEquals(10, reader.count());
+            assertEquals(cars.subList(4, 7), reader.loadPage(4, 3));
+            assertEquals(cars.subList(8, 10), reader.loadPage(8, 5));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void changesAreWrittenInTheirSlots() throws IOException {
+        storage.save(collection(cars(0, 3)), IGNORE);
+        StorableCollection.Delta<Car> changes = upserts(new Car(1, "fiat", 150), new Car(3, "bmw", 300));
+        changes.remove(0L, new Car(0, "car 0", 0));
+        storage.saveChanges(collection(null), changes, IGNORE);
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 150), new Car(2, "car 2", 200), new Car(3, "bmw", 300)), load());
+    }
+
+    @Test
+    public void removingMostElementsCompactsTheFile() throws IOException {
+        List<Car> cars = cars(0, 100);
+        storage.saveChanges(collection(null), upserts(cars.toArray(new Car[cars.size()])), IGNORE);
+        StorableCollection.Delta<Car> removals = new StorableCollection.Delta<Car>(false);
+        List<Car> kept = new ArrayList<Car>();
+        for (Car car : cars) {
+            if (car.id % 5 == 0) {
+                kept.add(car);
+            } else {
+                removals.remove(car.id, car);
+            }
+        }
+        storage.saveChanges(collection(null), removals, IGNORE);
+
+        assertEquals("the removed slots were kept", HEADER_SIZE + kept.size() * SLOT_SIZE, file.length());
+        assertEquals(kept, load());
+
+        // the slots were renumbered, changes must still find them
+        storage.saveChanges(collection(null), upserts(new Car(50, "fiat", 1)), IGNORE);
+        kept.set(10, new Car(50, "fiat", 1));
+        assertEquals(kept, load());
+    }
+
+    @Test
+    public void slotsWrittenAfterTheLastSavedHeaderAreIgnored() throws IOException {
+        storage.save(collection(cars(0, 2)), IGNORE);
+        storage.close();
+        // a crash while appending a slot, before the header counted it
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 7, 4, 'f'});
+        } finally {
+            out.close();
+        }
+        assertEquals(cars(0, 2), load());
+
+        storage = open();
+        storage.saveChanges(collection(null), upserts(new Car(2, "audi", 200)), IGNORE);
+        assertEquals(Arrays.asList(new Car(0, "car 0", 0), new Car(1, "car 1", 100), new Car(2, "audi", 200)), load());
+    }
+
+    @Test
+    public void rewrittenFileOnlyHoldsTheElements() throws IOException {
+        // left by an interrupted rewrite of a larger collection
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(new byte[HEADER_SIZE + 1000 * SLOT_SIZE]);
+        } finally {
+            out.close();
+        }
+
+        storage.save(collection(cars(0, 3)), IGNORE);
+
+        assertFalse(temp.exists());
+        assertEquals(HEADER_SIZE + 3 * SLOT_SIZE, file.length());
+        assertEquals(cars(0, 3), load());
+
+        // appending grows the file again
+        storage.saveChanges(collection(null), upserts(new Car(3, "bmw", 300)), IGNORE);
+        List<Car> expected = cars(0, 3);
+        expected.add(new Car(3, "bmw", 300));
+        assertEquals(expected, load());
+    }
+
+    private MappedCollectionStorage<Car> open() {
+        MappedCollectionStorage<Car> storage = new MappedCollectionStorage<Car>(file, new CarCodec());
+        storage.setKeyMapper(Car.ID);
+        return storage;
+    }
+
+    /**
+     * @return what a new storage loads from the file, after this one wrote its pages
+     */
+    private List<Car> load() throws IOException {
+        storage.close();
+        MappedCollectionStorage<Car> reader = open();
+        try {
+            return new ArrayList<Car>(reader.loadSync());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static StorableCollection<Car> collection(List<Car> cars) {
+        StorableCollection<Car> collection = Cars.collection();
+        if (cars != null) {
+            collection.addAll(cars, false);
+        }
+        return collection;
+    }
+
+    private static List<Car> cars(int from, int to) {
+        List<Car> cars = new ArrayList<Car>();
+        for (int i = from; i < to; i++) {
+            cars.add(new Car(i, "car " + i, i * 100));
+        }
+        return cars;
+    }
+
+    private static StorableCollection.Delta<Car> upserts(Car... cars) {
+        StorableCollection.Delta<Car> changes = new StorableCollection.Delta<Car>(false);
+        for (Car car : cars) {
+            changes.upsert(car.id, car);
+        }
+        return changes;
+    }
+}
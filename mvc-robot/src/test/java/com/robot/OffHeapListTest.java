@@ -0,0 +1,165 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks every change against an {@link ArrayList} holding the same elements
+ *
+ * @author fernandinho
+ */
+public class OffHeapListTest {
+
+    private final OffHeapList<Car> list = new OffHeapList<Car>(new CarCodec(), 4);
+    private final List<Car> expected = new ArrayList<Car>();
+
+    @Test
+    public void insertingMovesTheFollowingRowsForward() {
+        fill(10);
+        add(0, car(100));
+        add(5, car(101));
+        add(list.size() - 1, car(102));
+        add(list.size(), car(103));
+
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void removingMovesTheFollowingRowsBackward() {
+        fill(10);
+        remove(0);
+        remove(4);
+        remove(list.size() - 1);
+
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void rangeIsRemovedInOnePass() {
+        fill(40);
+        // moves the 32 following rows 3 rows back, so the blocks of rows overlap their previous place
+        list.subList(5, 8).clear();
+        expected.subList(5, 8).clear();
+        assertEquals(expected, list);
+
+        // nothing to move after the range
+        list.subList(30, list.size()).clear();
+        expected.subList(30, expected.size()).clear();
+        assertEquals(expected, list);
+
+        list.subList(0, 20).clear();
+        expected.subList(0, 20).clear();
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void scatteredRowsAreRemoved() {
+        fill(30);
+        BitSet rows = new BitSet();
+        rows.set(0);
+        rows.set(3, 7);
+        rows.set(12);
+        rows.set(13);
+        rows.set(20, 25);
+        rows.set(29);
+        // past the end of the list
+        rows.set(35);
+        list.removeRows(rows);
+        for (int i = 29; i >= 0; i--) {
+            if (rows.get(i)) {
+                expected.remove(i);
+            }
+        }
+
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void removingNoRowsKeepsTheList() {
+        fill(5);
+        list.removeRows(new BitSet());
+        BitSet pastTheEnd = new BitSet();
+        pastTheEnd.set(5, 10);
+        list.removeRows(pastTheEnd);
+
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void removingEveryRowEmptiesTheList() {
+        fill(5);
+        BitSet rows = new BitSet();
+        rows.set(0, 5);
+        list.removeRows(rows);
+
+        assertEquals(0, list.size());
+    }
+
+    @Test
+    public void listGrowsAndShrinks() {
+        fill(100);
+        list.trimToSize();
+        assertEquals(expected, list);
+
+        list.ensureCapacity(500);
+        add(50, car(1000));
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void replacedElementIsReturned() {
+        fill(3);
+        assertEquals(car(1), list.set(1, car(7)));
+        expected.set(1, car(7));
+
+        assertEquals(expected, list);
+    }
+
+    @Test
+    public void iteratorRemovesElements() {
+        fill(10);
+        for (Iterator<Car> it = list.iterator(); it.hasNext(); ) {
+            if (it.next().id % 3 == 0) {
+                it.remove();
+            }
+        }
+        for (Iterator<Car> it = expected.iterator(); it.hasNext(); ) {
+            if (it.next().id % 3 == 0) {
+                it.remove();
+            }
+        }
+
+        assertEquals(expected, list);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void readingPastTheEndFails() {
+        fill(3);
+        list.get(3);
+    }
+
+    private void fill(int size) {
+        for (int i = 0; i < size; i++) {
+            add(i, car(i));
+        }
+    }
+
+    private void add(int index, Car car) {
+        list.add(index, car);
+        expected.add(index, car);
+    }
+
+    private void remove(int index) {
+        assertEquals(expected.remove(index), list.remove(index));
+    }
+
+    private static Car car(int id) {
+        return new Car(id, id % 2 == 0 ? "fiat" : null, id * 10);
+    }
+}
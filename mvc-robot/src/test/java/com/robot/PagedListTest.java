@@ -0,0 +1,174 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author fernandinho
+ */
+public class PagedListTest {
+
+    private final PageCountingStorage storage = new PageCountingStorage(35);
+
+    @Test
+    public void nothingIsReadUntilAnElementIs() {
+        PagedList<Integer> list = new PagedList<Integer>(storage, 10, 2);
+
+        assertEquals(35, list.size());
+        assertEquals(10, list.getPageSize());
+        assertEquals(0, storage.loads());
+    }
+
+    @Test
+    public void readingAnElementPrefetchesTheNextPage() throws InterruptedException {
+        PagedList<Integer> list = new PagedList<Integer>(storage, 10, 2);
+
+        assertEquals(Integer.valueOf(5), list.get(5));
+        storage.awaitLoads(1, 1);
+        assertEquals(Integer.valueOf(12), list.get(12));
+        storage.awaitLoads(2, 1);
+
+        assertEquals(1, storage.loads(0));
+        assertEquals(1, storage.loads(1));
+    }
+
+    @Test
+    public void leastRecentlyUsedPagesAreDropped() throws InterruptedException {
+        PagedList<Integer> list = new PagedList<Integer>(storage, 10, 2);
+        list.get(0);
+        storage.awaitLoads(1, 1);
+        list.get(20);
+        storage.awaitLoads(3, 1);
+        list.get(0);
+
+        assertEquals(2, storage.loads(0));
+    }
+
+    @Test
+    public void lastPageIsShorterAndNotFollowed() {
+        PagedList<Integer> list = new PagedList<Integer>(storage, 10, 2);
+
+        assertEquals(Integer.valueOf(34), list.get(34));
+        assertEquals(1, storage.loads());
+        assertEquals(storage.elements, new ArrayList<Integer>(list));
+    }
+
+    @Test
+    public void failedPrefetchIsRetried() throws InterruptedException {
+        storage.failures = 1;
+        PagedList<Integer> list = new PagedList<Integer>(storage, 10, 2);
+        list.get(0);
+        storage.awaitLoads(1, 1);
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                assertEquals(Integer.valueOf(15), list.get(15));
+                break;
+            } catch (IllegalStateException e) {
+                if (attempt > 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void positionsOutsideTheListAreRejected() {
+        PagedList<Integer> list = new PagedList<Integer>(storage, 10, 2);
+        for (int index : new int[]{-1, 35}) {
+            try {
+                list.get(index);
+                fail("read element " + index);
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void invalidSizesAreRejected() {
+        for (int[] sizes : Arrays.asList(new int[]{0, 2}, new int[]{10, 1})) {
+            try {
+                new PagedList<Integer>(storage, sizes[0], sizes[1]);
+                fail("accepted page size " + sizes[0] + " and " + sizes[1] + " resident pages");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void listCannotBeModified() {
+        new PagedList<Integer>(storage, 10, 2).add(1);
+    }
+
+    /**
+     * Stores the integers from 0 and counts how many times every page is loaded
+     */
+    private static class PageCountingStorage implements StorableCollection.PagedStorage<Integer> {
+
+        private final List<Integer> elements = new ArrayList<Integer>();
+        private final List<Integer> offsets = new ArrayList<Integer>();
+        private volatile int failures;
+
+        PageCountingStorage(int count) {
+            for (int i = 0; i < count; i++) {
+                elements.add(i);
+            }
+        }
+
+        @Override
+        public int count() {
+            return elements.size();
+        }
+
+        @Override
+        public List<Integer> loadPage(int offset, int limit) {
+            synchronized (offsets) {
+                offsets.add(offset);
+                offsets.notifyAll();
+            }
+            if (offset > 0 && failures > 0) {
+                failures--;
+                throw new IllegalStateException("failed to read page at " + offset);
+            }
+            return new ArrayList<Integer>(elements.subList(offset, Math.min(offset + limit, elements.size())));
+        }
+
+        int loads() {
+            synchronized (offsets) {
+                return offsets.size();
+            }
+        }
+
+        int loads(int page) {
+            synchronized (offsets) {
+                int loads = 0;
+                for (int offset : offsets) {
+                    loads += offset == page * 10 ? 1 : 0;
+                }
+                return loads;
+            }
+        }
+
+        /**
+         * Waits for the given page to be loaded {@code times} times, i.e. by a prefetch
+         */
+        void awaitLoads(int page, int times) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            synchronized (offsets) {
+                while (loads(page) < times) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        fail("page " + page + " was not loaded " + times + " times");
+                    }
+                    offsets.wait(remaining);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that parallel queries give the results of their sequential versions, above and below
+ * {@link BaseCollection#PARALLEL_THRESHOLD}
+ *
+ * @author fernandinho
+ */
+public class ParallelQueriesTest {
+
+    private static final int LARGE = BaseCollection.PARALLEL_THRESHOLD * 2 + 7;
+
+    private static final BaseCollection.Mapper<Integer, String> TO_STRING = new BaseCollection.Mapper<Integer, String>() {
+        @Override
+        public String map(Integer el) {
+            return String.valueOf(el);
+        }
+    };
+    private static final BaseCollection.Filter<Integer> EVEN = new BaseCollection.Filter<Integer>() {
+        @Override
+        public boolean include(Integer el) {
+            return el % 2 == 0;
+        }
+    };
+    private static final BaseCollection.Filter<Integer> NOT_SEVEN = new BaseCollection.Filter<Integer>() {
+        @Override
+        public boolean include(Integer el) {
+            return el % 7 != 0;
+        }
+    };
+    private static final BaseCollection.Reducer<Integer, Long> SUM = new BaseCollection.Reducer<Integer, Long>() {
+        @Override
+        public Long reduce(Long acum, Integer element) {
+            return acum + element;
+        }
+    };
+    private static final BaseCollection.Combiner<Long> ADD = new BaseCollection.Combiner<Long>() {
+        @Override
+        public Long combine(Long left, Long right) {
+            return left + right;
+        }
+    };
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void largeListsGiveTheSequentialResults() {
+        List<Integer> numbers = numbers(LARGE);
+
+        assertEquals(BaseCollection.map(numbers, TO_STRING), BaseCollection.parallelMap(numbers, TO_STRING));
+        assertEquals(BaseCollection.filter(numbers, EVEN, NOT_SEVEN), BaseCollection.parallelFilter(numbers, EVEN, NOT_SEVEN));
+        assertEquals(BaseCollection.reduce(0L, SUM, numbers), BaseCollection.parallelReduce(0L, SUM, ADD, numbers));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void smallListsGiveTheSequentialResults() {
+        List<Integer> numbers = numbers(100);
+
+        assertEquals(BaseCollection.map(numbers, TO_STRING), BaseCollection.parallelMap(numbers, TO_STRING));
+        assertEquals(BaseCollection.filter(numbers, EVEN), BaseCollection.parallelFilter(numbers, EVEN));
+        assertEquals(Long.valueOf(4950), BaseCollection.parallelReduce(0L, SUM, ADD, numbers));
+        assertEquals(new ArrayList<String>(), BaseCollection.parallelMap(new ArrayList<Integer>(), TO_STRING));
+    }
+
+    @Test
+    public void partialReductionsAreCombinedInOrder() {
+        List<Integer> numbers = numbers(LARGE);
+        BaseCollection.Reducer<Integer, StringBuilder> append = new BaseCollection.Reducer<Integer, StringBuilder>() {
+            @Override
+            public StringBuilder reduce(StringBuilder acum, Integer element) {
+                return (acum == null ? new StringBuilder() : acum).append(element % 10);
+            }
+        };
+        String expected = BaseCollection.reduce(null, append, numbers).toString();
+
+        StringBuilder combined = BaseCollection.parallelReduce(null, append, new BaseCollection.Combiner<StringBuilder>() {
+            @Override
+            public StringBuilder combine(StringBuilder left, StringBuilder right) {
+                return left.append(right);
+            }
+        }, numbers);
+        assertEquals(expected, combined.toString());
+    }
+
+    @Test
+    public void listsWithoutRandomAccessAreSplit() {
+        List<Integer> numbers = new LinkedList<Integer>(numbers(LARGE));
+
+        assertEquals(BaseCollection.map(numbers, TO_STRING), BaseCollection.parallelMap(numbers, TO_STRING));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void collectionQueriesMayCallTheCollection() {
+        final StorableCollection<Car> cars = Cars.collection();
+        List<Car> all = new ArrayList<Car>();
+        for (int i = 0; i < LARGE; i++) {
+            all.add(new Car(i, "fiat", i));
+        }
+        cars.addAll(all, false);
+
+        List<Car> found = cars.parallelFilter(new BaseCollection.Filter<Car>() {
+            @Override
+            public boolean include(Car el) {
+                return el.id % 1000 == 0 && cars.contains(el);
+            }
+        });
+        assertEquals(LARGE / 1000 + 1, found.size());
+        assertEquals(Long.valueOf((long) (LARGE - 1) * LARGE / 2), cars.parallelReduce(0L, new BaseCollection.Reducer<Car, Long>() {
+            @Override
+            public Long reduce(Long acum, Car element) {
+                return acum + element.id;
+            }
+        }, ADD));
+        assertEquals(Arrays.asList(0L, 1L), cars.parallelMap(new BaseCollection.Mapper<Car, Long>() {
+            @Override
+            public Long map(Car el) {
+                return el.id;
+            }
+        }).subList(0, 2));
+    }
+
+    @Test
+    public void failuresOfTheWorkersAreRethrown() {
+        try {
+            BaseCollection.parallelMap(numbers(LARGE), new BaseCollection.Mapper<Integer, Integer>() {
+                @Override
+                public Integer map(Integer el) {
+                    if (el == 10) {
+                        throw new IllegalStateException("failed at " + el);
+                    }
+                    return el;
+                }
+            });
+            fail("the failure was lost");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("10"));
+        }
+    }
+
+    private static List<Integer> numbers(int count) {
+        List<Integer> numbers = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+}
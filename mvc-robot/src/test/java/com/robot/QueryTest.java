@@ -0,0 +1,112 @@
+package com.robot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author fernandinho
+ */
+public class QueryTest {
+
+    private final StorableCollection<Car> cars = Cars.collection();
+    private int filtered;
+    private int mapped;
+
+    private final BaseCollection.Filter<Car> fiats = new BaseCollection.Filter<Car>() {
+        @Override
+        public boolean include(Car el) {
+            filtered++;
+            return "fiat".equals(el.brand);
+        }
+    };
+    private final BaseCollection.Mapper<Car, Integer> price = new BaseCollection.Mapper<Car, Integer>() {
+        @Override
+        public Integer map(Car el) {
+            mapped++;
+            return el.price;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        List<Car> all = new ArrayList<Car>();
+        for (int i = 0; i < 100; i++) {
+            all.add(new Car(i, i % 2 == 0 ? "fiat" : "audi", i % 10));
+        }
+        cars.addAll(all, false);
+    }
+
+    @Test
+    public void stagesRunInOrder() {
+        assertEquals(Arrays.asList(4, 6, 8, 0, 2), cars.query().filter(fiats).skip(2).map(price).limit(5).toList());
+        assertEquals(Arrays.asList(0, 2, 4, 6, 8), cars.query().filter(fiats).map(price).distinct().toList());
+        assertEquals(50, cars.query().filter(fiats).count());
+        assertEquals(Integer.valueOf(200), cars.query().filter(fiats).map(price).reduce(0, new BaseCollection.Reducer<Integer, Integer>() {
+            @Override
+            public Integer reduce(Integer acum, Integer element) {
+                return acum + element;
+            }
+        }));
+    }
+
+    @Test
+    public void limitStopsTheTraversal() {
+        List<Integer> prices = cars.query().filter(fiats).map(price).limit(3).toList();
+
+        assertEquals(Arrays.asList(0, 2, 4), prices);
+        assertEquals(5, filtered);
+        assertEquals(3, mapped);
+    }
+
+    @Test
+    public void firstStopsTheTraversal() {
+        assertEquals(Integer.valueOf(2), cars.query().skip(1).filter(fiats).map(price).first());
+        assertEquals(2, filtered);
+        assertEquals(1, mapped);
+
+        assertNull(cars.query().filter(new BaseCollection.Filter<Car>() {
+            @Override
+            public boolean include(Car el) {
+                return false;
+            }
+        }).first());
+    }
+
+    @Test
+    public void mappingLeavesTheOriginalQueryUnchanged() {
+        Query<Car> query = cars.query().filter(fiats).limit(2);
+        Query<Integer> prices = query.map(price);
+
+        assertEquals(Arrays.asList(new Car(0, "fiat", 0), new Car(2, "fiat", 2)), query.toList());
+        assertEquals(Arrays.asList(0, 2), prices.toList());
+    }
+
+    @Test
+    public void everyRunReadsTheCurrentElements() {
+        Query<Car> query = cars.query().filter(fiats).skip(49);
+        assertEquals(Arrays.asList(new Car(98, "fiat", 8)), query.toList());
+
+        cars.add(new Car(100, "fiat", 0), false);
+        assertEquals(Arrays.asList(new Car(98, "fiat", 8), new Car(100, "fiat", 0)), query.toList());
+    }
+
+    @Test
+    public void eachReceivesEveryElement() {
+        final List<Integer> prices = new ArrayList<Integer>();
+        cars.query().map(price).limit(4).each(new BaseCollection.Iter<Integer>() {
+            @Override
+            public void item(Integer el) {
+                prices.add(el);
+            }
+        });
+
+        assertEquals(Arrays.asList(0, 1, 2, 3), prices);
+    }
+}
@@ -0,0 +1,89 @@
+package com.robot;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author fernandinho
+ */
+public class SnapshotReadsTest {
+
+    private final StorableCollection<Car> cars = Cars.collection();
+
+    @Before
+    public void setUp() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)), false);
+        cars.setSnapshotReads(true);
+    }
+
+    @Test
+    public void iteratorsKeepTheVersionTheyStartedWith() {
+        Iterator<Car> iterator = cars.iterator();
+        iterator.next();
+        cars.add(new Car(3, "bmw", 300), false);
+        cars.remove(new Car(2, "audi", 200));
+
+        assertEquals(new Car(2, "audi", 200), iterator.next());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(3, "bmw", 300)), cars.toList());
+    }
+
+    @Test
+    public void publishedVersionsCannotBeModified() {
+        List<Car> version = cars.toList();
+        try {
+            version.add(new Car(3, "bmw", 300));
+            fail("a reader modified the published version");
+        } catch (UnsupportedOperationException expected) {
+        }
+        cars.updateAll(Arrays.asList(new Car(1, "fiat", 150)), false);
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)), version);
+    }
+
+    @Test
+    public void readersNeverSeeAWriteHalfDone() throws InterruptedException {
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 3; i < 2000; i++) {
+                    cars.add(new Car(i, "fiat", i), false);
+                }
+            }
+        };
+        writer.start();
+        try {
+            while (writer.isAlive()) {
+                int count = 0;
+                for (Car ignored : cars) {
+                    count++;
+                }
+                if (count < 2) {
+                    fail("read " + count + " elements");
+                }
+            }
+        } catch (RuntimeException e) {
+            failures.add(e);
+        }
+        writer.join();
+
+        assertEquals(new ArrayList<Throwable>(), failures);
+        assertEquals(1999, cars.size());
+    }
+
+    @Test
+    public void disablingSnapshotReadsMakesTheListMutableAgain() {
+        cars.setSnapshotReads(false);
+        cars.toList().add(new Car(3, "bmw", 300));
+
+        assertEquals(3, cars.size());
+    }
+}
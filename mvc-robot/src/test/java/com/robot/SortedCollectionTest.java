@@ -0,0 +1,116 @@
+package com.robot;
+
+import com.squareup.otto.Bus;
+import com.squareup.otto.ThreadEnforcer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author fernandinho
+ */
+public class SortedCollectionTest {
+
+    private static final Comparator<Car> BY_PRICE = new Comparator<Car>() {
+        @Override
+        public int compare(Car lhs, Car rhs) {
+            return lhs.price < rhs.price ? -1 : (lhs.price == rhs.price ? 0 : 1);
+        }
+    };
+
+    private final SortedCollection<Car> cars = sorted();
+
+    @Test
+    public void elementsAreKeptInOrder() {
+        List<Car> expected = new ArrayList<Car>();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            Car car = new Car(i, "fiat", random.nextInt(100));
+            expected.add(car);
+            if (i % 3 == 0) {
+                cars.add(car, false);
+            } else if (i % 3 == 1) {
+                cars.addAll(Collections.singletonList(car), false);
+            } else {
+                cars.updateAll(Collections.singletonList(car), false);
+            }
+        }
+        Collections.sort(expected, BY_PRICE);
+
+        assertEquals(expected, cars.toList());
+        assertEquals(expected.get(0), cars.first());
+        assertEquals(expected.get(499), cars.last());
+    }
+
+    @Test
+    public void bulkInsertionsAreMergedIn() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 300)), false);
+        cars.addAll(Arrays.asList(new Car(3, "bmw", 400), new Car(4, "seat", 50), new Car(5, "kia", 200)), false);
+
+        assertEquals(Arrays.asList(new Car(4, "seat", 50), new Car(1, "fiat", 100), new Car(5, "kia", 200),
+                new Car(2, "audi", 300), new Car(3, "bmw", 400)), cars.toList());
+    }
+
+    @Test
+    public void rangesIncludeEveryElementEqualToTheLowEndpoint() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(3, "bmw", 200),
+                new Car(4, "seat", 200), new Car(5, "kia", 300)), false);
+        Car twoHundred = new Car(0, null, 200);
+
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100)), cars.headList(twoHundred));
+        assertEquals(Arrays.asList(new Car(2, "audi", 200), new Car(3, "bmw", 200), new Car(4, "seat", 200),
+                new Car(5, "kia", 300)), cars.tailList(twoHundred));
+        assertEquals(Arrays.asList(new Car(2, "audi", 200), new Car(3, "bmw", 200), new Car(4, "seat", 200)),
+                cars.subList(twoHundred, new Car(0, null, 300)));
+    }
+
+    @Test
+    public void rangesOutsideTheElementsAreEmpty() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)), false);
+
+        assertEquals(new ArrayList<Car>(), cars.headList(new Car(0, null, 100)));
+        assertEquals(new ArrayList<Car>(), cars.tailList(new Car(0, null, 201)));
+        assertEquals(new ArrayList<Car>(), cars.subList(new Car(0, null, 300), new Car(0, null, 100)));
+    }
+
+    @Test
+    public void changingTheComparatorSortsAgain() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 300), new Car(2, "audi", 200), new Car(3, "bmw", 100)), false);
+        cars.sort(new Comparator<Car>() {
+            @Override
+            public int compare(Car lhs, Car rhs) {
+                return lhs.brand.compareTo(rhs.brand);
+            }
+        });
+        cars.add(new Car(4, "citroen", 0), false);
+
+        assertEquals(Arrays.asList(new Car(2, "audi", 200), new Car(3, "bmw", 100), new Car(4, "citroen", 0),
+                new Car(1, "fiat", 300)), cars.toList());
+    }
+
+    @Test
+    public void emptyCollectionHasNoEnds() {
+        assertNull(cars.first());
+        assertNull(cars.last());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void comparatorIsRequired() {
+        new SortedCollection<Car>(null);
+    }
+
+    private static SortedCollection<Car> sorted() {
+        SortedCollection<Car> cars = new SortedCollection<Car>(BY_PRICE);
+        cars.setEventBus(new Bus(ThreadEnforcer.ANY));
+        return cars;
+    }
+}
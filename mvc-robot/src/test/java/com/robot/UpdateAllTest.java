@@ -0,0 +1,87 @@
+package com.robot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author fernandinho
+ */
+public class UpdateAllTest {
+
+    private final List<BaseCollection.ModelChangedEvent> events = new ArrayList<BaseCollection.ModelChangedEvent>();
+
+    private final StorableCollection<Car> cars = Cars.identifiedById(new StorableCollection<Car>() {
+        @Override
+        public void notifyEvent(Object event) {
+            if (event instanceof ModelChangedEvent) {
+                events.add((ModelChangedEvent) event);
+            }
+        }
+    });
+
+    @Test
+    public void matchingElementsAreReplacedInPlace() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(3, "bmw", 300)), false);
+        BaseCollection.UpdateResult result = cars.updateAll(Arrays.asList(new Car(4, "seat", 400), new Car(2, "audi", 250)), false);
+
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getReplaced());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 250), new Car(3, "bmw", 300),
+                new Car(4, "seat", 400)), cars.toList());
+    }
+
+    @Test
+    public void lastOfSeveralMatchingElementsWins() {
+        cars.add(new Car(1, "fiat", 100), false);
+        BaseCollection.UpdateResult result = cars.updateAll(Arrays.asList(new Car(1, "fiat", 110), new Car(2, "audi", 200),
+                new Car(1, "fiat", 120), new Car(2, "audi", 210)), false);
+
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getReplaced());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 120), new Car(2, "audi", 210)), cars.toList());
+    }
+
+    @Test
+    public void elementsAreMatchedWithEqualsWithoutAKeyMapper() {
+        StorableCollection<Car> plain = new StorableCollection<Car>();
+        plain.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)), false);
+        BaseCollection.UpdateResult result = plain.updateAll(Arrays.asList(new Car(2, "audi", 200), new Car(2, "audi", 250)), false);
+
+        assertEquals(1, result.getInserted());
+        assertEquals(1, result.getReplaced());
+        assertEquals(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200), new Car(2, "audi", 250)), plain.toList());
+    }
+
+    @Test
+    public void oneEventReportsEveryChange() {
+        cars.addAll(Arrays.asList(new Car(1, "fiat", 100), new Car(2, "audi", 200)), true);
+        events.clear();
+        cars.updateAll(Arrays.asList(new Car(1, "fiat", 150), new Car(3, "bmw", 300), new Car(4, "seat", 400)), true);
+
+        assertEquals(1, events.size());
+        BaseCollection.ModelChangedEvent event = events.get(0);
+        assertFalse(event.isFullRefresh());
+        List<BaseCollection.Change> changes = event.getChanges();
+        assertEquals(2, changes.size());
+        assertEquals(BaseCollection.Change.Type.updated, changes.get(0).getType());
+        assertEquals(0, changes.get(0).getPosition());
+        assertEquals(BaseCollection.Change.Type.inserted, changes.get(1).getType());
+        assertEquals(2, changes.get(1).getPosition());
+        assertEquals(2, changes.get(1).getCount());
+    }
+
+    @Test
+    public void nothingIsPublishedWithoutData() {
+        BaseCollection.UpdateResult result = cars.updateAll(new ArrayList<Car>(), true);
+
+        assertEquals(0, result.getInserted() + result.getReplaced());
+        assertTrue(events.isEmpty());
+    }
+}
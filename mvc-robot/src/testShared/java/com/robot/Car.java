@@ -0,0 +1,48 @@
+package com.robot;
+
+/**
+ * The model stored by the tests
+ *
+ * @author fernandinho
+ */
+public class Car {
+
+    public static final BaseCollection.Mapper<Car, Object> ID = new BaseCollection.Mapper<Car, Object>() {
+        @Override
+        public Object map(Car car) {
+            return car.id;
+        }
+    };
+
+    long id;
+    String brand;
+    int price;
+
+    public Car() {
+    }
+
+    public Car(long id, String brand, int price) {
+        this.id = id;
+        this.brand = brand;
+        this.price = price;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Car)) {
+            return false;
+        }
+        Car car = (Car) o;
+        return id == car.id && price == car.price && (brand == null ? car.brand == null : brand.equals(car.brand));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (int) (id ^ (id >>> 32)) + (brand == null ? 0 : brand.hashCode())) + price;
+    }
+
+    @Override
+    public String toString() {
+        return id + ":" + brand + ":" + price;
+    }
+}
@@ -0,0 +1,462 @@
+package com.robot.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a Gson type adapter for every class annotated with {@code com.robot.Stored}, named after the class with a
+ * {@code $$TypeAdapter} suffix, which is found at runtime by {@code com.robot.StoredTypeAdapterFactory}. The adapter
+ * reads and writes the fields directly, so neither reflection nor adapter discovery are needed for the class itself;
+ * the adapters of the field types are asked to Gson once, when the adapter is created.<br>
+ * <br>
+ * The annotation is referenced by name so this module doesn't depend on the Android library.
+ *
+ * @author fernandinho
+ */
+public class StoredProcessor extends AbstractProcessor {
+
+    static final String STORED = "com.robot.Stored";
+    static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+    static final String SUFFIX = "$$TypeAdapter";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(STORED);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement stored = processingEnv.getElementUtils().getTypeElement(STORED);
+        if (stored == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(stored)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@Stored can only be applied to classes");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            boolean valid = isValid(type);
+            List<StoredField> fields = fields(type);
+            if (valid && fields != null) {
+                try {
+                    generate(type, fields);
+                } catch (IOException e) {
+                    error(type, "unable to generate the type adapter: " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the generated adapter can create instances of the class
+     */
+    private boolean isValid(TypeElement type) {
+        boolean valid = true;
+        if (type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@Stored classes can't be private or abstract");
+            valid = false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "@Stored nested classes must be static");
+            valid = false;
+        } else if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(type, "@Stored classes can't be local or anonymous");
+            valid = false;
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            error(type, "@Stored classes can't have type parameters");
+            valid = false;
+        }
+        boolean constructor = false;
+        for (ExecutableElement candidate : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (candidate.getParameters().isEmpty() && !candidate.getModifiers().contains(Modifier.PRIVATE)) {
+                constructor = true;
+            }
+        }
+        if (!constructor) {
+            error(type, "@Stored classes need a non private constructor without arguments");
+            valid = false;
+        }
+        return valid;
+    }
+
+    /**
+     * @return the fields serialized by Gson, in the same order, or null if any of them can't be reached by the
+     * generated adapter
+     */
+    private List<StoredField> fields(TypeElement type) {
+        List<TypeElement> hierarchy = new ArrayList<TypeElement>();
+        for (TypeElement current = type; current != null; current = superclass(current)) {
+            if (current.getQualifiedName().contentEquals("java.lang.Object")) {
+                break;
+            }
+            hierarchy.add(current);
+        }
+        String packageName = packageOf(type);
+        Map<String, StoredField> fields = new LinkedHashMap<String, StoredField>();
+        boolean valid = true;
+        for (TypeElement current : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                boolean reachable = modifiers.contains(Modifier.PUBLIC)
+                        || (!modifiers.contains(Modifier.PRIVATE) && packageOf(current).equals(packageName));
+                if (!reachable) {
+                    error(field, "fields of @Stored classes must be reachable from the generated adapter in " + packageName
+                            + ": make it package private or transient");
+                    valid = false;
+                } else if (modifiers.contains(Modifier.FINAL)) {
+                    error(field, "fields of @Stored classes can't be final: make it non final or transient");
+                    valid = false;
+                } else if (hasTypeVariable(field.asType())) {
+                    error(field, "fields of @Stored classes can't have a type variable in their type, i.e. one declared by a "
+                            + "generic superclass: make it transient or give it a concrete type");
+                    valid = false;
+                } else {
+                    String name = serializedName(field);
+                    if (fields.containsKey(name)) {
+                        error(field, "more than one field of " + type.getQualifiedName() + " is serialized as " + name);
+                        valid = false;
+                    }
+                    fields.put(name, new StoredField(field.getSimpleName().toString(), name, field.asType()));
+                }
+            }
+        }
+        return valid ? new ArrayList<StoredField>(fields.values()) : null;
+    }
+
+    private void generate(TypeElement type, List<StoredField> fields) throws IOException {
+        String packageName = packageOf(type);
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String adapterName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + SUFFIX;
+        String typeName = type.getQualifiedName().toString();
+
+        StringBuilder out = new StringBuilder();
+        out.append("// Generated by ").append(StoredProcessor.class.getName()).append(", do not edit\n");
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("public final class ").append(adapterName)
+                .append(" extends com.google.gson.TypeAdapter<").append(typeName).append("> {\n\n");
+        for (StoredField field : fields) {
+            if (!isInline(field.type)) {
+                out.append("    private final com.google.gson.TypeAdapter<").append(field.type).append("> ")
+                        .append(field.adapter()).append(";\n");
+            }
+        }
+        out.append("\n    public ").append(adapterName).append("(com.google.gson.Gson gson) {\n");
+        for (StoredField field : fields) {
+            if (!isInline(field.type)) {
+                out.append("        this.").append(field.adapter()).append(" = gson.getAdapter(")
+                        .append(typeLiteral(field.type)).append(");\n");
+            }
+        }
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public void write(com.google.gson.stream.JsonWriter out, ").append(typeName)
+                .append(" value) throws java.io.IOException {\n");
+        out.append("        if (value == null) {\n");
+        out.append("            out.nullValue();\n");
+        out.append("            return;\n");
+        out.append("        }\n");
+        out.append("        out.beginObject();\n");
+        for (StoredField field : fields) {
+            out.append("        out.name(\"").append(escape(field.serializedName)).append("\");\n");
+            out.append("        ").append(write(field)).append(";\n");
+        }
+        out.append("        out.endObject();\n");
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public ").append(typeName)
+                .append(" read(com.google.gson.stream.JsonReader in) throws java.io.IOException {\n");
+        out.append("        if (in.peek() == com.google.gson.stream.JsonToken.NULL) {\n");
+        out.append("            in.nextNull();\n");
+        out.append("            return null;\n");
+        out.append("        }\n");
+        out.append("        ").append(typeName).append(" value = new ").append(typeName).append("();\n");
+        out.append("        in.beginObject();\n");
+        out.append("        while (in.hasNext()) {\n");
+        out.append("            String name = in.nextName();\n");
+        String keyword = "if";
+        for (StoredField field : fields) {
+            out.append("            ").append(keyword).append(" (\"").append(escape(field.serializedName))
+                    .append("\".equals(name)) {\n");
+            if (field.type.getKind().isPrimitive()) {
+                // like Gson, a null keeps the default value of a primitive field
+                out.append("                if (in.peek() == com.google.gson.stream.JsonToken.NULL) {\n");
+                out.append("                    in.nextNull();\n");
+                out.append("                } else {\n");
+                out.append("                    value.").append(field.name).append(" = ").append(read(field)).append(";\n");
+                out.append("                }\n");
+            } else {
+                out.append("                value.").append(field.name).append(" = ").append(read(field)).append(";\n");
+            }
+            keyword = "} else if";
+        }
+        if (fields.isEmpty()) {
+            out.append("            in.skipValue();\n");
+        } else {
+            out.append("            } else {\n");
+            out.append("                in.skipValue();\n");
+            out.append("            }\n");
+        }
+        out.append("        }\n");
+        out.append("        in.endObject();\n");
+        out.append("        return value;\n");
+        out.append("    }\n");
+        if (hasChar(fields)) {
+            // like Gson, a string that isn't a single character is a syntax error
+            out.append("\n    private static char nextChar(com.google.gson.stream.JsonReader in) throws java.io.IOException {\n");
+            out.append("        String value = in.nextString();\n");
+            out.append("        if (value.length() != 1) {\n");
+            out.append("            throw new com.google.gson.JsonSyntaxException(\"Expecting character, got: \" + value);\n");
+            out.append("        }\n");
+            out.append("        return value.charAt(0);\n");
+            out.append("    }\n");
+        }
+        if (hasString(fields)) {
+            // like Gson's adapter for strings, null and booleans are read too
+            out.append("\n    private static String nextString(com.google.gson.stream.JsonReader in) throws java.io.IOException {\n");
+            out.append("        com.google.gson.stream.JsonToken token = in.peek();\n");
+            out.append("        if (token == com.google.gson.stream.JsonToken.NULL) {\n");
+            out.append("            in.nextNull();\n");
+            out.append("            return null;\n");
+            out.append("        }\n");
+            out.append("        if (token == com.google.gson.stream.JsonToken.BOOLEAN) {\n");
+            out.append("            return Boolean.toString(in.nextBoolean());\n");
+            out.append("        }\n");
+            out.append("        return in.nextString();\n");
+            out.append("    }\n");
+        }
+        out.append("}\n");
+
+        String sourceName = packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        JavaFileObject source = processingEnv.getFiler().createSourceFile(sourceName, type);
+        Writer writer = source.openWriter();
+        try {
+            writer.write(out.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return true if the field is written and read directly with the JsonWriter and JsonReader instead of an adapter
+     */
+    private static boolean isInline(TypeMirror type) {
+        return type.getKind().isPrimitive() || isString(type);
+    }
+
+    private static boolean hasChar(List<StoredField> fields) {
+        for (StoredField field : fields) {
+            if (field.type.getKind() == TypeKind.CHAR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasString(List<StoredField> fields) {
+        for (StoredField field : fields) {
+            if (isString(field.type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the type is, or has as an argument or component, a type variable, which the generated adapter
+     * can't name
+     */
+    private static boolean hasTypeVariable(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return hasTypeVariable(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                return (wildcard.getExtendsBound() != null && hasTypeVariable(wildcard.getExtendsBound()))
+                        || (wildcard.getSuperBound() != null && hasTypeVariable(wildcard.getSuperBound()));
+            case DECLARED:
+                for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasTypeVariable(argument)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isString(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && type.toString().equals("java.lang.String");
+    }
+
+    private static String write(StoredField field) {
+        String value = "value." + field.name;
+        switch (field.type.getKind()) {
+            case BOOLEAN:
+            case LONG:
+            case DOUBLE:
+                return "out.value(" + value + ")";
+            case INT:
+            case SHORT:
+            case BYTE:
+                return "out.value((long) " + value + ")";
+            case FLOAT:
+                // the Number overload writes 0.1f as 0.1 like Gson, a double would be 0.10000000149011612
+                return "out.value(Float.valueOf(" + value + "))";
+            case CHAR:
+                return "out.value(String.valueOf(" + value + "))";
+            default:
+                if (isString(field.type)) {
+                    return "out.value(" + value + ")";
+                }
+                return field.adapter() + ".write(out, " + value + ")";
+        }
+    }
+
+    private static String read(StoredField field) {
+        switch (field.type.getKind()) {
+            case BOOLEAN:
+                return "in.nextBoolean()";
+            case LONG:
+                return "in.nextLong()";
+            case DOUBLE:
+                return "in.nextDouble()";
+            case INT:
+                return "in.nextInt()";
+            case SHORT:
+                return "(short) in.nextInt()";
+            case BYTE:
+                return "(byte) in.nextInt()";
+            case FLOAT:
+                return "(float) in.nextDouble()";
+            case CHAR:
+                return "nextChar(in)";
+            default:
+                if (isString(field.type)) {
+                    return "nextString(in)";
+                }
+                return field.adapter() + ".read(in)";
+        }
+    }
+
+    /**
+     * @return the expression passed to Gson.getAdapter for the type
+     */
+    private static String typeLiteral(TypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED && ((DeclaredType) type).getTypeArguments().isEmpty()) {
+            return erasure(type) + ".class";
+        }
+        if (type.getKind() == TypeKind.ARRAY && !type.toString().contains("<")) {
+            return type + ".class";
+        }
+        return "new com.google.gson.reflect.TypeToken<" + type + ">() {}";
+    }
+
+    private static String erasure(TypeMirror type) {
+        String name = type.toString();
+        int typeArguments = name.indexOf('<');
+        return typeArguments == -1 ? name : name.substring(0, typeArguments);
+    }
+
+    private String serializedName(VariableElement field) {
+        for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(SERIALIZED_NAME)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+                    if (entry.getKey().getSimpleName().contentEquals("value")) {
+                        return (String) entry.getValue().getValue();
+                    }
+                }
+            }
+        }
+        return field.getSimpleName().toString();
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private String packageOf(Element element) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(element);
+        return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+    }
+
+    private static String escape(String name) {
+        return name.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * A field written by the generated adapter
+     */
+    private static class StoredField {
+
+        final String name;
+        final String serializedName;
+        final TypeMirror type;
+
+        StoredField(String name, String serializedName, TypeMirror type) {
+            this.name = name;
+            this.serializedName = serializedName;
+            this.type = type;
+        }
+
+        /**
+         * @return the name of the adapter field of the generated class
+         */
+        String adapter() {
+            return name + "Adapter";
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.robot.compiler;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compiles small model classes with the processor and checks the generated adapters against Gson's reflective one.
+ *
+ * @author fernandinho
+ */
+public class StoredProcessorTest {
+
+    private static final String STORED = "package com.robot;\n"
+            + "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"
+            + "@java.lang.annotation.Target(java.lang.annotation.ElementType.TYPE)\n"
+            + "public @interface Stored {}\n";
+
+    private static final String VEHICLE = "package com.example;\n"
+            + "public class Vehicle {\n"
+            + "    long id = 7;\n"
+            + "    String brand = \"Fiat\";\n"
+            + "}\n";
+
+    private static final String CAR = "package com.example;\n"
+            + "@com.robot.Stored\n"
+            + "public class Car extends Vehicle {\n"
+            + "    static int instances;\n"
+            + "    transient int hash = 42;\n"
+            + "    int doors = 5;\n"
+            + "    short seats = 4;\n"
+            + "    byte gears = 6;\n"
+            + "    double price = 12500.5;\n"
+            + "    float consumption = 6.25f;\n"
+            + "    float ratio = 0.1f;\n"
+            + "    boolean used = true;\n"
+            + "    char category = 'B';\n"
+            + "    String model = \"Uno \\\"Way\\\"\";\n"
+            + "    String plate;\n"
+            + "    Integer owners = 2;\n"
+            + "    @com.google.gson.annotations.SerializedName(\"km\") int kilometers = 120000;\n"
+            + "    java.util.List<String> extras = new java.util.ArrayList<String>(java.util.Arrays.asList(\"ac\", \"radio\"));\n"
+            + "    int[] wheels = {1, 2, 3, 4};\n"
+            + "    Engine engine = new Engine();\n"
+            + "    public static class Engine {\n"
+            + "        int cylinders = 4;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final Pattern TYPE_NAME = Pattern.compile("(?:class|@interface)\\s+(\\w+)");
+
+    private File directory;
+    private List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("stored", "");
+        assertTrue(directory.delete() && directory.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void generatedAdapterWritesLikeReflectiveGson() throws Exception {
+        ClassLoader classes = compile(CAR, VEHICLE);
+        Gson gson = new Gson();
+        Object car = classes.loadClass("com.example.Car").newInstance();
+
+        assertEquals(gson.toJson(car), generated(classes, "com.example.Car").toJson(car));
+    }
+
+    @Test
+    public void generatedAdapterReadsLikeReflectiveGson() throws Exception {
+        ClassLoader classes = compile(CAR, VEHICLE);
+        Gson gson = new Gson();
+        Class<?> type = classes.loadClass("com.example.Car");
+        String json = "{\"doors\":3,\"seats\":2,\"gears\":5,\"price\":9999.0,\"consumption\":4.5,\"used\":false,"
+                + "\"category\":\"C\",\"model\":\"Palio\",\"plate\":\"ABC 123\",\"owners\":null,\"km\":10,"
+                + "\"extras\":[\"gps\"],\"wheels\":[5],\"engine\":{\"cylinders\":6},\"unknown\":{\"a\":[1]},"
+                + "\"id\":8,\"brand\":null,\"hash\":1}";
+
+        Object reflective = gson.fromJson(json, type);
+        Object generated = generated(classes, "com.example.Car").fromJson(json, type);
+
+        assertEquals(gson.toJson(reflective), gson.toJson(generated));
+    }
+
+    @Test
+    public void nullKeepsTheDefaultValueOfAPrimitive() throws Exception {
+        ClassLoader classes = compile(CAR, VEHICLE);
+        Gson gson = new Gson();
+        Class<?> type = classes.loadClass("com.example.Car");
+        String json = "{\"doors\":null,\"category\":null,\"model\":null}";
+
+        assertEquals(gson.toJson(gson.fromJson(json, type)),
+                gson.toJson(generated(classes, "com.example.Car").fromJson(json, type)));
+    }
+
+    @Test
+    public void stringsAreReadLikeGson() throws Exception {
+        ClassLoader classes = compile(CAR, VEHICLE);
+        Gson gson = new Gson();
+        Class<?> type = classes.loadClass("com.example.Car");
+        String json = "{\"model\":true,\"plate\":12.5,\"brand\":null}";
+
+        assertEquals(gson.toJson(gson.fromJson(json, type)),
+                gson.toJson(generated(classes, "com.example.Car").fromJson(json, type)));
+    }
+
+    @Test
+    public void charThatIsNotASingleCharacterIsASyntaxError() throws Exception {
+        ClassLoader classes = compile(CAR, VEHICLE);
+        Gson gson = new Gson();
+        Class<?> type = classes.loadClass("com.example.Car");
+        Gson generated = generated(classes, "com.example.Car");
+        for (String json : Arrays.asList("{\"category\":\"\"}", "{\"category\":\"AB\"}")) {
+            assertSyntaxError(gson, type, json);
+            assertSyntaxError(generated, type, json);
+        }
+    }
+
+    @Test
+    public void nestedClassAdapterIsNamedAfterTheBinaryName() throws Exception {
+        ClassLoader classes = compile("package com.example;\n"
+                + "public class Garage {\n"
+                + "    @com.robot.Stored public static class Spot {\n"
+                + "        int number = 1;\n"
+                + "    }\n"
+                + "}\n");
+        Gson gson = new Gson();
+        Object spot = classes.loadClass("com.example.Garage$Spot").newInstance();
+
+        assertEquals(gson.toJson(spot), generated(classes, "com.example.Garage$Spot").toJson(spot));
+    }
+
+    @Test
+    public void unreachableFieldsAreErrors() throws Exception {
+        assertError("@com.robot.Stored public class Car { private int doors; }", "must be reachable");
+        assertError("@com.robot.Stored public class Car { final int doors = 4; }", "can't be final");
+    }
+
+    @Test
+    public void classesTheAdapterCantCreateAreErrors() throws Exception {
+        assertError("@com.robot.Stored public abstract class Car { }", "can't be private or abstract");
+        assertError("@com.robot.Stored public class Car { Car(int doors) { } }", "constructor without arguments");
+        assertError("@com.robot.Stored public class Car<T> { }", "type parameters");
+        assertError("public class Car { @com.robot.Stored class Engine { } }", "must be static");
+    }
+
+    @Test
+    public void inheritedTypeVariablesAreErrors() throws Exception {
+        String holder = "package com.example;\n"
+                + "public class Holder<T> {\n"
+                + "    T value;\n"
+                + "    java.util.List<T> values;\n"
+                + "}\n";
+        assertError("@com.robot.Stored public class Car extends Holder<String> { }", "type variable", holder);
+    }
+
+    @Test
+    public void duplicateSerializedNamesAreErrors() throws Exception {
+        assertError("@com.robot.Stored public class Car {\n"
+                + "    int doors;\n"
+                + "    @com.google.gson.annotations.SerializedName(\"doors\") int gates;\n"
+                + "}\n", "serialized as doors");
+    }
+
+    private static void assertSyntaxError(Gson gson, Class<?> type, String json) {
+        try {
+            gson.fromJson(json, type);
+            fail("read " + json);
+        } catch (JsonSyntaxException expected) {
+        }
+    }
+
+    private void assertError(String car, String message, String... others) throws IOException {
+        String[] sources = new String[others.length + 1];
+        sources[0] = "package com.example;\n" + car;
+        System.arraycopy(others, 0, sources, 1, others.length);
+        assertFalse(tryCompile(sources));
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getMessage(null).contains(message)) {
+                return;
+            }
+        }
+        fail("no error containing \"" + message + "\" in " + diagnostics);
+    }
+
+    /**
+     * @return a Gson that uses the generated adapter for the type, the way StoredTypeAdapterFactory creates it
+     */
+    private static Gson generated(ClassLoader classes, String type) throws Exception {
+        Class<?> adapter = classes.loadClass(type + StoredProcessor.SUFFIX);
+        TypeAdapter<?> instance = (TypeAdapter<?>) adapter.getConstructor(Gson.class).newInstance(new Gson());
+        return new GsonBuilder().registerTypeAdapter(classes.loadClass(type), instance).create();
+    }
+
+    private ClassLoader compile(String... sources) throws IOException {
+        if (!tryCompile(sources)) {
+            fail("compilation failed: " + diagnostics);
+        }
+        return new URLClassLoader(new URL[]{new File(directory, "classes").toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    /**
+     * Compiles the sources along with the Stored annotation, running the processor
+     *
+     * @return true if the compilation succeeded
+     */
+    private boolean tryCompile(String... sources) throws IOException {
+        File sourceDirectory = new File(directory, "sources");
+        File classDirectory = new File(directory, "classes");
+        delete(sourceDirectory);
+        delete(classDirectory);
+        assertTrue(sourceDirectory.mkdirs() && classDirectory.mkdirs());
+        List<File> files = new ArrayList<File>();
+        files.add(write(sourceDirectory, STORED));
+        for (String source : sources) {
+            files.add(write(sourceDirectory, source));
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> collector = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(collector, null, null);
+        try {
+            String gson = new File(Gson.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            List<String> options = Arrays.asList("-classpath", gson,
+                    "-d", classDirectory.getPath(), "-s", classDirectory.getPath());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, collector, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(files));
+            task.setProcessors(Arrays.asList(new StoredProcessor()));
+            boolean success = task.call();
+            diagnostics = collector.getDiagnostics();
+            return success;
+        } catch (URISyntaxException e) {
+            throw new AssertionError(e);
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    /**
+     * Writes a source to the file named after its package and first public class
+     */
+    private static File write(File sourceDirectory, String source) throws IOException {
+        String packageName = source.substring("package ".length(), source.indexOf(';'));
+        Matcher type = TYPE_NAME.matcher(source);
+        assertTrue(type.find());
+        String name = type.group(1);
+        File file = new File(sourceDirectory, packageName.replace('.', File.separatorChar) + File.separator + name + ".java");
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(source);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}